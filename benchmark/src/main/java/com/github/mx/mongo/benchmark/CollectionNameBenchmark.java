@@ -0,0 +1,45 @@
+package com.github.mx.mongo.benchmark;
+
+import com.github.mx.mongo.benchmark.entity.Entity5;
+import com.github.mx.mongo.mongo.MapperExt;
+import org.mongodb.morphia.mapping.Mapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MapperExt.getCollectionName带前后缀格式化的开销
+ * <p>
+ * Create by max on 2020/01/16
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CollectionNameBenchmark {
+
+    private Mapper plain;
+    private Mapper suffix;
+    private Entity5 entity;
+
+    @Setup
+    public void setup() {
+        plain = new Mapper();
+        plain.addMappedClass(Entity5.class);
+        suffix = new MapperExt("%s_2019");
+        suffix.addMappedClass(Entity5.class);
+        entity = new Entity5();
+    }
+
+    @Benchmark
+    public String mapper() {
+        return plain.getCollectionName(entity);
+    }
+
+    @Benchmark
+    public String mapperExt() {
+        return suffix.getCollectionName(entity);
+    }
+}
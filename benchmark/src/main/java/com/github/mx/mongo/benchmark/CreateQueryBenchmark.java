@@ -0,0 +1,64 @@
+package com.github.mx.mongo.benchmark;
+
+import com.github.mx.mongo.benchmark.entity.Entity20;
+import com.github.mx.mongo.benchmark.entity.Entity5;
+import com.github.mx.mongo.benchmark.entity.Entity50;
+import com.github.mx.mongo.dao.BaseDaoImpl;
+import org.openjdk.jmh.annotations.*;
+import org.mongodb.morphia.query.Query;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BaseDaoImpl.createQuery(T)按例查询构造开销
+ * <p>
+ * Create by max on 2020/01/16
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CreateQueryBenchmark {
+
+    @Param({"5", "20", "50"})
+    private int fields;
+
+    private OfflineDatastore offline;
+    private BaseDaoImpl<Object> dao;
+    private Object condition;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setup() {
+        offline = new OfflineDatastore();
+        Class<Object> clazz = (Class<Object>) entityClass(fields);
+        dao = new BaseDaoImpl<Object>(offline.getDatastoreExt(), clazz) {
+        };
+        condition = OfflineDatastore.newEntity(clazz, true);
+    }
+
+    @TearDown
+    public void tearDown() {
+        offline.close();
+    }
+
+    @Benchmark
+    public Query<Object> createQuery() {
+        return dao.createQuery(condition);
+    }
+
+    static Class<?> entityClass(int fields) {
+        switch (fields) {
+            case 5:
+                return Entity5.class;
+            case 20:
+                return Entity20.class;
+            case 50:
+                return Entity50.class;
+            default:
+                throw new IllegalArgumentException("no entity with " + fields + " fields");
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.github.mx.mongo.benchmark;
+
+import com.github.mx.mongo.benchmark.entity.Entity5;
+import com.mongodb.WriteConcern;
+import org.mongodb.morphia.Datastore;
+import org.mongodb.morphia.query.Query;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * DatastoreExt转发的单次调用开销，与直接调用Datastore对比
+ * <p>
+ * Create by max on 2020/01/16
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DatastoreProxyBenchmark {
+
+    private OfflineDatastore offline;
+    private Datastore direct;
+    private Datastore proxy;
+
+    @Setup
+    public void setup() {
+        offline = new OfflineDatastore();
+        direct = offline.getDatastore();
+        proxy = offline.getDatastoreExt();
+    }
+
+    @TearDown
+    public void tearDown() {
+        offline.close();
+    }
+
+    @Benchmark
+    public WriteConcern directNoArgs() {
+        return direct.getDefaultWriteConcern();
+    }
+
+    @Benchmark
+    public WriteConcern proxyNoArgs() {
+        return proxy.getDefaultWriteConcern();
+    }
+
+    @Benchmark
+    public Query<Entity5> directCreateQuery() {
+        return direct.createQuery(Entity5.class);
+    }
+
+    @Benchmark
+    public Query<Entity5> proxyCreateQuery() {
+        return proxy.createQuery(Entity5.class);
+    }
+}
@@ -0,0 +1,89 @@
+package com.github.mx.mongo.benchmark;
+
+import com.github.mx.mongo.metrics.IndexAdvice;
+import com.github.mx.mongo.metrics.IndexAdvisor;
+import com.github.mx.mongo.metrics.QueryShapeStats;
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * IndexAdvisor.analyze按"等值-排序-范围"规则比较索引的开销，setup时先用构造的索引与形状校验规则，结果不符直接失败
+ * <p>
+ * Create by max on 2020/01/16
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IndexAdvisorBenchmark {
+
+    private List<DBObject> indexes;
+    private List<QueryShapeStats> shapes;
+
+    @Setup
+    public void setup() {
+        verify();
+        indexes = new ArrayList<>();
+        shapes = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            indexes.add(new BasicDBObject("f" + i, 1).append("createTime", -1).append("g" + i, 1));
+        }
+        for (int i = 0; i < 100; i++) {
+            shapes.add(shape(Arrays.asList("f" + i % 20), Collections.singletonList("-createTime"), Collections.singletonList("g" + i % 10)));
+        }
+    }
+
+    @Benchmark
+    public List<IndexAdvice> analyze() {
+        return IndexAdvisor.analyze(indexes, shapes);
+    }
+
+    private static void verify() {
+        final List<DBObject> indexes = Arrays.asList(
+                new BasicDBObject("status", 1).append("createTime", -1).append("amount", 1),
+                new BasicDBObject("userId", 1),
+                new BasicDBObject("content", "text"));
+        // 等值-排序-范围完整命中，排序方向整体相反也可以
+        expect(indexes, shape(Collections.singletonList("status"), Collections.singletonList("-createTime"), Collections.singletonList("amount")),
+                IndexAdvice.Status.COVERED, null);
+        expect(indexes, shape(Collections.singletonList("status"), Collections.singletonList("createTime"), Collections.emptyList()),
+                IndexAdvice.Status.COVERED, null);
+        // 等值条件字段上的排序不影响索引选择
+        expect(indexes, shape(Collections.singletonList("userId"), Collections.singletonList("-userId"), Collections.emptyList()),
+                IndexAdvice.Status.COVERED, null);
+        // 范围字段在排序字段之前，需要内存排序
+        expect(indexes, shape(Collections.singletonList("status"), Collections.singletonList("amount"), Collections.singletonList("createTime")),
+                IndexAdvice.Status.PARTIAL, new BasicDBObject("status", 1).append("amount", 1).append("createTime", 1));
+        // 首字段不在条件中的索引不可用，text索引不参与比较
+        expect(indexes, shape(Collections.singletonList("content"), Collections.emptyList(), Collections.singletonList("createTime")),
+                IndexAdvice.Status.MISSING, new BasicDBObject("content", 1).append("createTime", 1));
+        // 没有条件和排序的形状不参与分析
+        final List<IndexAdvice> empty = IndexAdvisor.analyze(indexes,
+                Collections.singletonList(shape(Collections.emptyList(), Collections.emptyList(), Collections.emptyList())));
+        if (!empty.isEmpty()) {
+            throw new IllegalStateException("shape without filter and sort should be skipped, got " + empty);
+        }
+    }
+
+    private static void expect(List<DBObject> indexes, QueryShapeStats shape, IndexAdvice.Status status, DBObject recommended) {
+        final List<IndexAdvice> advices = IndexAdvisor.analyze(indexes, Collections.singletonList(shape));
+        final IndexAdvice advice = advices.size() == 1 ? advices.get(0) : null;
+        if (advice == null || advice.getStatus() != status
+                || (recommended == null ? advice.getRecommendedIndex() != null : !recommended.equals(advice.getRecommendedIndex()))) {
+            throw new IllegalStateException(String.format("expected %s %s for %s, got %s", status, recommended, shape.getEquality(), advices));
+        }
+    }
+
+    private static QueryShapeStats shape(List<String> equality, List<String> sort, List<String> range) {
+        return new QueryShapeStats("bench.orders", equality, sort, range, 1);
+    }
+}
@@ -0,0 +1,61 @@
+package com.github.mx.mongo.benchmark;
+
+import com.github.mx.mongo.benchmark.entity.Entity20;
+import com.github.mx.mongo.dao.BaseDaoImpl;
+import com.github.mx.mongo.dao.BulkInsertOptions;
+import com.mongodb.DBObject;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * insertBatch提交前的开销：实体映射、补齐_id、按条数及编码后的字节数切分，与insertBatch走同一段代码
+ * <p>
+ * Create by max on 2020/01/16
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InsertBatchBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    private int size;
+
+    /**
+     * 0为不按字节切分，只按条数切分
+     */
+    @Param({"0", "65536"})
+    private int maxChunkBytes;
+
+    private OfflineDatastore offline;
+    private BaseDaoImpl<Entity20> dao;
+    private BulkInsertOptions options;
+    private List<Entity20> entities;
+
+    @Setup
+    public void setup() {
+        offline = new OfflineDatastore();
+        dao = new BaseDaoImpl<Entity20>(offline.getDatastoreExt(), Entity20.class) {
+        };
+        options = new BulkInsertOptions().chunkSize(500).maxChunkBytes(maxChunkBytes);
+        entities = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            entities.add(OfflineDatastore.newEntity(Entity20.class, false));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        offline.close();
+    }
+
+    @Benchmark
+    public List<List<DBObject>> toInsertChunks() {
+        return dao.toInsertChunks(entities, options);
+    }
+}
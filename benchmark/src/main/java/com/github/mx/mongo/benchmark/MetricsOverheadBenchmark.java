@@ -0,0 +1,79 @@
+package com.github.mx.mongo.benchmark;
+
+import com.github.mx.mongo.benchmark.entity.Entity20;
+import com.github.mx.mongo.dao.BaseDaoImpl;
+import com.github.mx.mongo.metrics.DaoMetrics;
+import com.github.mx.mongo.metrics.DaoProbe;
+import com.github.mx.mongo.metrics.MongoMetrics;
+import org.mongodb.morphia.query.Query;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * dao埋点的开销：off为未安装指标(默认)，recording为安装了一个只做累加的指标实现
+ * <p>
+ * 以createQuery(T)作为被包裹的调用，baseline与probed的差值即每次调用的埋点开销
+ * <p>
+ * Create by max on 2020/01/16
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MetricsOverheadBenchmark {
+
+    @Param({"off", "recording"})
+    private String metrics;
+
+    private OfflineDatastore offline;
+    private BaseDaoImpl<Entity20> dao;
+    private Entity20 condition;
+    private DaoProbe probe;
+
+    @Setup
+    public void setup() {
+        offline = new OfflineDatastore();
+        dao = new BaseDaoImpl<Entity20>(offline.getDatastoreExt(), Entity20.class) {
+        };
+        condition = OfflineDatastore.newEntity(Entity20.class, true);
+        probe = new DaoProbe("Entity20Dao", "Entity20");
+        MongoMetrics.INSTANCE.setMetrics("recording".equals(metrics) ? new CountingMetrics() : null);
+    }
+
+    @TearDown
+    public void tearDown() {
+        MongoMetrics.INSTANCE.setMetrics(null);
+        offline.close();
+    }
+
+    @Benchmark
+    public Query<Entity20> baseline() {
+        return dao.createQuery(condition);
+    }
+
+    @Benchmark
+    public Query<Entity20> probed() {
+        final DaoProbe.Sample sample = probe.start("selectList");
+        try {
+            final Query<Entity20> query = dao.createQuery(condition);
+            return sample.query(query).stop(query);
+        } catch (RuntimeException e) {
+            throw sample.error(e);
+        }
+    }
+
+    private static final class CountingMetrics implements DaoMetrics {
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+
+        @Override
+        public void record(String dao, String collection, String method, long durationNanos, int documents, Throwable error) {
+            calls.increment();
+            nanos.add(durationNanos);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.github.mx.mongo.benchmark;
+
+import com.github.mx.mongo.benchmark.entity.Entity5;
+import com.github.mx.mongo.mapper.EntityMapperManager;
+import com.github.mx.mongo.mapper.FieldInfo;
+import com.github.mx.mongo.mongo.DatastoreExt;
+import com.github.mx.mongo.mongo.MongoDataStoreFactoryBean;
+import com.mongodb.MongoClient;
+import com.mongodb.MongoClientOptions;
+import com.mongodb.ServerAddress;
+import org.mongodb.morphia.AdvancedDatastore;
+import org.mongodb.morphia.Datastore;
+import org.mongodb.morphia.Morphia;
+import org.mongodb.morphia.mapping.Mapper;
+
+/**
+ * 不连接任何mongo服务的Datastore替身
+ * <p>
+ * driver的MongoClient是懒连接的，只要不执行命令，构造Query、实体映射等都只在内存中完成，
+ * 因此基准测试只衡量本库自身的开销
+ * <p>
+ * Create by max on 2020/01/16
+ */
+public final class OfflineDatastore implements AutoCloseable {
+
+    public static final String DB_NAME = "benchmark";
+
+    private final MongoClient client;
+    private final Mapper mapper;
+    private final Datastore datastore;
+    private final DatastoreExt proxy;
+
+    public OfflineDatastore() {
+        this(new Mapper());
+    }
+
+    public OfflineDatastore(Mapper mapper) {
+        MongoClientOptions options = MongoClientOptions.builder()
+                .serverSelectionTimeout(1)
+                .connectTimeout(1)
+                .build();
+        this.client = new MongoClient(new ServerAddress("127.0.0.1", 1), options);
+        this.mapper = mapper;
+        Morphia morphia = new Morphia(mapper);
+        morphia.mapPackageFromClass(Entity5.class);
+        this.datastore = morphia.createDatastore(client, DB_NAME);
+        this.proxy = MongoDataStoreFactoryBean.wrap((AdvancedDatastore) datastore);
+    }
+
+    public Mapper getMapper() {
+        return mapper;
+    }
+
+    /**
+     * 未经代理的原始Datastore
+     */
+    public Datastore getDatastore() {
+        return datastore;
+    }
+
+    /**
+     * 与MongoDataStoreFactoryBean产出一致的DatastoreExt
+     */
+    public DatastoreExt getDatastoreExt() {
+        return proxy;
+    }
+
+    /**
+     * 按字段类型填充实体
+     *
+     * @param entity 实体
+     * @param sparse 为true时只填充一半字段，模拟按例查询的稀疏条件
+     * @return 实体
+     */
+    public static <T> T fill(T entity, boolean sparse) {
+        int i = 0;
+        for (FieldInfo fieldInfo : EntityMapperManager.INSTANCE.getEntityMapper(entity.getClass()).getConditionFields()) {
+            if (!sparse || (i & 1) == 0) {
+                fieldInfo.setValue(entity, sample(fieldInfo.getGetterMethod().getReturnType(), i));
+            }
+            i++;
+        }
+        return entity;
+    }
+
+    public static <T> T newEntity(Class<T> clazz, boolean sparse) {
+        try {
+            return fill(clazz.newInstance(), sparse);
+        } catch (InstantiationException | IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Object sample(Class<?> type, int i) {
+        if (type == String.class) {
+            return "value-" + i;
+        } else if (type == Integer.class) {
+            return i;
+        } else if (type == Long.class) {
+            return (long) i * 1000;
+        } else if (type == Boolean.class) {
+            return (i & 2) == 0;
+        } else if (type == Double.class) {
+            return i + 0.5;
+        }
+        throw new IllegalArgumentException("unsupported type " + type);
+    }
+
+    @Override
+    public void close() {
+        client.close();
+    }
+}
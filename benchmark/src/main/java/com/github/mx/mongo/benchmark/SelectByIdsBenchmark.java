@@ -0,0 +1,53 @@
+package com.github.mx.mongo.benchmark;
+
+import com.github.mx.mongo.benchmark.entity.Entity5;
+import com.github.mx.mongo.dao.BaseDaoImpl;
+import org.bson.types.ObjectId;
+import org.mongodb.morphia.query.Query;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * selectByIds中字符串id转换及$in查询构造开销
+ * <p>
+ * Create by max on 2020/01/16
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SelectByIdsBenchmark {
+
+    @Param({"10", "100", "1000", "10000"})
+    private int size;
+
+    private OfflineDatastore offline;
+    private BaseDaoImpl<Entity5> dao;
+    private List<String> ids;
+
+    @Setup
+    public void setup() {
+        offline = new OfflineDatastore();
+        dao = new BaseDaoImpl<Entity5>(offline.getDatastoreExt(), Entity5.class) {
+        };
+        ids = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            ids.add(new ObjectId().toHexString());
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        offline.close();
+    }
+
+    @Benchmark
+    public Query<Entity5> createQueryByIds() {
+        return dao.createQueryByIds(ids);
+    }
+}
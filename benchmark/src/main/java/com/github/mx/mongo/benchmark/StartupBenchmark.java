@@ -0,0 +1,84 @@
+package com.github.mx.mongo.benchmark;
+
+import com.github.mx.mongo.benchmark.entity.Entity5;
+import com.github.mx.mongo.mapper.EntityClassIndex;
+import com.mongodb.MongoClient;
+import org.mongodb.morphia.Datastore;
+import org.mongodb.morphia.Morphia;
+import org.mongodb.morphia.mapping.Mapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 创建多个datastore(不同db或collection前后缀)的启动开销
+ * <p>
+ * before为每个datastore各自new Mapper并mapPackage扫描classpath；after为扫描结果按包缓存、相同配置共享Mapper。
+ * coldScan/coldIndex对比首次扫描classpath与读取编译期索引
+ * <p>
+ * Create by max on 2020/01/16
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StartupBenchmark {
+
+    private static final String PACKAGE = Entity5.class.getPackage().getName();
+
+    @Param({"1", "10"})
+    private int datastores;
+
+    private OfflineDatastore offline;
+    private MongoClient client;
+
+    @Setup
+    public void setup() {
+        offline = new OfflineDatastore();
+        client = offline.getDatastore().getMongo();
+    }
+
+    @TearDown
+    public void tearDown() {
+        offline.close();
+    }
+
+    @Benchmark
+    public List<Datastore> before() {
+        final List<Datastore> result = new ArrayList<>(datastores);
+        for (int i = 0; i < datastores; i++) {
+            final Morphia morphia = new Morphia(new Mapper());
+            morphia.mapPackage(PACKAGE);
+            result.add(morphia.createDatastore(client, "db" + i));
+        }
+        return result;
+    }
+
+    @Benchmark
+    public List<Datastore> after() {
+        EntityClassIndex.INSTANCE.invalidate();
+        final Morphia morphia = new Morphia(new Mapper());
+        EntityClassIndex.INSTANCE.mapPackage(morphia, PACKAGE, false, true);
+        final List<Datastore> result = new ArrayList<>(datastores);
+        for (int i = 0; i < datastores; i++) {
+            result.add(morphia.createDatastore(client, "db" + i));
+        }
+        return result;
+    }
+
+    @Benchmark
+    public List<Class<?>> coldScan() {
+        EntityClassIndex.INSTANCE.invalidate();
+        return EntityClassIndex.INSTANCE.getEntityClasses(PACKAGE, false, false);
+    }
+
+    @Benchmark
+    public List<Class<?>> coldIndex() {
+        EntityClassIndex.INSTANCE.invalidate();
+        return EntityClassIndex.INSTANCE.getEntityClasses(PACKAGE, false, true);
+    }
+}
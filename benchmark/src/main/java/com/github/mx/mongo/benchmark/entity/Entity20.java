@@ -0,0 +1,204 @@
+package com.github.mx.mongo.benchmark.entity;
+
+import org.mongodb.morphia.annotations.Entity;
+import org.mongodb.morphia.annotations.Id;
+
+/**
+ * 带20个普通字段的基准测试实体
+ * <p>
+ * Create by max on 2020/01/16
+ */
+@Entity(value = "entity20", noClassnameStored = true)
+public class Entity20 {
+
+    @Id
+    private String id;
+    private String f1;
+    private Integer f2;
+    private Long f3;
+    private Boolean f4;
+    private Double f5;
+    private String f6;
+    private Integer f7;
+    private Long f8;
+    private Boolean f9;
+    private Double f10;
+    private String f11;
+    private Integer f12;
+    private Long f13;
+    private Boolean f14;
+    private Double f15;
+    private String f16;
+    private Integer f17;
+    private Long f18;
+    private Boolean f19;
+    private Double f20;
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getF1() {
+        return f1;
+    }
+
+    public void setF1(String f1) {
+        this.f1 = f1;
+    }
+
+    public Integer getF2() {
+        return f2;
+    }
+
+    public void setF2(Integer f2) {
+        this.f2 = f2;
+    }
+
+    public Long getF3() {
+        return f3;
+    }
+
+    public void setF3(Long f3) {
+        this.f3 = f3;
+    }
+
+    public Boolean getF4() {
+        return f4;
+    }
+
+    public void setF4(Boolean f4) {
+        this.f4 = f4;
+    }
+
+    public Double getF5() {
+        return f5;
+    }
+
+    public void setF5(Double f5) {
+        this.f5 = f5;
+    }
+
+    public String getF6() {
+        return f6;
+    }
+
+    public void setF6(String f6) {
+        this.f6 = f6;
+    }
+
+    public Integer getF7() {
+        return f7;
+    }
+
+    public void setF7(Integer f7) {
+        this.f7 = f7;
+    }
+
+    public Long getF8() {
+        return f8;
+    }
+
+    public void setF8(Long f8) {
+        this.f8 = f8;
+    }
+
+    public Boolean getF9() {
+        return f9;
+    }
+
+    public void setF9(Boolean f9) {
+        this.f9 = f9;
+    }
+
+    public Double getF10() {
+        return f10;
+    }
+
+    public void setF10(Double f10) {
+        this.f10 = f10;
+    }
+
+    public String getF11() {
+        return f11;
+    }
+
+    public void setF11(String f11) {
+        this.f11 = f11;
+    }
+
+    public Integer getF12() {
+        return f12;
+    }
+
+    public void setF12(Integer f12) {
+        this.f12 = f12;
+    }
+
+    public Long getF13() {
+        return f13;
+    }
+
+    public void setF13(Long f13) {
+        this.f13 = f13;
+    }
+
+    public Boolean getF14() {
+        return f14;
+    }
+
+    public void setF14(Boolean f14) {
+        this.f14 = f14;
+    }
+
+    public Double getF15() {
+        return f15;
+    }
+
+    public void setF15(Double f15) {
+        this.f15 = f15;
+    }
+
+    public String getF16() {
+        return f16;
+    }
+
+    public void setF16(String f16) {
+        this.f16 = f16;
+    }
+
+    public Integer getF17() {
+        return f17;
+    }
+
+    public void setF17(Integer f17) {
+        this.f17 = f17;
+    }
+
+    public Long getF18() {
+        return f18;
+    }
+
+    public void setF18(Long f18) {
+        this.f18 = f18;
+    }
+
+    public Boolean getF19() {
+        return f19;
+    }
+
+    public void setF19(Boolean f19) {
+        this.f19 = f19;
+    }
+
+    public Double getF20() {
+        return f20;
+    }
+
+    public void setF20(Double f20) {
+        this.f20 = f20;
+    }
+}
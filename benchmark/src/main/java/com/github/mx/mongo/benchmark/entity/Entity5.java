@@ -0,0 +1,69 @@
+package com.github.mx.mongo.benchmark.entity;
+
+import org.mongodb.morphia.annotations.Entity;
+import org.mongodb.morphia.annotations.Id;
+
+/**
+ * 带5个普通字段的基准测试实体
+ * <p>
+ * Create by max on 2020/01/16
+ */
+@Entity(value = "entity5", noClassnameStored = true)
+public class Entity5 {
+
+    @Id
+    private String id;
+    private String f1;
+    private Integer f2;
+    private Long f3;
+    private Boolean f4;
+    private Double f5;
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getF1() {
+        return f1;
+    }
+
+    public void setF1(String f1) {
+        this.f1 = f1;
+    }
+
+    public Integer getF2() {
+        return f2;
+    }
+
+    public void setF2(Integer f2) {
+        this.f2 = f2;
+    }
+
+    public Long getF3() {
+        return f3;
+    }
+
+    public void setF3(Long f3) {
+        this.f3 = f3;
+    }
+
+    public Boolean getF4() {
+        return f4;
+    }
+
+    public void setF4(Boolean f4) {
+        this.f4 = f4;
+    }
+
+    public Double getF5() {
+        return f5;
+    }
+
+    public void setF5(Double f5) {
+        this.f5 = f5;
+    }
+}
@@ -0,0 +1,474 @@
+package com.github.mx.mongo.benchmark.entity;
+
+import org.mongodb.morphia.annotations.Entity;
+import org.mongodb.morphia.annotations.Id;
+
+/**
+ * 带50个普通字段的基准测试实体
+ * <p>
+ * Create by max on 2020/01/16
+ */
+@Entity(value = "entity50", noClassnameStored = true)
+public class Entity50 {
+
+    @Id
+    private String id;
+    private String f1;
+    private Integer f2;
+    private Long f3;
+    private Boolean f4;
+    private Double f5;
+    private String f6;
+    private Integer f7;
+    private Long f8;
+    private Boolean f9;
+    private Double f10;
+    private String f11;
+    private Integer f12;
+    private Long f13;
+    private Boolean f14;
+    private Double f15;
+    private String f16;
+    private Integer f17;
+    private Long f18;
+    private Boolean f19;
+    private Double f20;
+    private String f21;
+    private Integer f22;
+    private Long f23;
+    private Boolean f24;
+    private Double f25;
+    private String f26;
+    private Integer f27;
+    private Long f28;
+    private Boolean f29;
+    private Double f30;
+    private String f31;
+    private Integer f32;
+    private Long f33;
+    private Boolean f34;
+    private Double f35;
+    private String f36;
+    private Integer f37;
+    private Long f38;
+    private Boolean f39;
+    private Double f40;
+    private String f41;
+    private Integer f42;
+    private Long f43;
+    private Boolean f44;
+    private Double f45;
+    private String f46;
+    private Integer f47;
+    private Long f48;
+    private Boolean f49;
+    private Double f50;
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getF1() {
+        return f1;
+    }
+
+    public void setF1(String f1) {
+        this.f1 = f1;
+    }
+
+    public Integer getF2() {
+        return f2;
+    }
+
+    public void setF2(Integer f2) {
+        this.f2 = f2;
+    }
+
+    public Long getF3() {
+        return f3;
+    }
+
+    public void setF3(Long f3) {
+        this.f3 = f3;
+    }
+
+    public Boolean getF4() {
+        return f4;
+    }
+
+    public void setF4(Boolean f4) {
+        this.f4 = f4;
+    }
+
+    public Double getF5() {
+        return f5;
+    }
+
+    public void setF5(Double f5) {
+        this.f5 = f5;
+    }
+
+    public String getF6() {
+        return f6;
+    }
+
+    public void setF6(String f6) {
+        this.f6 = f6;
+    }
+
+    public Integer getF7() {
+        return f7;
+    }
+
+    public void setF7(Integer f7) {
+        this.f7 = f7;
+    }
+
+    public Long getF8() {
+        return f8;
+    }
+
+    public void setF8(Long f8) {
+        this.f8 = f8;
+    }
+
+    public Boolean getF9() {
+        return f9;
+    }
+
+    public void setF9(Boolean f9) {
+        this.f9 = f9;
+    }
+
+    public Double getF10() {
+        return f10;
+    }
+
+    public void setF10(Double f10) {
+        this.f10 = f10;
+    }
+
+    public String getF11() {
+        return f11;
+    }
+
+    public void setF11(String f11) {
+        this.f11 = f11;
+    }
+
+    public Integer getF12() {
+        return f12;
+    }
+
+    public void setF12(Integer f12) {
+        this.f12 = f12;
+    }
+
+    public Long getF13() {
+        return f13;
+    }
+
+    public void setF13(Long f13) {
+        this.f13 = f13;
+    }
+
+    public Boolean getF14() {
+        return f14;
+    }
+
+    public void setF14(Boolean f14) {
+        this.f14 = f14;
+    }
+
+    public Double getF15() {
+        return f15;
+    }
+
+    public void setF15(Double f15) {
+        this.f15 = f15;
+    }
+
+    public String getF16() {
+        return f16;
+    }
+
+    public void setF16(String f16) {
+        this.f16 = f16;
+    }
+
+    public Integer getF17() {
+        return f17;
+    }
+
+    public void setF17(Integer f17) {
+        this.f17 = f17;
+    }
+
+    public Long getF18() {
+        return f18;
+    }
+
+    public void setF18(Long f18) {
+        this.f18 = f18;
+    }
+
+    public Boolean getF19() {
+        return f19;
+    }
+
+    public void setF19(Boolean f19) {
+        this.f19 = f19;
+    }
+
+    public Double getF20() {
+        return f20;
+    }
+
+    public void setF20(Double f20) {
+        this.f20 = f20;
+    }
+
+    public String getF21() {
+        return f21;
+    }
+
+    public void setF21(String f21) {
+        this.f21 = f21;
+    }
+
+    public Integer getF22() {
+        return f22;
+    }
+
+    public void setF22(Integer f22) {
+        this.f22 = f22;
+    }
+
+    public Long getF23() {
+        return f23;
+    }
+
+    public void setF23(Long f23) {
+        this.f23 = f23;
+    }
+
+    public Boolean getF24() {
+        return f24;
+    }
+
+    public void setF24(Boolean f24) {
+        this.f24 = f24;
+    }
+
+    public Double getF25() {
+        return f25;
+    }
+
+    public void setF25(Double f25) {
+        this.f25 = f25;
+    }
+
+    public String getF26() {
+        return f26;
+    }
+
+    public void setF26(String f26) {
+        this.f26 = f26;
+    }
+
+    public Integer getF27() {
+        return f27;
+    }
+
+    public void setF27(Integer f27) {
+        this.f27 = f27;
+    }
+
+    public Long getF28() {
+        return f28;
+    }
+
+    public void setF28(Long f28) {
+        this.f28 = f28;
+    }
+
+    public Boolean getF29() {
+        return f29;
+    }
+
+    public void setF29(Boolean f29) {
+        this.f29 = f29;
+    }
+
+    public Double getF30() {
+        return f30;
+    }
+
+    public void setF30(Double f30) {
+        this.f30 = f30;
+    }
+
+    public String getF31() {
+        return f31;
+    }
+
+    public void setF31(String f31) {
+        this.f31 = f31;
+    }
+
+    public Integer getF32() {
+        return f32;
+    }
+
+    public void setF32(Integer f32) {
+        this.f32 = f32;
+    }
+
+    public Long getF33() {
+        return f33;
+    }
+
+    public void setF33(Long f33) {
+        this.f33 = f33;
+    }
+
+    public Boolean getF34() {
+        return f34;
+    }
+
+    public void setF34(Boolean f34) {
+        this.f34 = f34;
+    }
+
+    public Double getF35() {
+        return f35;
+    }
+
+    public void setF35(Double f35) {
+        this.f35 = f35;
+    }
+
+    public String getF36() {
+        return f36;
+    }
+
+    public void setF36(String f36) {
+        this.f36 = f36;
+    }
+
+    public Integer getF37() {
+        return f37;
+    }
+
+    public void setF37(Integer f37) {
+        this.f37 = f37;
+    }
+
+    public Long getF38() {
+        return f38;
+    }
+
+    public void setF38(Long f38) {
+        this.f38 = f38;
+    }
+
+    public Boolean getF39() {
+        return f39;
+    }
+
+    public void setF39(Boolean f39) {
+        this.f39 = f39;
+    }
+
+    public Double getF40() {
+        return f40;
+    }
+
+    public void setF40(Double f40) {
+        this.f40 = f40;
+    }
+
+    public String getF41() {
+        return f41;
+    }
+
+    public void setF41(String f41) {
+        this.f41 = f41;
+    }
+
+    public Integer getF42() {
+        return f42;
+    }
+
+    public void setF42(Integer f42) {
+        this.f42 = f42;
+    }
+
+    public Long getF43() {
+        return f43;
+    }
+
+    public void setF43(Long f43) {
+        this.f43 = f43;
+    }
+
+    public Boolean getF44() {
+        return f44;
+    }
+
+    public void setF44(Boolean f44) {
+        this.f44 = f44;
+    }
+
+    public Double getF45() {
+        return f45;
+    }
+
+    public void setF45(Double f45) {
+        this.f45 = f45;
+    }
+
+    public String getF46() {
+        return f46;
+    }
+
+    public void setF46(String f46) {
+        this.f46 = f46;
+    }
+
+    public Integer getF47() {
+        return f47;
+    }
+
+    public void setF47(Integer f47) {
+        this.f47 = f47;
+    }
+
+    public Long getF48() {
+        return f48;
+    }
+
+    public void setF48(Long f48) {
+        this.f48 = f48;
+    }
+
+    public Boolean getF49() {
+        return f49;
+    }
+
+    public void setF49(Boolean f49) {
+        this.f49 = f49;
+    }
+
+    public Double getF50() {
+        return f50;
+    }
+
+    public void setF50(Double f50) {
+        this.f50 = f50;
+    }
+}
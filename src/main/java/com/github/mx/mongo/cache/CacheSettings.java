@@ -0,0 +1,74 @@
+package com.github.mx.mongo.cache;
+
+import com.github.mx.nacos.config.core.api.IConfig;
+import com.google.common.base.Strings;
+
+/**
+ * 缓存配置，从配置中心按collection名读取:
+ * <pre>
+ * mongo.cache.{collection}.enabled=true
+ * mongo.cache.{collection}.maxSize=1000
+ * mongo.cache.{collection}.ttlSeconds=60
+ * mongo.cache.{collection}.negativeTtlSeconds=10
+ * </pre>
+ * 不同db下的同名collection可以用mongo.cache.{db}.{collection}.*分别配置，配置了enabled时整组优先于按collection名的配置
+ * <p>
+ * Create by max on 2020/01/16
+ */
+public class CacheSettings {
+
+    public static final CacheSettings DISABLED = new CacheSettings(false, 0, 0, 0);
+
+    private final boolean enabled;
+    private final int maxSize;
+    private final long ttlMillis;
+    private final long negativeTtlMillis;
+
+    public CacheSettings(boolean enabled, int maxSize, long ttlMillis, long negativeTtlMillis) {
+        this.enabled = enabled;
+        this.maxSize = maxSize;
+        this.ttlMillis = ttlMillis;
+        this.negativeTtlMillis = negativeTtlMillis;
+    }
+
+    public static CacheSettings of(IConfig config, String collection) {
+        return read(config, "mongo.cache." + collection + '.');
+    }
+
+    public static CacheSettings of(IConfig config, String dbName, String collection) {
+        final String prefix = "mongo.cache." + dbName + '.' + collection + '.';
+        return Strings.isNullOrEmpty(config.get(prefix + "enabled")) ? of(config, collection) : read(config, prefix);
+    }
+
+    private static CacheSettings read(IConfig config, String prefix) {
+        if (!config.getBool(prefix + "enabled")) {
+            return DISABLED;
+        }
+        return new CacheSettings(true,
+                config.getInt(prefix + "maxSize", 1000),
+                config.getInt(prefix + "ttlSeconds", 60) * 1000L,
+                config.getInt(prefix + "negativeTtlSeconds", 10) * 1000L);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * 小于等于0时不过期，只按容量淘汰
+     */
+    public long getTtlMillis() {
+        return ttlMillis;
+    }
+
+    /**
+     * 不存在的记录缓存多久，小于等于0时不做负缓存
+     */
+    public long getNegativeTtlMillis() {
+        return negativeTtlMillis;
+    }
+}
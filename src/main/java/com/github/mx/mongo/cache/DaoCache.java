@@ -0,0 +1,60 @@
+package com.github.mx.mongo.cache;
+
+/**
+ * dao按id读取的缓存
+ * <p>
+ * Create by max on 2020/01/16
+ */
+public interface DaoCache<T> {
+
+    /**
+     * 查询缓存
+     *
+     * @param id 记录id
+     * @return 未命中返回null；命中时value可能为null，表示记录不存在(负缓存)
+     */
+    Cached<T> get(String id);
+
+    /**
+     * 当前失效版本号，查询数据库前获取，写回缓存时传入，期间发生过失效则放弃写回，避免并发更新时缓存旧值
+     */
+    long version();
+
+    /**
+     * 写入缓存
+     *
+     * @param id      记录id
+     * @param value   记录，null表示不存在
+     * @param version 查询数据库前获取的版本号
+     */
+    void put(String id, T value, long version);
+
+    void invalidate(String id);
+
+    void invalidateAll();
+
+    boolean isEnabled();
+
+    CacheStats stats();
+
+    /**
+     * 应用新的配置，支持运行中调整
+     */
+    void configure(CacheSettings settings);
+
+    /**
+     * 缓存命中结果
+     */
+    final class Cached<T> {
+
+        private final T value;
+
+        public Cached(T value) {
+            this.value = value;
+        }
+
+        public T get() {
+            return value;
+        }
+    }
+}
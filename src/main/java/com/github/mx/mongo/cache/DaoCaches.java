@@ -0,0 +1,70 @@
+package com.github.mx.mongo.cache;
+
+import com.github.mx.nacos.config.core.api.IConfig;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * dao缓存注册中心，按db.collection维护缓存实例，配置变更时统一重新应用
+ * <p>
+ * 每个MongoDataStoreFactoryBean持有自己的实例，由其配置驱动，通过{@code DatastoreExt.getDaoCaches()}获取；
+ * INSTANCE只供不经过工厂创建的DatastoreExt使用
+ * <p>
+ * Create by max on 2020/01/16
+ */
+public class DaoCaches {
+
+    public static final DaoCaches INSTANCE = new DaoCaches();
+
+    private final Map<String, Registered> caches = new ConcurrentHashMap<>();
+    private volatile IConfig config;
+
+    public DaoCaches() {
+    }
+
+    /**
+     * 获取(不存在时创建)缓存，未开启时返回的缓存不生效，配置开启后自动生效
+     *
+     * @param dbName     db名字
+     * @param collection collection名字，对应配置mongo.cache.{db}.{collection}.*或mongo.cache.{collection}.*
+     * @return 缓存
+     */
+    @SuppressWarnings("unchecked")
+    public <T> DaoCache<T> getCache(String dbName, String collection) {
+        return (DaoCache<T>) caches.computeIfAbsent(dbName + '.' + collection, key -> {
+            final IConfig current = config;
+            final CacheSettings settings = current == null ? CacheSettings.DISABLED : CacheSettings.of(current, dbName, collection);
+            return new Registered(dbName, collection, new LruDaoCache<>(settings));
+        }).cache;
+    }
+
+    /**
+     * 配置中心变更时调用
+     */
+    public void reload(IConfig config) {
+        this.config = config;
+        caches.values().forEach(it -> it.cache.configure(CacheSettings.of(config, it.dbName, it.collection)));
+    }
+
+    /**
+     * 各缓存的统计，key为db.collection
+     */
+    public Map<String, CacheStats> stats() {
+        final Map<String, CacheStats> stats = new ConcurrentHashMap<>();
+        caches.forEach((key, it) -> stats.put(key, it.cache.stats()));
+        return stats;
+    }
+
+    private static final class Registered {
+        private final String dbName;
+        private final String collection;
+        private final DaoCache<?> cache;
+
+        private Registered(String dbName, String collection, DaoCache<?> cache) {
+            this.dbName = dbName;
+            this.collection = collection;
+            this.cache = cache;
+        }
+    }
+}
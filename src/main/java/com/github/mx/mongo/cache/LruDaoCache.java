@@ -0,0 +1,165 @@
+package com.github.mx.mongo.cache;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按容量LRU淘汰、按TTL过期的缓存，支持负缓存
+ * <p>
+ * 按id哈希分段加锁，不同分段的读写互不阻塞；每段各自按LRU淘汰，容量为总容量平分到各段，淘汰顺序是近似LRU
+ * <p>
+ * Create by max on 2020/01/16
+ */
+public class LruDaoCache<T> implements DaoCache<T> {
+
+    private static final int SEGMENTS = 16;
+
+    private final List<LinkedHashMap<String, Entry<T>>> segments = new ArrayList<>(SEGMENTS);
+    private final AtomicLong version = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private volatile CacheSettings settings;
+
+    public LruDaoCache(CacheSettings settings) {
+        this.settings = settings;
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments.add(new LinkedHashMap<>(16, 0.75f, true));
+        }
+    }
+
+    @Override
+    public Cached<T> get(String id) {
+        final CacheSettings current = settings;
+        if (!current.isEnabled()) {
+            return null;
+        }
+        final LinkedHashMap<String, Entry<T>> segment = segment(id);
+        final Entry<T> entry;
+        synchronized (segment) {
+            entry = segment.get(id);
+            if (entry != null && entry.expireAt <= System.currentTimeMillis()) {
+                segment.remove(id);
+                evictions.increment();
+                misses.increment();
+                return null;
+            }
+        }
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry.cached;
+    }
+
+    @Override
+    public long version() {
+        return version.get();
+    }
+
+    /**
+     * 失效先递增版本号再进入分段锁，这里在分段锁内比较版本号，失效前读到的旧值不会被写回
+     */
+    @Override
+    public void put(String id, T value, long expectedVersion) {
+        final CacheSettings current = settings;
+        if (!current.isEnabled()) {
+            return;
+        }
+        final long ttl = value == null ? current.getNegativeTtlMillis() : current.getTtlMillis();
+        if (value == null && ttl <= 0) {
+            return;
+        }
+        final long expireAt = ttl <= 0 ? Long.MAX_VALUE : System.currentTimeMillis() + ttl;
+        final LinkedHashMap<String, Entry<T>> segment = segment(id);
+        synchronized (segment) {
+            if (version.get() != expectedVersion) {
+                return;
+            }
+            segment.put(id, new Entry<>(new Cached<>(value), expireAt));
+            trim(segment, current.getMaxSize());
+        }
+    }
+
+    @Override
+    public void invalidate(String id) {
+        version.incrementAndGet();
+        final LinkedHashMap<String, Entry<T>> segment = segment(id);
+        synchronized (segment) {
+            segment.remove(id);
+        }
+    }
+
+    @Override
+    public void invalidateAll() {
+        version.incrementAndGet();
+        for (LinkedHashMap<String, Entry<T>> segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return settings.isEnabled();
+    }
+
+    @Override
+    public CacheStats stats() {
+        int size = 0;
+        for (LinkedHashMap<String, Entry<T>> segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return new CacheStats(hits.sum(), misses.sum(), evictions.sum(), size);
+    }
+
+    @Override
+    public void configure(CacheSettings settings) {
+        this.settings = settings;
+        if (!settings.isEnabled()) {
+            invalidateAll();
+            return;
+        }
+        for (LinkedHashMap<String, Entry<T>> segment : segments) {
+            synchronized (segment) {
+                trim(segment, settings.getMaxSize());
+            }
+        }
+    }
+
+    private LinkedHashMap<String, Entry<T>> segment(String id) {
+        final int h = id.hashCode();
+        return segments.get((h ^ (h >>> 16)) & (SEGMENTS - 1));
+    }
+
+    /**
+     * 每段容量向上取整，总条数最多比maxSize多SEGMENTS - 1条
+     */
+    private void trim(LinkedHashMap<String, Entry<T>> segment, int maxSize) {
+        final int segmentSize = (maxSize + SEGMENTS - 1) / SEGMENTS;
+        for (Iterator<Map.Entry<String, Entry<T>>> it = segment.entrySet().iterator(); segment.size() > segmentSize && it.hasNext(); ) {
+            it.next();
+            it.remove();
+            evictions.increment();
+        }
+    }
+
+    private static final class Entry<T> {
+        private final Cached<T> cached;
+        private final long expireAt;
+
+        private Entry(Cached<T> cached, long expireAt) {
+            this.cached = cached;
+            this.expireAt = expireAt;
+        }
+    }
+}
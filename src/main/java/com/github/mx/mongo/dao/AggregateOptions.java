@@ -0,0 +1,66 @@
+package com.github.mx.mongo.dao;
+
+import com.mongodb.ReadPreference;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 流式聚合选项
+ * <p>
+ * Create by max on 2020/01/16
+ */
+public class AggregateOptions {
+
+    /**
+     * 每批从服务端读取的结果数，小于等于0时使用服务端默认值
+     */
+    private int batchSize = 1000;
+    /**
+     * 是否允许$group、$sort等阶段超出内存限制时写临时文件，为null时使用服务端默认值
+     */
+    private Boolean allowDiskUse;
+    /**
+     * 服务端执行的最长时间，小于等于0时不限制
+     */
+    private long maxTimeMillis;
+    /**
+     * 本次聚合的读路由，为null时使用dao的读路由
+     */
+    private ReadPreference readPreference;
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public AggregateOptions batchSize(int batchSize) {
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    public Boolean getAllowDiskUse() {
+        return allowDiskUse;
+    }
+
+    public AggregateOptions allowDiskUse(boolean allowDiskUse) {
+        this.allowDiskUse = allowDiskUse;
+        return this;
+    }
+
+    public long getMaxTimeMillis() {
+        return maxTimeMillis;
+    }
+
+    public AggregateOptions maxTime(long maxTime, TimeUnit unit) {
+        this.maxTimeMillis = unit.toMillis(maxTime);
+        return this;
+    }
+
+    public ReadPreference getReadPreference() {
+        return readPreference;
+    }
+
+    public AggregateOptions readPreference(ReadPreference readPreference) {
+        this.readPreference = readPreference;
+        return this;
+    }
+}
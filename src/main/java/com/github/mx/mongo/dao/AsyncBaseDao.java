@@ -0,0 +1,186 @@
+package com.github.mx.mongo.dao;
+
+import org.mongodb.morphia.query.Query;
+import org.mongodb.morphia.query.UpdateOperations;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * BaseDao的异步版本，操作在有界线程池上执行，返回CompletableFuture，互不依赖的查询可以并行
+ * <p>
+ * Create by max on 2020/01/16
+ */
+public interface AsyncBaseDao<T> {
+
+    /**
+     * 对应的同步dao
+     *
+     * @return BaseDao
+     */
+    BaseDao<T> getDao();
+
+    /**
+     * 使用指定超时时间的视图，与当前对象共用线程池
+     *
+     * @param timeout 超时时间(包含排队时间)，小于等于0时不限制
+     * @param unit    时间单位
+     * @return 异步dao
+     */
+    AsyncBaseDao<T> withTimeout(long timeout, TimeUnit unit);
+
+    /**
+     * 在线程池上执行任意的同步dao操作
+     *
+     * @param action 操作
+     * @return 操作结果
+     */
+    <R> CompletableFuture<R> submit(Function<BaseDao<T>, R> action);
+
+    /**
+     * 异步保存对象，只能用于新建保存，见{@link BaseDao#insert(Object)}
+     *
+     * @param entity 实体
+     * @return 新建的id
+     */
+    CompletableFuture<String> insert(T entity);
+
+    /**
+     * 异步批量保存
+     *
+     * @param entities 对象集合
+     * @return 全部保存完成时结束
+     */
+    CompletableFuture<Void> insertBatch(List<T> entities);
+
+    /**
+     * 异步分片批量保存，见{@link BaseDao#insertBatch(List, BulkInsertOptions)}
+     *
+     * @param entities 对象集合
+     * @param options  分片大小、并行度、写关注等选项
+     * @return 按分片汇总的插入结果
+     */
+    CompletableFuture<BulkInsertResult> insertBatch(List<T> entities, BulkInsertOptions options);
+
+    /**
+     * 根据逻辑与条件异步查询一条记录
+     *
+     * @param condition 查询条件
+     * @return 实体，不存在时为null
+     */
+    CompletableFuture<T> selectOne(T condition);
+
+    /**
+     * 根据逻辑与条件异步查询列表
+     *
+     * @param condition 查询条件
+     * @return 实体列表
+     */
+    CompletableFuture<List<T>> selectList(T condition);
+
+    /**
+     * 异步查询指定数量
+     *
+     * @param condition 查询条件
+     * @param offset    游标
+     * @param limit     限制条数
+     * @return 实体列表
+     */
+    CompletableFuture<List<T>> selectList(T condition, int offset, int limit);
+
+    /**
+     * 基于游标(keyset)异步分页查询，按_id升序
+     *
+     * @param condition 查询条件
+     * @param token     上一页返回的延续标记，首页传null
+     * @param limit     每页条数，必须大于0
+     * @return 分页结果
+     */
+    CompletableFuture<Page<T>> selectPage(T condition, String token, int limit);
+
+    /**
+     * 根据id异步查询指定记录
+     *
+     * @param id 记录id
+     * @return 实体，不存在时为null
+     */
+    CompletableFuture<T> selectById(String id);
+
+    /**
+     * 根据id列表异步查询指定记录
+     *
+     * @param ids 记录id列表
+     * @return 实体列表
+     */
+    CompletableFuture<List<T>> selectByIds(List<String> ids);
+
+    /**
+     * 根据大量id异步查询记录，以传入的id字符串为key返回，见{@link BaseDao#selectMapByIds(List, SelectByIdsOptions)}
+     *
+     * @param ids     记录id列表
+     * @param options 分片大小、并行度等选项
+     * @return id到实体的映射
+     */
+    CompletableFuture<Map<String, T>> selectMapByIds(List<String> ids, SelectByIdsOptions options);
+
+    /**
+     * 根据逻辑与条件异步查询记录数目
+     *
+     * @param condition 查询条件
+     * @return 记录数目
+     */
+    CompletableFuture<Long> selectCount(T condition);
+
+    /**
+     * 异步判断是否存在满足条件的记录，最多只取一条记录的_id
+     *
+     * @param condition 查询条件
+     * @return 存在为true
+     */
+    CompletableFuture<Boolean> exists(T condition);
+
+    /**
+     * 异步更新
+     *
+     * @param query  查询条件
+     * @param update 需要更新的信息
+     * @return 影响的行数
+     */
+    CompletableFuture<Long> update(Query<T> query, UpdateOperations<T> update);
+
+    /**
+     * 异步更新
+     *
+     * @param entity 需要更新的信息
+     * @param update 更新条件
+     * @return 影响的行数
+     */
+    CompletableFuture<Long> update(T entity, UpdateOperations<T> update);
+
+    /**
+     * 按实体异步更新，只写读出后变化的字段，见{@link BaseDao#update(Object)}
+     *
+     * @param entity 实体，id不能为空
+     * @return 更新的记录数，没有变化时为0
+     */
+    CompletableFuture<Long> update(T entity);
+
+    /**
+     * 异步删除
+     *
+     * @param condition 删除条件
+     * @return 影响的行数
+     */
+    CompletableFuture<Long> delete(T condition);
+
+    /**
+     * 异步删除
+     *
+     * @param query 删除条件
+     * @return 影响的行数
+     */
+    CompletableFuture<Long> delete(Query<T> query);
+}
@@ -0,0 +1,186 @@
+package com.github.mx.mongo.dao;
+
+import com.mongodb.MongoClient;
+import org.mongodb.morphia.query.Query;
+import org.mongodb.morphia.query.UpdateOperations;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 异步dao实现，包装一个同步dao：
+ * <pre>
+ * AsyncBaseDao&lt;Student&gt; asyncDao = new AsyncBaseDaoImpl&lt;&gt;(studentDao);
+ * CompletableFuture&lt;Student&gt; student = asyncDao.selectById(id);
+ * CompletableFuture&lt;Long&gt; count = asyncDao.selectCount(condition);
+ * </pre>
+ * 不指定线程池时使用datastore当前MongoClient共享的线程池，并发数与连接池大小一致；
+ * 每次调用时按当前client取线程池，配置变更重建client后自动切换到新client的线程池
+ * <p>
+ * Create by max on 2020/01/16
+ */
+public class AsyncBaseDaoImpl<T> implements AsyncBaseDao<T> {
+
+    private final BaseDao<T> dao;
+    /**
+     * 指定的线程池，为null时跟随当前client
+     */
+    private final AsyncDaoExecutor executor;
+    private final long timeoutMillis;
+    /**
+     * 最近一次取到的client及其线程池
+     */
+    private volatile Shared shared;
+
+    public AsyncBaseDaoImpl(BaseDao<T> dao) {
+        this(dao, null, new AsyncDaoOptions().getTimeoutMillis());
+    }
+
+    public AsyncBaseDaoImpl(BaseDao<T> dao, AsyncDaoExecutor executor) {
+        this(dao, executor, executor.getOptions().getTimeoutMillis());
+    }
+
+    private AsyncBaseDaoImpl(BaseDao<T> dao, AsyncDaoExecutor executor, long timeoutMillis) {
+        this.dao = dao;
+        this.executor = executor;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    @Override
+    public BaseDao<T> getDao() {
+        return dao;
+    }
+
+    /**
+     * 当前使用的线程池
+     */
+    public AsyncDaoExecutor getExecutor() {
+        if (executor != null) {
+            return executor;
+        }
+        final MongoClient client = dao.getDatastore().getMongo();
+        final Shared current = shared;
+        if (current != null && current.client == client) {
+            return current.executor;
+        }
+        final Shared resolved = new Shared(client, AsyncDaoExecutor.forClient(client));
+        shared = resolved;
+        return resolved.executor;
+    }
+
+    @Override
+    public AsyncBaseDao<T> withTimeout(long timeout, TimeUnit unit) {
+        return new AsyncBaseDaoImpl<>(dao, executor, unit.toMillis(timeout));
+    }
+
+    @Override
+    public <R> CompletableFuture<R> submit(Function<BaseDao<T>, R> action) {
+        return async(() -> action.apply(dao));
+    }
+
+    @Override
+    public CompletableFuture<String> insert(T entity) {
+        return async(() -> dao.insert(entity));
+    }
+
+    @Override
+    public CompletableFuture<Void> insertBatch(List<T> entities) {
+        return async(() -> {
+            dao.insertBatch(entities);
+            return null;
+        });
+    }
+
+    @Override
+    public CompletableFuture<BulkInsertResult> insertBatch(List<T> entities, BulkInsertOptions options) {
+        return async(() -> dao.insertBatch(entities, options));
+    }
+
+    @Override
+    public CompletableFuture<T> selectOne(T condition) {
+        return async(() -> dao.selectOne(condition));
+    }
+
+    @Override
+    public CompletableFuture<List<T>> selectList(T condition) {
+        return async(() -> dao.selectList(condition));
+    }
+
+    @Override
+    public CompletableFuture<List<T>> selectList(T condition, int offset, int limit) {
+        return async(() -> dao.selectList(condition, offset, limit));
+    }
+
+    @Override
+    public CompletableFuture<Page<T>> selectPage(T condition, String token, int limit) {
+        return async(() -> dao.selectPage(condition, token, limit));
+    }
+
+    @Override
+    public CompletableFuture<T> selectById(String id) {
+        return async(() -> dao.selectById(id));
+    }
+
+    @Override
+    public CompletableFuture<List<T>> selectByIds(List<String> ids) {
+        return async(() -> dao.selectByIds(ids));
+    }
+
+    @Override
+    public CompletableFuture<Map<String, T>> selectMapByIds(List<String> ids, SelectByIdsOptions options) {
+        return async(() -> dao.selectMapByIds(ids, options));
+    }
+
+    @Override
+    public CompletableFuture<Long> selectCount(T condition) {
+        return async(() -> dao.selectCount(condition));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> exists(T condition) {
+        return async(() -> dao.exists(condition));
+    }
+
+    @Override
+    public CompletableFuture<Long> update(Query<T> query, UpdateOperations<T> update) {
+        return async(() -> dao.update(query, update));
+    }
+
+    @Override
+    public CompletableFuture<Long> update(T entity, UpdateOperations<T> update) {
+        return async(() -> dao.update(entity, update));
+    }
+
+    @Override
+    public CompletableFuture<Long> update(T entity) {
+        return async(() -> dao.update(entity));
+    }
+
+    @Override
+    public CompletableFuture<Long> delete(T condition) {
+        return async(() -> dao.delete(condition));
+    }
+
+    @Override
+    public CompletableFuture<Long> delete(Query<T> query) {
+        return async(() -> dao.delete(query));
+    }
+
+    private <R> CompletableFuture<R> async(Supplier<R> task) {
+        return getExecutor().submit(task, timeoutMillis);
+    }
+
+    private static final class Shared {
+        private final MongoClient client;
+        private final AsyncDaoExecutor executor;
+
+        private Shared(MongoClient client, AsyncDaoExecutor executor) {
+            this.client = client;
+            this.executor = executor;
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package com.github.mx.mongo.dao;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.mongodb.MongoClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 异步dao使用的有界线程池：并发数固定为threads，排队超过queueCapacity时拒绝，排队深度可通过getQueueDepth观察.
+ * 排队深度持续增长说明连接池已经饱和，继续下去会在mongo.maxWaitTime后抛出等待连接超时
+ * <p>
+ * 超时或取消只会让返回的future结束，排队中的操作不再执行；已经开始执行的操作不会被中断(中断会导致驱动关闭连接)
+ * <p>
+ * Create by max on 2020/01/16
+ */
+public class AsyncDaoExecutor implements Executor, AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(AsyncDaoExecutor.class);
+
+    private static final AtomicInteger SEQUENCE = new AtomicInteger();
+
+    private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("mongo-async-timer-%d").setDaemon(true).build());
+
+    /**
+     * 按MongoClient共享的默认线程池，client关闭时由工厂调用closeShared关闭，未经工厂关闭的client被回收时随之失效
+     */
+    private static final Map<MongoClient, AsyncDaoExecutor> SHARED = new WeakHashMap<>();
+
+    private final AsyncDaoOptions options;
+    /**
+     * 普通线程模式下的线程池
+     */
+    private final ThreadPoolExecutor pool;
+    /**
+     * 虚拟线程模式下每个操作一个虚拟线程，由permits限制并发
+     */
+    private final ThreadFactory virtualFactory;
+    private final Semaphore permits;
+    /**
+     * 虚拟线程模式下已接受(排队或执行中)的操作数上限threads + queueCapacity，获取不到时拒绝
+     */
+    private final Semaphore admission;
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder timedOut = new LongAdder();
+    private volatile boolean closed;
+
+    public AsyncDaoExecutor(AsyncDaoOptions options) {
+        this.options = options;
+        final String prefix = "mongo-async-" + SEQUENCE.incrementAndGet() + "-";
+        this.virtualFactory = options.isVirtualThreads() ? virtualThreadFactory(prefix) : null;
+        if (virtualFactory != null) {
+            this.pool = null;
+            this.permits = new Semaphore(options.getThreads());
+            this.admission = new Semaphore(options.getThreads() + options.getQueueCapacity());
+        } else {
+            this.pool = new ThreadPoolExecutor(options.getThreads(), options.getThreads(), 60, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(options.getQueueCapacity()),
+                    new ThreadFactoryBuilder().setNameFormat(prefix + "%d").setDaemon(true).build());
+            this.pool.allowCoreThreadTimeOut(true);
+            this.permits = null;
+            this.admission = null;
+        }
+    }
+
+    /**
+     * MongoClient对应的默认线程池，并发数与该client每个host的连接数一致
+     *
+     * @param client MongoClient
+     * @return 共享的线程池
+     */
+    public static AsyncDaoExecutor forClient(MongoClient client) {
+        synchronized (SHARED) {
+            return SHARED.computeIfAbsent(client, it -> new AsyncDaoExecutor(new AsyncDaoOptions()
+                    .threads(it.getMongoClientOptions().getConnectionsPerHost())));
+        }
+    }
+
+    /**
+     * MongoClient关闭时调用，关闭其默认线程池；已提交的操作继续执行完，之后的提交被拒绝
+     *
+     * @param client MongoClient
+     */
+    public static void closeShared(MongoClient client) {
+        final AsyncDaoExecutor executor;
+        synchronized (SHARED) {
+            executor = SHARED.remove(client);
+        }
+        if (executor != null) {
+            executor.close();
+        }
+    }
+
+    public AsyncDaoOptions getOptions() {
+        return options;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        if (closed) {
+            throw new RejectedExecutionException("async dao executor is closed");
+        }
+        if (pool != null) {
+            try {
+                pool.execute(command);
+            } catch (RejectedExecutionException e) {
+                rejected.increment();
+                throw new RejectedExecutionException("async dao queue is full, capacity " + options.getQueueCapacity());
+            }
+            return;
+        }
+        if (!admission.tryAcquire()) {
+            rejected.increment();
+            throw new RejectedExecutionException("async dao queue is full, capacity " + options.getQueueCapacity());
+        }
+        queued.incrementAndGet();
+        try {
+            virtualFactory.newThread(() -> {
+                permits.acquireUninterruptibly();
+                queued.decrementAndGet();
+                active.incrementAndGet();
+                try {
+                    command.run();
+                } finally {
+                    active.decrementAndGet();
+                    permits.release();
+                    admission.release();
+                }
+            }).start();
+        } catch (RuntimeException | Error e) {
+            queued.decrementAndGet();
+            admission.release();
+            throw e;
+        }
+    }
+
+    /**
+     * 使用默认超时提交操作
+     */
+    public <R> CompletableFuture<R> submit(Supplier<R> task) {
+        return submit(task, options.getTimeoutMillis());
+    }
+
+    /**
+     * 提交操作，队列已满时返回以RejectedExecutionException失败的future
+     *
+     * @param task          操作
+     * @param timeoutMillis 超时时间，小于等于0时不限制；超时后future以TimeoutException失败
+     * @return 操作结果，依赖的后续操作会在执行线程上运行，耗时的后续处理请使用*Async方法
+     */
+    public <R> CompletableFuture<R> submit(Supplier<R> task, long timeoutMillis) {
+        final CompletableFuture<R> future = new CompletableFuture<>();
+        try {
+            execute(() -> {
+                // 排队期间已经超时或被取消
+                if (future.isDone()) {
+                    return;
+                }
+                try {
+                    future.complete(task.get());
+                } catch (Throwable e) {
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+            return future;
+        }
+        if (timeoutMillis > 0) {
+            final ScheduledFuture<?> timeout = TIMER.schedule(() -> {
+                if (future.completeExceptionally(new TimeoutException("mongo async operation timed out after " + timeoutMillis + " ms"))) {
+                    timedOut.increment();
+                }
+            }, timeoutMillis, TimeUnit.MILLISECONDS);
+            future.whenComplete((result, e) -> timeout.cancel(false));
+        }
+        return future;
+    }
+
+    /**
+     * 排队等待执行的操作数
+     */
+    public int getQueueDepth() {
+        return pool != null ? pool.getQueue().size() : queued.get();
+    }
+
+    /**
+     * 正在执行的操作数
+     */
+    public int getActiveCount() {
+        return pool != null ? pool.getActiveCount() : active.get();
+    }
+
+    /**
+     * 因队列已满被拒绝的累计次数
+     */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * 超时的累计次数
+     */
+    public long getTimeoutCount() {
+        return timedOut.sum();
+    }
+
+    public boolean isVirtualThreads() {
+        return virtualFactory != null;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * 通过反射创建虚拟线程工厂，保持Java 8编译兼容
+     */
+    private static ThreadFactory virtualThreadFactory(String prefix) {
+        try {
+            final Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            final Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            final Object named = builderClass.getMethod("name", String.class, long.class).invoke(builder, prefix, 0L);
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(named);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            log.warn("virtual threads are not available on java {}, using platform threads", System.getProperty("java.version"));
+            return null;
+        }
+    }
+}
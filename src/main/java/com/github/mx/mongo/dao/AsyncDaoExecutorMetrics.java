@@ -0,0 +1,43 @@
+package com.github.mx.mongo.dao;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * 把异步dao线程池的状态注册到Micrometer，micrometer-core需要应用自行引入
+ * <pre>
+ * mongo.async.queue     Gauge，排队等待执行的操作数
+ * mongo.async.active    Gauge，正在执行的操作数
+ * mongo.async.rejected  FunctionCounter，队列已满被拒绝的次数
+ * mongo.async.timeouts  FunctionCounter，超时次数
+ * </pre>
+ * <p>
+ * Create by max on 2020/01/16
+ */
+public class AsyncDaoExecutorMetrics implements MeterBinder {
+
+    private final AsyncDaoExecutor executor;
+    private final String name;
+
+    /**
+     * @param name 区分多个线程池的tag
+     */
+    public AsyncDaoExecutorMetrics(AsyncDaoExecutor executor, String name) {
+        this.executor = executor;
+        this.name = name;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("mongo.async.queue", executor, AsyncDaoExecutor::getQueueDepth)
+                .tags("executor", name).register(registry);
+        Gauge.builder("mongo.async.active", executor, AsyncDaoExecutor::getActiveCount)
+                .tags("executor", name).register(registry);
+        FunctionCounter.builder("mongo.async.rejected", executor, AsyncDaoExecutor::getRejectedCount)
+                .tags("executor", name).register(registry);
+        FunctionCounter.builder("mongo.async.timeouts", executor, AsyncDaoExecutor::getTimeoutCount)
+                .tags("executor", name).register(registry);
+    }
+}
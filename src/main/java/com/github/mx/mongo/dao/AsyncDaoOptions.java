@@ -0,0 +1,70 @@
+package com.github.mx.mongo.dao;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 异步dao线程池选项
+ * <p>
+ * Create by max on 2020/01/16
+ */
+public class AsyncDaoOptions {
+
+    /**
+     * 同时执行的操作数，应与连接池大小(mongo.maxConnectionsPerHost)一致，再大只会在池上排队等待连接
+     */
+    private int threads = 100;
+    /**
+     * 排队等待执行的最大操作数，超出时返回的future以RejectedExecutionException失败
+     */
+    private int queueCapacity = 1000;
+    /**
+     * 默认超时时间(从提交开始计算，包含排队时间)，小于等于0时不限制
+     */
+    private long timeoutMillis;
+    /**
+     * 使用虚拟线程执行(需要Java 21+，低版本退化为普通线程)，并发数仍受threads限制
+     */
+    private boolean virtualThreads;
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public AsyncDaoOptions threads(int threads) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("threads must be positive");
+        }
+        this.threads = threads;
+        return this;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public AsyncDaoOptions queueCapacity(int queueCapacity) {
+        if (queueCapacity <= 0) {
+            throw new IllegalArgumentException("queueCapacity must be positive");
+        }
+        this.queueCapacity = queueCapacity;
+        return this;
+    }
+
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    public AsyncDaoOptions timeout(long timeout, TimeUnit unit) {
+        this.timeoutMillis = unit.toMillis(timeout);
+        return this;
+    }
+
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    public AsyncDaoOptions virtualThreads(boolean virtualThreads) {
+        this.virtualThreads = virtualThreads;
+        return this;
+    }
+}
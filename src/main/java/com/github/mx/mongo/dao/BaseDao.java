@@ -1,10 +1,16 @@
 package com.github.mx.mongo.dao;
 
+import com.mongodb.DBObject;
+import com.mongodb.ReadPreference;
 import org.mongodb.morphia.Datastore;
+import org.mongodb.morphia.query.FindOptions;
 import org.mongodb.morphia.query.Query;
 import org.mongodb.morphia.query.UpdateOperations;
 
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 /**
  * 基础方法
@@ -36,6 +42,17 @@ public interface BaseDao<T> {
      */
     void insertBatch(List<T> entities);
 
+    /**
+     * 分片批量保存.
+     * 按文档数和字节数切分，以bulk write方式提交，多个分片并行执行；默认无序写入，单条失败不影响其他记录.
+     * 只有写入成功的实体才回写id、版本号并触发@PostPersist
+     *
+     * @param entities 对象集合
+     * @param options  分片大小、并行度、写关注等选项
+     * @return 按分片汇总的插入结果
+     */
+    BulkInsertResult insertBatch(List<T> entities, BulkInsertOptions options);
+
     /**
      * 根据逻辑与条件查询一条记录
      *
@@ -52,6 +69,51 @@ public interface BaseDao<T> {
      */
     List<T> selectList(T condition);
 
+    /**
+     * 根据逻辑与条件查询列表，本次查询使用指定的读路由
+     *
+     * @param condition      查询条件
+     * @param readPreference 读路由，例如ReadPreference.secondaryPreferred()
+     * @return 实体列表
+     */
+    List<T> selectList(T condition, ReadPreference readPreference);
+
+    /**
+     * 根据逻辑与条件查询列表，只返回投影中的字段
+     *
+     * @param condition  查询条件
+     * @param projection 字段投影
+     * @return 实体列表，未返回的字段为默认值
+     */
+    List<T> selectList(T condition, Projection projection);
+
+    /**
+     * 根据逻辑与条件查询列表，只查询DTO中与实体同名的字段并转换为DTO
+     *
+     * @param condition 查询条件
+     * @param dtoClass  DTO类型，需要有无参构造器和getter/setter
+     * @return DTO列表
+     */
+    <D> List<D> selectList(T condition, Class<D> dtoClass);
+
+    /**
+     * 根据逻辑与条件查询一条记录，只返回投影中的字段
+     *
+     * @param condition  查询条件
+     * @param projection 字段投影
+     * @return 实体
+     */
+    T selectOne(T condition, Projection projection);
+
+    /**
+     * 根据逻辑与条件查询一条记录并转换为DTO
+     *
+     * @param condition 查询条件
+     * @param dtoClass  DTO类型
+     * @return DTO
+     */
+    <D> D selectOne(T condition, Class<D> dtoClass);
+
     /**
      * 查询指定数量
      *
@@ -62,6 +124,102 @@ public interface BaseDao<T> {
      */
     List<T> selectList(T condition, int offset, int limit);
 
+    /**
+     * 基于游标(keyset)分页查询，按_id升序.
+     * 与offset方式不同，翻页时服务端无需跳过前面的记录，深分页延迟不随页数增长
+     *
+     * @param condition 查询条件
+     * @param token     上一页返回的延续标记，首页传null
+     * @param limit     每页条数，必须大于0
+     * @return 分页结果
+     */
+    Page<T> selectPage(T condition, String token, int limit);
+
+    /**
+     * 基于游标(keyset)分页查询.
+     * 排序字段相同的记录再按_id排序，保证翻页不重不漏；排序字段为null或缺失的记录与MongoDB一致，升序时排在最前
+     *
+     * @param condition 查询条件
+     * @param sortKey   排序字段，前缀"-"表示降序，例如"-age"
+     * @param token     上一页返回的延续标记，首页传null
+     * @param limit     每页条数，必须大于0
+     * @return 分页结果
+     */
+    Page<T> selectPage(T condition, String sortKey, String token, int limit);
+
+    /**
+     * 根据逻辑与条件流式查询，结果按批次从游标读取而不是一次性加载到内存.
+     * 使用完毕必须关闭，建议配合try-with-resources
+     *
+     * @param condition 查询条件
+     * @return 实体流
+     */
+    Stream<T> stream(T condition);
+
+    /**
+     * 根据逻辑与条件流式查询
+     *
+     * @param condition 查询条件
+     * @param options   查询选项，可指定batchSize、noCursorTimeout等
+     * @return 实体流
+     */
+    Stream<T> stream(T condition, FindOptions options);
+
+    /**
+     * 流式查询
+     *
+     * @param query   查询条件
+     * @param options 查询选项，可指定batchSize、noCursorTimeout等
+     * @return 实体流
+     */
+    Stream<T> stream(Query<T> query, FindOptions options);
+
+    /**
+     * 游标迭代查询，遍历结束时自动关闭，中途退出需要调用close
+     *
+     * @param query   查询条件
+     * @param options 查询选项，可指定batchSize、noCursorTimeout等
+     * @return 可关闭的迭代器
+     */
+    CloseableIterator<T> iterator(Query<T> query, FindOptions options);
+
+    /**
+     * 根据逻辑与条件逐条处理记录，处理完毕或异常时关闭游标
+     *
+     * @param condition 查询条件
+     * @param action    处理逻辑
+     */
+    void forEach(T condition, Consumer<? super T> action);
+
+    /**
+     * 根据逻辑与条件逐条处理记录，处理完毕或异常时关闭游标
+     *
+     * @param condition 查询条件
+     * @param options   查询选项，可指定batchSize、noCursorTimeout等
+     * @param action    处理逻辑
+     */
+    void forEach(T condition, FindOptions options, Consumer<? super T> action);
+
+    /**
+     * 流式聚合，结果按批次从游标读取并直接解码为resultClass，不会一次性加载到内存.
+     * 使用完毕必须关闭，建议配合try-with-resources；指标在关闭时按实际读取的条数记录
+     *
+     * @param pipeline    pipeline
+     * @param resultClass 结果类型，实体或DTO，按字段名匹配，_id对应@Id字段(没有时对应id字段)
+     * @return 结果流
+     */
+    <R> Stream<R> aggregate(List<? extends DBObject> pipeline, Class<R> resultClass);
+
+    /**
+     * 流式聚合
+     *
+     * @param pipeline    pipeline
+     * @param resultClass 结果类型，实体或DTO，需要有无参构造器和getter/setter
+     * @param options     batchSize、allowDiskUse、maxTime等选项
+     * @return 结果流
+     */
+    <R> Stream<R> aggregate(List<? extends DBObject> pipeline, Class<R> resultClass, AggregateOptions options);
+
     /**
      * 根据id查询指定记录.
      *
@@ -69,6 +227,22 @@ public interface BaseDao<T> {
      */
     T selectById(String id);
 
+    /**
+     * 根据id查询指定记录，只返回投影中的字段，不经过缓存
+     *
+     * @param id         记录id
+     * @param projection 字段投影
+     */
+    T selectById(String id, Projection projection);
+
+    /**
+     * 根据id查询指定记录并转换为DTO，不经过缓存
+     *
+     * @param id       记录id
+     * @param dtoClass DTO类型
+     */
+    <D> D selectById(String id, Class<D> dtoClass);
+
     /**
      * 根据id列表查询指定记录
      *
@@ -77,14 +251,69 @@ public interface BaseDao<T> {
      */
     List<T> selectByIds(List<String> ids);
 
+    /**
+     * 根据大量id查询记录.
+     * id去重后先查缓存，未命中的切分成多个$in查询并行执行，结果按传入的id顺序返回，不存在的id被忽略
+     *
+     * @param ids     记录id列表
+     * @param options 分片大小、并行度等选项
+     * @return 实体列表
+     */
+    List<T> selectByIds(List<String> ids, SelectByIdsOptions options);
+
+    /**
+     * 根据大量id查询记录，以传入的id字符串为key返回(大小写不同的id都能取到)，迭代顺序与传入的id顺序一致
+     *
+     * @param ids     记录id列表
+     * @param options 分片大小、并行度等选项
+     * @return id到实体的映射
+     */
+    Map<String, T> selectMapByIds(List<String> ids, SelectByIdsOptions options);
+
     /**
      * 根据逻辑与条件查询记录数目.
+     * 条件为空时服务端直接读取集合元数据，不扫描数据，结果与estimatedCount()相同
      *
      * @param condition 查询条件
      * @return 记录数目
      */
     long selectCount(T condition);
 
+    /**
+     * 根据逻辑与条件查询记录数目，本次查询使用指定的读路由
+     *
+     * @param condition      查询条件
+     * @param readPreference 读路由
+     * @return 记录数目
+     */
+    long selectCount(T condition, ReadPreference readPreference);
+
+    /**
+     * 根据逻辑与条件查询记录数目，数到maxCount即停止
+     * 适用于"是否超过N条"的判断，返回值不会大于maxCount
+     *
+     * @param condition 查询条件
+     * @param maxCount  计数上限，小于等于0时不限制
+     * @return 记录数目
+     */
+    long selectCount(T condition, long maxCount);
+
+    /**
+     * 根据集合元数据返回的估算记录数，不扫描数据
+     * 分片集群上存在孤儿文档或迁移中的chunk时可能不准确
+     *
+     * @return 记录数目
+     */
+    long estimatedCount();
+
+    /**
+     * 是否存在满足条件的记录，最多只取一条记录的_id
+     *
+     * @param condition 查询条件
+     * @return 存在返回true
+     */
+    boolean exists(T condition);
+
     /**
      * 更新
      *
@@ -94,6 +323,16 @@ public interface BaseDao<T> {
      */
     long update(Query<T> query, UpdateOperations<T> update);
 
+    /**
+     * 按实体更新，只把读出后变化的字段写成$set(值为null时$unset)，没有变化时不访问数据库.
+     * 需要dao开启isDirtyTracking()，实体须通过dao读出或保存；未跟踪的实体只$set非空字段，不会$unset任何字段.
+     * 实体有@Version字段时按实体当前的版本号更新，读出后被其他人修改过则抛出ConcurrentModificationException
+     *
+     * @param entity 实体，id不能为空
+     * @return 更新的记录数，没有变化时返回0
+     */
+    long update(T entity);
+
     /**
      * 更新
      *
@@ -103,6 +342,21 @@ public interface BaseDao<T> {
      */
     long update(T entity, UpdateOperations<T> update);
 
+    /**
+     * 批量写，累积更新、upsert、替换和删除操作后按分片以bulk write方式提交，默认每1000个操作一个分片、有序执行
+     *
+     * @return 批量写构建器，调用execute()执行
+     */
+    BulkOperation<T> bulk();
+
+    /**
+     * 批量写
+     *
+     * @param options 分片大小、是否有序、写关注等选项
+     * @return 批量写构建器，调用execute()执行
+     */
+    BulkOperation<T> bulk(BulkOperationOptions options);
+
     /**
      * 删除
      *
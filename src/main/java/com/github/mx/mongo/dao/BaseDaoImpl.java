@@ -1,21 +1,46 @@
 package com.github.mx.mongo.dao;
 
+import com.github.mx.mongo.cache.CacheStats;
+import com.github.mx.mongo.cache.DaoCache;
 import com.github.mx.mongo.mapper.EntityMapper;
 import com.github.mx.mongo.mapper.EntityMapperManager;
 import com.github.mx.mongo.mapper.FieldInfo;
+import com.github.mx.mongo.metrics.DaoProbe;
 import com.github.mx.mongo.mongo.DatastoreExt;
-import com.google.common.base.Strings;
 import com.mongodb.AggregationOptions;
+import com.mongodb.BasicDBObject;
 import com.mongodb.Cursor;
+import com.mongodb.DBCollection;
 import com.mongodb.DBObject;
+import com.mongodb.ReadPreference;
+import com.mongodb.client.AggregateIterable;
+import com.mongodb.client.MongoCollection;
+import org.bson.codecs.configuration.CodecRegistries;
+import org.bson.conversions.Bson;
 import org.bson.types.ObjectId;
 import org.mongodb.morphia.mapping.Mapper;
+import org.mongodb.morphia.query.CountOptions;
+import org.mongodb.morphia.query.Criteria;
+import org.mongodb.morphia.query.FieldEnd;
 import org.mongodb.morphia.query.FindOptions;
 import org.mongodb.morphia.query.Query;
+import org.mongodb.morphia.query.Sort;
 import org.mongodb.morphia.query.UpdateOperations;
 
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * 基础方法实现类
@@ -26,10 +51,38 @@ public abstract class BaseDaoImpl<T> implements BaseDao<T> {
 
     private DatastoreExt datastore;
     private Class<T> clazz;
+    private final String dbName;
+    private final String collection;
+    /**
+     * 按id读取的缓存，通过配置mongo.cache.{collection}.enabled按collection开启；
+     * 缓存的是映射后的文档，每次命中都解码出新的实体，调用方之间不共享同一个对象
+     */
+    private final DaoCache<DBObject> cache;
+    /**
+     * 按DTO类型缓存的投影计划
+     */
+    private final Map<Class<?>, DtoProjection<T, ?>> dtoProjections = new ConcurrentHashMap<>();
+    /**
+     * 按结果类型缓存的聚合解码器
+     */
+    private final Map<Class<?>, ResultCodec<?>> resultCodecs = new ConcurrentHashMap<>();
+    /**
+     * 耗时、次数、错误及慢查询埋点，见MongoMetrics
+     */
+    private final DaoProbe probe;
+    /**
+     * 脏字段跟踪，isDirtyTracking()返回true时生效
+     */
+    private final ChangeTracker<T> tracker;
 
     public BaseDaoImpl(DatastoreExt datastoreExt, Class<T> clazz) {
         this.datastore = datastoreExt;
         this.clazz = clazz;
+        this.dbName = datastoreExt.getDB().getName();
+        this.collection = datastoreExt.getCollection(clazz).getName();
+        this.cache = datastoreExt.getDaoCaches().getCache(dbName, collection);
+        this.probe = new DaoProbe(datastoreExt.getMongoMetrics(), getClass().getSimpleName(), collection);
+        this.tracker = new ChangeTracker<>(datastoreExt, clazz);
     }
 
     @Override
@@ -39,27 +92,122 @@ public abstract class BaseDaoImpl<T> implements BaseDao<T> {
 
     @Override
     public String insert(T entity) {
-        return datastore.save(entity).getId().toString();
+        final DaoProbe.Sample sample = probe.start("insert");
+        try {
+            final String id = datastore.save(entity).getId().toString();
+            cache.invalidate(id);
+            track(entity);
+            return sample.stop(id);
+        } catch (RuntimeException e) {
+            throw sample.error(e);
+        }
     }
 
     @Override
     public void insertBatch(List<T> entities) {
-        datastore.insert(entities);
+        final DaoProbe.Sample sample = probe.start("insertBatch");
+        try {
+            datastore.insert(entities);
+            invalidate(entities);
+            track(entities);
+            sample.stop(null);
+        } catch (RuntimeException e) {
+            throw sample.error(e);
+        }
+    }
+
+    @Override
+    public BulkInsertResult insertBatch(List<T> entities, BulkInsertOptions options) {
+        final DaoProbe.Sample sample = probe.start("insertBatch");
+        try {
+            final BulkInsertResult result = new BulkInsertPipeline<>(datastore, clazz).execute(entities, options);
+            return sample.stop(result, result.getInsertedCount());
+        } catch (RuntimeException e) {
+            throw sample.error(e);
+        } finally {
+            // 写入失败的实体不会回写生成的id，也不会有对应的缓存
+            for (T entity : entities) {
+                final String id = idOf(entity);
+                if (id != null) {
+                    cache.invalidate(id);
+                }
+            }
+        }
     }
 
     @Override
     public List<T> selectList(T condition) {
-        final Query<T> query = createQuery(condition);
-        return query.asList();
+        final DaoProbe.Sample sample = probe.start("selectList");
+        try {
+            final Query<T> query = createQuery(condition);
+            return sample.query(query).stop(track(query.asList(findOptions())));
+        } catch (RuntimeException e) {
+            throw sample.error(e);
+        }
+    }
+
+    @Override
+    public List<T> selectList(T condition, ReadPreference readPreference) {
+        final DaoProbe.Sample sample = probe.start("selectList");
+        try {
+            final Query<T> query = createQuery(condition);
+            return sample.query(query).stop(track(query.asList(new FindOptions().readPreference(readPreference))));
+        } catch (RuntimeException e) {
+            throw sample.error(e);
+        }
+    }
+
+    @Override
+    public List<T> selectList(T condition, Projection projection) {
+        final DaoProbe.Sample sample = probe.start("selectList");
+        try {
+            final Query<T> query = projection.apply(createQuery(condition));
+            return sample.query(query).stop(track(query.asList(findOptions())));
+        } catch (RuntimeException e) {
+            throw sample.error(e);
+        }
+    }
+
+    @Override
+    public <D> List<D> selectList(T condition, Class<D> dtoClass) {
+        final DtoProjection<T, D> dtoProjection = dtoProjection(dtoClass);
+        return dtoProjection.convert(selectList(condition, dtoProjection.getProjection()));
+    }
+
+    @Override
+    public T selectOne(T condition, Projection projection) {
+        final DaoProbe.Sample sample = probe.start("selectOne");
+        try {
+            final Query<T> query = projection.apply(createQuery(condition));
+            return sample.query(query).stop(track(single(query.asList(findOptions().limit(2)))));
+        } catch (RuntimeException e) {
+            throw sample.error(e);
+        }
+    }
+
+    @Override
+    public <D> D selectOne(T condition, Class<D> dtoClass) {
+        final DtoProjection<T, D> dtoProjection = dtoProjection(dtoClass);
+        return dtoProjection.convert(selectOne(condition, dtoProjection.getProjection()));
     }
 
     @Override
     public T selectOne(T condition) {
-        List<T> list = this.selectList(condition);
+        final DaoProbe.Sample sample = probe.start("selectOne");
+        try {
+            final Query<T> query = createQuery(condition);
+            // 只需要判断是否多于一条，取两条即可
+            return sample.query(query).stop(track(single(query.asList(findOptions().limit(2)))));
+        } catch (RuntimeException e) {
+            throw sample.error(e);
+        }
+    }
+
+    private T single(List<T> list) {
         if (list.size() == 1) {
             return list.get(0);
         } else if (list.size() > 1) {
-            throw new RuntimeException("Expected one result (or null) to be returned by queryOne(), but found: " + list.size());
+            throw new RuntimeException("Expected one result (or null) to be returned by queryOne(), but found more than one");
         } else {
             return null;
         }
@@ -67,52 +215,573 @@ public abstract class BaseDaoImpl<T> implements BaseDao<T> {
 
     @Override
     public List<T> selectList(T condition, int offset, int limit) {
+        final DaoProbe.Sample sample = probe.start("selectList");
+        try {
+            final Query<T> query = createQuery(condition);
+            FindOptions findOptions = findOptions();
+            findOptions.skip(offset);
+            findOptions.limit(limit);
+            return sample.query(query).stop(track(query.asList(findOptions)));
+        } catch (RuntimeException e) {
+            throw sample.error(e);
+        }
+    }
+
+    @Override
+    public Page<T> selectPage(T condition, String token, int limit) {
+        return selectPage(condition, Mapper.ID_KEY, token, limit);
+    }
+
+    @Override
+    public Page<T> selectPage(T condition, String sortKey, String token, int limit) {
+        final DaoProbe.Sample sample = probe.start("selectPage");
+        try {
+            final Page<T> page = doSelectPage(condition, sortKey, token, limit, sample);
+            track(page.getList());
+            return sample.stop(page, page.getList().size());
+        } catch (RuntimeException e) {
+            throw sample.error(e);
+        }
+    }
+
+    private Page<T> doSelectPage(T condition, String sortKey, String token, int limit, DaoProbe.Sample sample) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("limit must be positive: " + limit);
+        }
+        final EntityMapper<T> entityMapper = EntityMapperManager.INSTANCE.getEntityMapper(clazz);
+        final FieldInfo idField = entityMapper.getIdField();
+        if (idField == null) {
+            throw new IllegalStateException("selectPage requires a field with annotation @Id: " + clazz.getName());
+        }
+        final boolean descending = sortKey.startsWith("-");
+        final String sortField = descending ? sortKey.substring(1) : sortKey;
+        final boolean byId = Mapper.ID_KEY.equals(sortField) || idField.getFieldName().equals(sortField);
+        final FieldInfo sortFieldInfo = byId ? idField : entityMapper.getFieldInfo(sortField);
+        if (sortFieldInfo == null) {
+            throw new IllegalArgumentException(String.format("sort field is not a valid field with getter and setter: %s.%s", clazz.getName(), sortField));
+        }
+
         final Query<T> query = createQuery(condition);
-        FindOptions findOptions = new FindOptions();
-        findOptions.skip(offset);
-        findOptions.limit(limit);
-        return query.asList(findOptions);
+        if (token != null) {
+            final PageToken pageToken = PageToken.decode(token);
+            if (byId) {
+                after(query.criteria(Mapper.ID_KEY), pageToken.getId(), descending);
+            } else {
+                seek(query, sortField, pageToken, descending);
+            }
+        }
+        final Sort idSort = descending ? Sort.descending(Mapper.ID_KEY) : Sort.ascending(Mapper.ID_KEY);
+        if (byId) {
+            query.order(idSort);
+        } else {
+            query.order(descending ? Sort.descending(sortField) : Sort.ascending(sortField), idSort);
+        }
+
+        // 多取一条用来判断是否还有下一页
+        sample.query(query);
+        final List<T> list = query.asList(findOptions().limit(limit + 1));
+        if (list.size() <= limit) {
+            return new Page<>(list, null);
+        }
+        final List<T> page = new ArrayList<>(list.subList(0, limit));
+        final T last = page.get(limit - 1);
+        final Object lastValue = byId ? null : sortFieldInfo.getValue(last);
+        return new Page<>(page, new PageToken(lastValue, toStoredId(idField.getValue(last))).encode());
+    }
+
+    /**
+     * 排序字段值大于(降序时小于)上一页最后一条，或相等且_id在其后；
+     * null和缺失字段排在所有值之前，升序时null之后是全部非null值，降序时非null值之后是全部null
+     */
+    private void seek(Query<T> query, String sortField, PageToken pageToken, boolean descending) {
+        final Object value = pageToken.getValue();
+        final Criteria sameValue = query.and(query.criteria(sortField).equal(value),
+                after(query.criteria(Mapper.ID_KEY), pageToken.getId(), descending));
+        if (value == null) {
+            if (descending) {
+                query.and(sameValue);
+            } else {
+                query.or(query.criteria(sortField).notEqual(null), sameValue);
+            }
+        } else if (descending) {
+            query.or(after(query.criteria(sortField), value, true), sameValue, query.criteria(sortField).equal(null));
+        } else {
+            query.or(after(query.criteria(sortField), value, false), sameValue);
+        }
+    }
+
+    private static Criteria after(FieldEnd<? extends Criteria> field, Object value, boolean descending) {
+        return descending ? field.lessThan(value) : field.greaterThan(value);
+    }
+
+    /**
+     * 实体中字符串形式的id在库中以ObjectId存储
+     */
+    private static Object toStoredId(Object id) {
+        if (id instanceof String && ObjectId.isValid((String) id)) {
+            return new ObjectId((String) id);
+        }
+        return id;
+    }
+
+    @Override
+    public Stream<T> stream(T condition) {
+        return stream(condition, new FindOptions());
+    }
+
+    @Override
+    public Stream<T> stream(T condition, FindOptions options) {
+        return stream(createQuery(condition), options);
+    }
+
+    @Override
+    public Stream<T> stream(Query<T> query, FindOptions options) {
+        final CloseableIterator<T> iterator = iterator(query, options);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(iterator::close);
+    }
+
+    @Override
+    public CloseableIterator<T> iterator(Query<T> query, FindOptions options) {
+        final ReadPreference readPreference = options.getReadPreference() == null ? readPreference() : null;
+        return new CloseableIterator<>(query.fetch(readPreference == null ? options : options.copy().readPreference(readPreference)),
+                isDirtyTracking() ? tracker::track : null);
+    }
+
+    @Override
+    public void forEach(T condition, Consumer<? super T> action) {
+        forEach(condition, new FindOptions(), action);
+    }
+
+    @Override
+    public void forEach(T condition, FindOptions options, Consumer<? super T> action) {
+        try (CloseableIterator<T> iterator = iterator(createQuery(condition), options)) {
+            iterator.forEachRemaining(action);
+        }
+    }
+
+    @Override
+    public <R> Stream<R> aggregate(List<? extends DBObject> pipeline, Class<R> resultClass) {
+        return aggregate(pipeline, resultClass, new AggregateOptions());
+    }
+
+    @Override
+    public <R> Stream<R> aggregate(List<? extends DBObject> pipeline, Class<R> resultClass, AggregateOptions options) {
+        final DaoProbe.Sample sample = probe.start("aggregate");
+        try {
+            MongoCollection<BasicDBObject> collection = mongoCollection();
+            final ReadPreference readPreference = options.getReadPreference() != null ? options.getReadPreference() : readPreference();
+            if (readPreference != null) {
+                collection = collection.withReadPreference(readPreference);
+            }
+            final ResultCodec<R> codec = resultCodec(resultClass, collection);
+            final List<Bson> stages = new ArrayList<>(pipeline.size());
+            pipeline.forEach(stage -> stages.add(stage instanceof Bson ? (Bson) stage : new BasicDBObject(stage.toMap())));
+            final AggregateIterable<R> iterable = collection
+                    .withCodecRegistry(CodecRegistries.fromRegistries(CodecRegistries.fromCodecs(codec), collection.getCodecRegistry()))
+                    .aggregate(stages, resultClass)
+                    .useCursor(true);
+            if (options.getBatchSize() > 0) {
+                iterable.batchSize(options.getBatchSize());
+            }
+            if (options.getAllowDiskUse() != null) {
+                iterable.allowDiskUse(options.getAllowDiskUse());
+            }
+            if (options.getMaxTimeMillis() > 0) {
+                iterable.maxTime(options.getMaxTimeMillis(), TimeUnit.MILLISECONDS);
+            }
+            // 关闭流时按实际读取的条数记录
+            final SampledCursor<R> cursor = new SampledCursor<>(iterable.iterator(), sample);
+            return StreamSupport.stream(Spliterators.spliteratorUnknownSize(cursor, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                    .onClose(cursor::close);
+        } catch (RuntimeException e) {
+            throw sample.error(e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <R> ResultCodec<R> resultCodec(Class<R> resultClass, MongoCollection<?> collection) {
+        return (ResultCodec<R>) resultCodecs.computeIfAbsent(resultClass, it -> new ResultCodec<>(it, datastore, collection.getCodecRegistry()));
     }
 
     @Override
     public T selectById(String id) {
-        final Query<T> query = createQuery();
-        query.field(Mapper.ID_KEY).equal(new ObjectId(id));
-        return query.get();
+        final DaoProbe.Sample sample = probe.start("selectById");
+        try {
+            final DaoCache.Cached<DBObject> cached = cache.get(id);
+            if (cached != null) {
+                return sample.stop(track(fromCached(cached)));
+            }
+            final long version = cache.version();
+            final Query<T> query = createQuery();
+            query.field(Mapper.ID_KEY).equal(new ObjectId(id));
+            final T entity = sample.query(query).stop(query.get(findOptions()));
+            cache.put(id, toCached(entity), version);
+            return track(entity);
+        } catch (RuntimeException e) {
+            throw sample.error(e);
+        }
+    }
+
+    @Override
+    public T selectById(String id, Projection projection) {
+        final DaoProbe.Sample sample = probe.start("selectById");
+        try {
+            final Query<T> query = createQuery();
+            query.field(Mapper.ID_KEY).equal(new ObjectId(id));
+            return sample.query(query).stop(track(projection.apply(query).get(findOptions())));
+        } catch (RuntimeException e) {
+            throw sample.error(e);
+        }
+    }
+
+    @Override
+    public <D> D selectById(String id, Class<D> dtoClass) {
+        final DtoProjection<T, D> dtoProjection = dtoProjection(dtoClass);
+        return dtoProjection.convert(selectById(id, dtoProjection.getProjection()));
+    }
+
+    @SuppressWarnings("unchecked")
+    private <D> DtoProjection<T, D> dtoProjection(Class<D> dtoClass) {
+        return (DtoProjection<T, D>) dtoProjections.computeIfAbsent(dtoClass, it -> new DtoProjection<>(clazz, it));
     }
 
     @Override
     public List<T> selectByIds(List<String> ids) {
-        final Query<T> query = createQuery();
-        List<ObjectId> objectIds = ids.stream().map(ObjectId::new).collect(Collectors.toList());
-        query.field(Mapper.ID_KEY).in(objectIds);
-        return query.asList();
+        final DaoProbe.Sample sample = probe.start("selectByIds");
+        try {
+            return sample.stop(track(doSelectByIds(ids)));
+        } catch (RuntimeException e) {
+            throw sample.error(e);
+        }
+    }
+
+    private List<T> doSelectByIds(List<String> ids) {
+        if (!cache.isEnabled()) {
+            return createQueryByIds(ids).asList(findOptions());
+        }
+        final long version = cache.version();
+        final Map<String, T> resolved = new LinkedHashMap<>();
+        final List<String> missing = new ArrayList<>();
+        for (String id : new LinkedHashSet<>(ids)) {
+            final DaoCache.Cached<DBObject> cached = cache.get(id);
+            if (cached == null) {
+                missing.add(id);
+            }
+            resolved.put(id, cached == null ? null : fromCached(cached));
+        }
+        if (!missing.isEmpty()) {
+            for (T entity : createQueryByIds(missing).asList(findOptions())) {
+                resolved.put(idOf(entity), entity);
+            }
+            missing.forEach(id -> cache.put(id, toCached(resolved.get(id)), version));
+        }
+        final List<T> result = new ArrayList<>(resolved.size());
+        resolved.values().forEach(entity -> {
+            if (entity != null) {
+                result.add(entity);
+            }
+        });
+        return result;
+    }
+
+    @Override
+    public List<T> selectByIds(List<String> ids, SelectByIdsOptions options) {
+        return new ArrayList<>(selectMapByIds(ids, options).values());
+    }
+
+    @Override
+    public Map<String, T> selectMapByIds(List<String> ids, SelectByIdsOptions options) {
+        final DaoProbe.Sample sample = probe.start("selectMapByIds");
+        try {
+            final Map<String, T> result = new SelectByIdsFanOut<>(this, clazz).select(ids, options);
+            if (isDirtyTracking()) {
+                result.values().forEach(tracker::track);
+            }
+            return sample.stop(result);
+        } catch (RuntimeException e) {
+            throw sample.error(e);
+        }
     }
 
     @Override
     public long selectCount(T condition) {
-        final Query<T> query = createQuery(condition);
-        return datastore.getCount(query);
+        return selectCount(condition, readPreference());
+    }
+
+    @Override
+    public long selectCount(T condition, ReadPreference readPreference) {
+        final DaoProbe.Sample sample = probe.start("selectCount");
+        try {
+            final Query<T> query = createQuery(condition);
+            return sample.query(query).stop(datastore.getCount(query, new CountOptions().readPreference(readPreference)));
+        } catch (RuntimeException e) {
+            throw sample.error(e);
+        }
+    }
+
+    @Override
+    public long selectCount(T condition, long maxCount) {
+        if (maxCount <= 0) {
+            return selectCount(condition);
+        }
+        final DaoProbe.Sample sample = probe.start("selectCount");
+        try {
+            final Query<T> query = createQuery(condition);
+            return sample.query(query).stop(datastore.getCount(query, new CountOptions()
+                    .limit((int) Math.min(maxCount, Integer.MAX_VALUE)).readPreference(readPreference())));
+        } catch (RuntimeException e) {
+            throw sample.error(e);
+        }
+    }
+
+    @Override
+    public long estimatedCount() {
+        final DaoProbe.Sample sample = probe.start("estimatedCount");
+        try {
+            return sample.stop(collectionCount(readPreference()));
+        } catch (RuntimeException e) {
+            throw sample.error(e);
+        }
+    }
+
+    private long collectionCount(ReadPreference readPreference) {
+        final DBCollection dbCollection = datastore.getCollection(clazz);
+        return readPreference == null ? dbCollection.getCount() : dbCollection.getCount(readPreference);
+    }
+
+    @Override
+    public boolean exists(T condition) {
+        final DaoProbe.Sample sample = probe.start("exists");
+        try {
+            final Query<T> query = createQuery(condition);
+            return sample.query(query).stop(query.getKey(findOptions().limit(1)) != null);
+        } catch (RuntimeException e) {
+            throw sample.error(e);
+        }
     }
 
     @Override
     public long delete(T condition) {
-        return datastore.delete(condition).getN();
+        final DaoProbe.Sample sample = probe.start("delete");
+        try {
+            return sample.stop(datastore.delete(condition).getN());
+        } catch (RuntimeException e) {
+            throw sample.error(e);
+        } finally {
+            invalidate(condition);
+        }
     }
 
     @Override
     public long delete(Query<T> query) {
-        return datastore.delete(query).getN();
+        final DaoProbe.Sample sample = probe.start("delete");
+        try {
+            return sample.query(query).stop(datastore.delete(query).getN());
+        } catch (RuntimeException e) {
+            throw sample.error(e);
+        } finally {
+            cache.invalidateAll();
+        }
+    }
+
+    @Override
+    public long update(T entity) {
+        final DaoProbe.Sample sample = probe.start("update");
+        try {
+            final FieldInfo idField = EntityMapperManager.INSTANCE.getEntityMapper(clazz).getIdField();
+            final Object id = idField == null ? null : idField.getValue(entity);
+            if (id == null) {
+                throw new IllegalArgumentException("update(entity) requires a non-null @Id: " + clazz.getName());
+            }
+            final UpdateOperations<T> operations = createUpdateOperations();
+            final Object[] snapshot = tracker.diff(entity, operations);
+            if (snapshot == null) {
+                return sample.stop(0L);
+            }
+            final Query<T> query = createQuery();
+            query.field(Mapper.ID_KEY).equal(toStoredId(id));
+            final boolean versioned = tracker.lock(entity, query);
+            sample.query(query);
+            final long updated = datastore.update(query, operations).getUpdatedCount();
+            if (updated == 0 && versioned) {
+                throw new ConcurrentModificationException(String.format("entity %s:%s was modified or deleted since it was loaded", clazz.getSimpleName(), id));
+            }
+            tracker.commit(entity, snapshot);
+            return sample.stop(updated);
+        } catch (RuntimeException e) {
+            throw sample.error(e);
+        } finally {
+            invalidate(entity);
+        }
     }
 
     @Override
     public long update(T entity, UpdateOperations<T> operations) {
-        return datastore.update(entity, operations).getUpdatedCount();
+        final DaoProbe.Sample sample = probe.start("update");
+        try {
+            return sample.stop(datastore.update(entity, operations).getUpdatedCount());
+        } catch (RuntimeException e) {
+            throw sample.error(e);
+        } finally {
+            invalidate(entity);
+        }
     }
 
     @Override
     public long update(Query<T> query, UpdateOperations<T> update) {
-        return datastore.update(query, update).getUpdatedCount();
+        final DaoProbe.Sample sample = probe.start("update");
+        try {
+            return sample.query(query).stop(datastore.update(query, update).getUpdatedCount());
+        } catch (RuntimeException e) {
+            throw sample.error(e);
+        } finally {
+            cache.invalidateAll();
+        }
+    }
+
+    @Override
+    public BulkOperation<T> bulk() {
+        return bulk(new BulkOperationOptions());
+    }
+
+    @Override
+    public BulkOperation<T> bulk(BulkOperationOptions options) {
+        return new BulkOperation<>(this, clazz, options);
+    }
+
+    /**
+     * 以BasicDBObject读写的driver collection，与映射后的文档格式一致
+     */
+    MongoCollection<BasicDBObject> mongoCollection() {
+        return datastore.getMongo().getDatabase(datastore.getDB().getName())
+                .getCollection(datastore.getCollection(clazz).getName(), BasicDBObject.class);
+    }
+
+    /**
+     * 本dao的缓存，未开启时读写都不生效
+     */
+    DaoCache<DBObject> cache() {
+        return cache;
+    }
+
+    BulkOperationResult execute(BulkOperation<T> operation) {
+        if (operation.size() == 0) {
+            return new BulkOperationResult(new ArrayList<>());
+        }
+        final DaoProbe.Sample sample = probe.start("bulk");
+        try {
+            return sample.stop(operation.write(mongoCollection()), operation.size());
+        } catch (RuntimeException e) {
+            throw sample.error(e);
+        } finally {
+            cache.invalidateAll();
+        }
+    }
+
+    /**
+     * 按id读取缓存的统计
+     */
+    public CacheStats getCacheStats() {
+        return cache.stats();
+    }
+
+    /**
+     * 失效实体对应的缓存，实体没有id时失效整个缓存
+     */
+    private void invalidate(T entity) {
+        final String id = idOf(entity);
+        if (id == null) {
+            cache.invalidateAll();
+        } else {
+            cache.invalidate(id);
+        }
+    }
+
+    private void invalidate(List<T> entities) {
+        entities.forEach(this::invalidate);
+    }
+
+    private T track(T entity) {
+        if (isDirtyTracking()) {
+            tracker.track(entity);
+        }
+        return entity;
+    }
+
+    private List<T> track(List<T> entities) {
+        if (isDirtyTracking()) {
+            entities.forEach(tracker::track);
+        }
+        return entities;
+    }
+
+    DBObject toCached(T entity) {
+        return entity == null ? null : datastore.getMapper().toDBObject(entity);
+    }
+
+    T fromCached(DaoCache.Cached<DBObject> cached) {
+        final DBObject document = cached.get();
+        if (document == null) {
+            return null;
+        }
+        final Mapper mapper = datastore.getMapper();
+        return mapper.fromDBObject(datastore, clazz, document, mapper.createEntityCache());
+    }
+
+    private String idOf(T entity) {
+        final FieldInfo idField = EntityMapperManager.INSTANCE.getEntityMapper(clazz).getIdField();
+        if (idField == null) {
+            return null;
+        }
+        final Object id = idField.getValue(entity);
+        return id == null ? null : id.toString();
+    }
+
+    /**
+     * 当前dao默认的读路由，子类覆盖此方法把读请求发往从节点，例如报表类dao：
+     * <pre>
+     * protected ReadPreference getReadPreference() {
+     *     return ReadPreference.secondaryPreferred(120, TimeUnit.SECONDS);
+     * }
+     * </pre>
+     * 配置中心按collection配置的mongo.read.{collection}.*优先，单次调用指定的ReadPreference再优先
+     *
+     * @return 为null时使用连接配置的mongo.readPreference
+     */
+    protected ReadPreference getReadPreference() {
+        return null;
+    }
+
+    /**
+     * 是否跟踪dao读出的实体，开启后update(entity)只写出变化的字段.
+     * 每个读出的实体都会多保存一份快照，只在需要按实体更新的dao上开启：
+     * <pre>
+     * protected boolean isDirtyTracking() {
+     *     return true;
+     * }
+     * </pre>
+     *
+     * @return 默认false
+     */
+    protected boolean isDirtyTracking() {
+        return false;
+    }
+
+    /**
+     * 实际使用的读路由，为null时不设置
+     */
+    ReadPreference readPreference() {
+        final ReadPreference routed = datastore.getReadRoutes().get(dbName, collection);
+        return routed != null ? routed : getReadPreference();
+    }
+
+    /**
+     * 带读路由的查询选项
+     */
+    FindOptions findOptions() {
+        final ReadPreference readPreference = readPreference();
+        return readPreference == null ? new FindOptions() : new FindOptions().readPreference(readPreference);
     }
 
     @Override
@@ -128,31 +797,52 @@ public abstract class BaseDaoImpl<T> implements BaseDao<T> {
     public Query<T> createQuery(T condition) {
         final EntityMapper<T> entityMapper = EntityMapperManager.INSTANCE.getEntityMapper(clazz);
         final Query<T> query = createQuery();
-        try {
-            final String id = (String) entityMapper.getIdField().getGetterMethod().invoke(condition);
+        final FieldInfo idField = entityMapper.getIdField();
+        if (idField != null) {
+            final Object id = idField.getValue(condition);
             if (id != null) {
-                query.field(Mapper.ID_KEY).equal(new ObjectId(id));
-            }
-            for (final FieldInfo fieldInfo : entityMapper.getFieldInfos()) {
-                if (!fieldInfo.getFieldName().equals(entityMapper.getIdField().getFieldName())) {
-                    final Object fieldValue = fieldInfo.getGetterMethod().invoke(condition);
-                    if (fieldValue instanceof String) {
-                        if (!Strings.isNullOrEmpty((String) fieldValue)) {
-                            query.field(fieldInfo.getFieldName()).equal(fieldValue);
-                        }
-                    } else {
-                        if (null != fieldValue) {
-                            query.field(fieldInfo.getFieldName()).equal(fieldValue);
-                        }
-                    }
+                query.field(Mapper.ID_KEY).equal(id instanceof ObjectId ? id : new ObjectId((String) id));
+            }
+        }
+        for (final FieldInfo fieldInfo : entityMapper.getConditionFields()) {
+            final Object fieldValue = fieldInfo.getValue(condition);
+            if (fieldValue instanceof String) {
+                if (!((String) fieldValue).isEmpty()) {
+                    query.field(fieldInfo.getFieldName()).equal(fieldValue);
                 }
+            } else if (null != fieldValue) {
+                query.field(fieldInfo.getFieldName()).equal(fieldValue);
             }
-        } catch (Exception e) {
-            throw new RuntimeException(e);
         }
         return query;
     }
 
+    /**
+     * insertBatch提交前的映射与切分，与insertBatch按同样的规则切分，不访问数据库也不修改实体
+     *
+     * @param entities 对象集合
+     * @param options  分片大小等选项
+     * @return 各分片的文档
+     */
+    public List<List<DBObject>> toInsertChunks(List<T> entities, BulkInsertOptions options) {
+        final List<List<DBObject>> chunks = new ArrayList<>();
+        new InsertChunks<>(entities, datastore.getMapper(), options, new ArrayList<>(entities.size())).forEachRemaining(chunks::add);
+        return chunks;
+    }
+
+    /**
+     * 根据id列表创建查询
+     *
+     * @param ids 记录id列表
+     * @return Query
+     */
+    public Query<T> createQueryByIds(List<String> ids) {
+        final Query<T> query = createQuery();
+        List<ObjectId> objectIds = ids.stream().map(ObjectId::new).collect(Collectors.toList());
+        query.field(Mapper.ID_KEY).in(objectIds);
+        return query;
+    }
+
     /**
      * 聚合查询
      *
@@ -161,6 +851,8 @@ public abstract class BaseDaoImpl<T> implements BaseDao<T> {
      * @return
      */
     public Cursor aggregate(final List<? extends DBObject> pipeline, final AggregationOptions options) {
-        return datastore.getCollection(clazz).aggregate(pipeline, options);
+        final ReadPreference readPreference = readPreference();
+        final DBCollection dbCollection = datastore.getCollection(clazz);
+        return readPreference == null ? dbCollection.aggregate(pipeline, options) : dbCollection.aggregate(pipeline, options, readPreference);
     }
 }
\ No newline at end of file
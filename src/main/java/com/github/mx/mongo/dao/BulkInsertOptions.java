@@ -0,0 +1,98 @@
+package com.github.mx.mongo.dao;
+
+import com.mongodb.WriteConcern;
+
+import java.util.concurrent.Executor;
+
+/**
+ * 批量插入选项
+ * <p>
+ * Create by max on 2020/01/16
+ */
+public class BulkInsertOptions {
+
+    /**
+     * 每个分片最多的文档数
+     */
+    private int chunkSize = 1000;
+    /**
+     * 每个分片最多的BSON字节数，小于等于0时不按字节切分
+     */
+    private int maxChunkBytes = 8 * 1024 * 1024;
+    /**
+     * 同时在执行的分片数
+     */
+    private int parallelism = 4;
+    /**
+     * 是否有序写入，有序时遇到第一个错误即停止，且分片串行执行
+     */
+    private boolean ordered;
+    /**
+     * 写关注，为null时使用collection默认值
+     */
+    private WriteConcern writeConcern;
+    /**
+     * 执行分片的线程池，为null时使用内置的共享线程池
+     */
+    private Executor executor;
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public BulkInsertOptions chunkSize(int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize must be positive");
+        }
+        this.chunkSize = chunkSize;
+        return this;
+    }
+
+    public int getMaxChunkBytes() {
+        return maxChunkBytes;
+    }
+
+    public BulkInsertOptions maxChunkBytes(int maxChunkBytes) {
+        this.maxChunkBytes = maxChunkBytes;
+        return this;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public BulkInsertOptions parallelism(int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("parallelism must be positive");
+        }
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    public boolean isOrdered() {
+        return ordered;
+    }
+
+    public BulkInsertOptions ordered(boolean ordered) {
+        this.ordered = ordered;
+        return this;
+    }
+
+    public WriteConcern getWriteConcern() {
+        return writeConcern;
+    }
+
+    public BulkInsertOptions writeConcern(WriteConcern writeConcern) {
+        this.writeConcern = writeConcern;
+        return this;
+    }
+
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    public BulkInsertOptions executor(Executor executor) {
+        this.executor = executor;
+        return this;
+    }
+}
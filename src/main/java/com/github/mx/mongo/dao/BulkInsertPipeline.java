@@ -0,0 +1,155 @@
+package com.github.mx.mongo.dao;
+
+import com.github.mx.mongo.mongo.DatastoreExt;
+import com.mongodb.BulkWriteError;
+import com.mongodb.BulkWriteException;
+import com.mongodb.BulkWriteOperation;
+import com.mongodb.BulkWriteResult;
+import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
+import org.mongodb.morphia.annotations.PostPersist;
+import org.mongodb.morphia.mapping.Mapper;
+import org.mongodb.morphia.mapping.cache.EntityCache;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Collectors;
+
+/**
+ * 批量插入流水线：调用线程负责映射和切分，分片以bulk write方式提交，同时在执行的分片数受parallelism限制。
+ * 全部分片结束后，只有写入成功的实体才回写id、版本号并触发@PostPersist
+ * <p>
+ * Create by max on 2020/01/16
+ */
+class BulkInsertPipeline<T> {
+
+    private final DatastoreExt datastore;
+    private final Class<T> clazz;
+
+    BulkInsertPipeline(DatastoreExt datastore, Class<T> clazz) {
+        this.datastore = datastore;
+        this.clazz = clazz;
+    }
+
+    BulkInsertResult execute(List<T> entities, BulkInsertOptions options) {
+        final Mapper mapper = datastore.getMapper();
+        final List<DBObject> documents = new ArrayList<>(entities.size());
+        final BulkInsertResult result = write(entities, documents, mapper, options);
+        afterInsert(result, entities, documents, mapper);
+        return result;
+    }
+
+    private BulkInsertResult write(List<T> entities, List<DBObject> documents, Mapper mapper, BulkInsertOptions options) {
+        final DBCollection collection = datastore.getCollection(clazz);
+        // 有序写入时分片之间也必须串行
+        final int parallelism = options.isOrdered() ? 1 : options.getParallelism();
+        final Semaphore inFlight = new Semaphore(parallelism);
+        final List<CompletableFuture<BulkInsertResult.ChunkResult>> futures = new ArrayList<>();
+
+        final InsertChunks<T> chunks = new InsertChunks<>(entities, mapper, options, documents);
+        while (chunks.hasNext()) {
+            if (!submit(collection, chunks.next(), chunks.offset(), options, inFlight, futures)) {
+                return collect(futures, chunks.offset(), entities.size());
+            }
+        }
+        return collect(futures, entities.size(), entities.size());
+    }
+
+    /**
+     * 与Morphia的save一致，写入成功后把id和版本号回写到实体并触发@PostPersist；失败或未执行的实体保持原样
+     */
+    private void afterInsert(BulkInsertResult result, List<T> entities, List<DBObject> documents, Mapper mapper) {
+        final EntityCache cache = mapper.createEntityCache();
+        for (BulkInsertResult.ChunkResult chunk : result.getChunks()) {
+            final Set<Integer> skipped = new HashSet<>(chunk.getFailedIndexes());
+            skipped.addAll(chunk.getUnexecutedIndexes());
+            for (int i = chunk.getOffset(); i < chunk.getOffset() + chunk.getSize() && i < documents.size(); i++) {
+                if (!skipped.contains(i)) {
+                    final T entity = entities.get(i);
+                    final DBObject document = documents.get(i);
+                    mapper.updateKeyAndVersionInfo(datastore, document, cache, entity);
+                    mapper.getMappedClass(entity).callLifecycleMethods(PostPersist.class, entity, document, mapper);
+                }
+            }
+        }
+    }
+
+    /**
+     * 提交一个分片，有序写入且之前的分片已失败或有未执行的记录时返回false，不再提交
+     */
+    private boolean submit(DBCollection collection, List<DBObject> chunk, int offset, BulkInsertOptions options,
+                           Semaphore inFlight, List<CompletableFuture<BulkInsertResult.ChunkResult>> futures) {
+        if (options.isOrdered() && !futures.isEmpty()) {
+            final BulkInsertResult.ChunkResult previous = futures.get(futures.size() - 1).join();
+            if (!previous.getFailedIndexes().isEmpty() || !previous.getUnexecutedIndexes().isEmpty()) {
+                return false;
+            }
+        }
+        if (options.isOrdered() || options.getParallelism() == 1) {
+            futures.add(CompletableFuture.completedFuture(write(collection, chunk, offset, options)));
+            return true;
+        }
+        inFlight.acquireUninterruptibly();
+        try {
+            futures.add(CompletableFuture.supplyAsync(() -> write(collection, chunk, offset, options),
+                    options.getExecutor() == null ? DaoExecutors.SHARED : options.getExecutor())
+                    .whenComplete((result, e) -> inFlight.release()));
+        } catch (RuntimeException e) {
+            inFlight.release();
+            throw e;
+        }
+        return true;
+    }
+
+    private BulkInsertResult.ChunkResult write(DBCollection collection, List<DBObject> chunk, int offset, BulkInsertOptions options) {
+        final BulkWriteOperation bulk = options.isOrdered()
+                ? collection.initializeOrderedBulkOperation()
+                : collection.initializeUnorderedBulkOperation();
+        chunk.forEach(bulk::insert);
+        try {
+            final BulkWriteResult result = options.getWriteConcern() == null ? bulk.execute() : bulk.execute(options.getWriteConcern());
+            final int inserted = result.isAcknowledged() ? result.getInsertedCount() : chunk.size();
+            return new BulkInsertResult.ChunkResult(offset, chunk.size(), inserted, Collections.emptyList(), Collections.emptyList(),
+                    Collections.emptyList(), null);
+        } catch (BulkWriteException e) {
+            final List<BulkWriteError> errors = e.getWriteErrors().stream()
+                    .map(it -> new BulkWriteError(it.getCode(), it.getMessage(), it.getDetails(), offset + it.getIndex()))
+                    .collect(Collectors.toList());
+            final List<Integer> failed = errors.stream().map(BulkWriteError::getIndex).collect(Collectors.toList());
+            // 有序写入时服务端在第一个错误处停止
+            final List<Integer> unexecuted = options.isOrdered() && !failed.isEmpty()
+                    ? range(failed.get(0) + 1, offset + chunk.size())
+                    : Collections.emptyList();
+            final int inserted = e.getWriteResult().isAcknowledged() ? e.getWriteResult().getInsertedCount() : 0;
+            return new BulkInsertResult.ChunkResult(offset, chunk.size(), inserted, failed, unexecuted, errors, null);
+        } catch (RuntimeException e) {
+            return new BulkInsertResult.ChunkResult(offset, chunk.size(), 0, range(offset, offset + chunk.size()),
+                    Collections.emptyList(), Collections.emptyList(), e);
+        }
+    }
+
+    /**
+     * 汇总已提交的分片，[unexecutedFrom, size)为有序写入失败后没有提交的记录，合为一个分片结果
+     */
+    private BulkInsertResult collect(List<CompletableFuture<BulkInsertResult.ChunkResult>> futures, int unexecutedFrom, int size) {
+        final List<BulkInsertResult.ChunkResult> chunks = futures.stream().map(CompletableFuture::join).collect(Collectors.toList());
+        if (unexecutedFrom < size) {
+            chunks.add(new BulkInsertResult.ChunkResult(unexecutedFrom, size - unexecutedFrom, 0, Collections.emptyList(),
+                    range(unexecutedFrom, size), Collections.emptyList(), null));
+        }
+        return new BulkInsertResult(chunks);
+    }
+
+    private static List<Integer> range(int from, int to) {
+        final List<Integer> indexes = new ArrayList<>(Math.max(to - from, 0));
+        for (int i = from; i < to; i++) {
+            indexes.add(i);
+        }
+        return indexes;
+    }
+}
@@ -0,0 +1,133 @@
+package com.github.mx.mongo.dao;
+
+import com.mongodb.BulkWriteError;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 批量插入结果，按分片汇总
+ * <p>
+ * Create by max on 2020/01/16
+ */
+public class BulkInsertResult {
+
+    private final List<ChunkResult> chunks;
+
+    public BulkInsertResult(List<ChunkResult> chunks) {
+        this.chunks = Collections.unmodifiableList(chunks);
+    }
+
+    public List<ChunkResult> getChunks() {
+        return chunks;
+    }
+
+    public int getInsertedCount() {
+        int count = 0;
+        for (ChunkResult chunk : chunks) {
+            count += chunk.getInsertedCount();
+        }
+        return count;
+    }
+
+    /**
+     * 插入失败的记录在原始列表中的下标
+     */
+    public List<Integer> getFailedIndexes() {
+        final List<Integer> indexes = new ArrayList<>();
+        chunks.forEach(chunk -> indexes.addAll(chunk.getFailedIndexes()));
+        Collections.sort(indexes);
+        return indexes;
+    }
+
+    /**
+     * 有序写入遇到错误后没有执行的记录在原始列表中的下标，可以据此重试
+     */
+    public List<Integer> getUnexecutedIndexes() {
+        final List<Integer> indexes = new ArrayList<>();
+        chunks.forEach(chunk -> indexes.addAll(chunk.getUnexecutedIndexes()));
+        return indexes;
+    }
+
+    /**
+     * 单条文档的错误，下标为原始列表中的下标
+     */
+    public List<BulkWriteError> getWriteErrors() {
+        final List<BulkWriteError> errors = new ArrayList<>();
+        chunks.forEach(chunk -> errors.addAll(chunk.getWriteErrors()));
+        return errors;
+    }
+
+    public boolean isSuccess() {
+        return chunks.stream().allMatch(chunk -> chunk.getFailedIndexes().isEmpty() && chunk.getUnexecutedIndexes().isEmpty());
+    }
+
+    /**
+     * 单个分片的执行结果
+     */
+    public static class ChunkResult {
+
+        private final int offset;
+        private final int size;
+        private final int insertedCount;
+        private final List<Integer> failedIndexes;
+        private final List<Integer> unexecutedIndexes;
+        private final List<BulkWriteError> writeErrors;
+        private final Exception error;
+
+        public ChunkResult(int offset, int size, int insertedCount, List<Integer> failedIndexes, List<Integer> unexecutedIndexes,
+                           List<BulkWriteError> writeErrors, Exception error) {
+            this.offset = offset;
+            this.size = size;
+            this.insertedCount = insertedCount;
+            this.failedIndexes = failedIndexes;
+            this.unexecutedIndexes = unexecutedIndexes;
+            this.writeErrors = writeErrors;
+            this.error = error;
+        }
+
+        /**
+         * 分片第一条记录在原始列表中的下标
+         */
+        public int getOffset() {
+            return offset;
+        }
+
+        public int getSize() {
+            return size;
+        }
+
+        public int getInsertedCount() {
+            return insertedCount;
+        }
+
+        /**
+         * 失败记录在原始列表中的下标
+         */
+        public List<Integer> getFailedIndexes() {
+            return failedIndexes;
+        }
+
+        /**
+         * 没有执行的记录在原始列表中的下标：有序写入时出错记录之后的记录，以及之后的全部记录
+         */
+        public List<Integer> getUnexecutedIndexes() {
+            return unexecutedIndexes;
+        }
+
+        /**
+         * 单条文档的错误，下标为原始列表中的下标
+         */
+        public List<BulkWriteError> getWriteErrors() {
+            return writeErrors;
+        }
+
+        /**
+         * 分片整体失败(非单条文档错误，例如网络异常)时的异常
+         */
+        public Exception getError() {
+            return error;
+        }
+    }
+}
@@ -0,0 +1,271 @@
+package com.github.mx.mongo.dao;
+
+import com.github.mx.mongo.mapper.EntityMapperManager;
+import com.github.mx.mongo.mapper.FieldInfo;
+import com.github.mx.mongo.util.QueryUtils;
+import com.mongodb.BasicDBObject;
+import com.mongodb.BulkWriteError;
+import com.mongodb.DBObject;
+import com.mongodb.DBObjectCodec;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.MongoClient;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.DeleteManyModel;
+import com.mongodb.client.model.DeleteOneModel;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.UpdateManyModel;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.WriteModel;
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentReader;
+import org.bson.codecs.DecoderContext;
+import org.bson.types.ObjectId;
+import org.mongodb.morphia.mapping.MappedField;
+import org.mongodb.morphia.mapping.Mapper;
+import org.mongodb.morphia.query.Query;
+import org.mongodb.morphia.query.UpdateOperations;
+import org.mongodb.morphia.query.UpdateOpsImpl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * 批量写：先累积更新、upsert、替换和删除操作，execute()时按分片以MongoCollection.bulkWrite提交，每个分片一次往返.
+ * 条件可以是Query，也可以是按例查询的实体(非空字段逻辑与)
+ * <pre>
+ * BulkOperationResult result = studentDao.bulk()
+ *         .update(condition, studentDao.createUpdateOperations().set("status", 1))
+ *         .delete(studentDao.createQuery().field("expired").equal(true))
+ *         .execute();
+ * </pre>
+ * 分片按添加顺序串行执行；实体有@Version字段时，与Morphia的update一样，更新操作会把版本号加一
+ * <p>
+ * Create by max on 2020/01/16
+ */
+public class BulkOperation<T> {
+
+    private final BaseDaoImpl<T> dao;
+    private final Class<T> clazz;
+    private final BulkOperationOptions options;
+    private static final DBObjectCodec DETAILS_CODEC = new DBObjectCodec(MongoClient.getDefaultCodecRegistry());
+
+    private final List<WriteModel<BasicDBObject>> requests = new ArrayList<>();
+
+    BulkOperation(BaseDaoImpl<T> dao, Class<T> clazz, BulkOperationOptions options) {
+        this.dao = dao;
+        this.clazz = clazz;
+        this.options = options;
+    }
+
+    /**
+     * 更新满足条件的全部记录
+     */
+    public BulkOperation<T> update(Query<T> query, UpdateOperations<T> update) {
+        requests.add(new UpdateManyModel<>(QueryUtils.filter(query), ops(update)));
+        return this;
+    }
+
+    /**
+     * 按例更新满足条件的全部记录
+     */
+    public BulkOperation<T> update(T condition, UpdateOperations<T> update) {
+        return update(dao.createQuery(condition), update);
+    }
+
+    /**
+     * 只更新满足条件的第一条记录
+     */
+    public BulkOperation<T> updateOne(Query<T> query, UpdateOperations<T> update) {
+        requests.add(new UpdateOneModel<>(QueryUtils.filter(query), ops(update)));
+        return this;
+    }
+
+    /**
+     * 更新满足条件的第一条记录，不存在时以条件中的等值字段加上更新内容插入一条
+     */
+    public BulkOperation<T> upsert(Query<T> query, UpdateOperations<T> update) {
+        requests.add(new UpdateOneModel<>(QueryUtils.filter(query), ops(update), new UpdateOptions().upsert(true)));
+        return this;
+    }
+
+    /**
+     * 按例upsert
+     */
+    public BulkOperation<T> upsert(T condition, UpdateOperations<T> update) {
+        return upsert(dao.createQuery(condition), update);
+    }
+
+    /**
+     * 用实体整体替换满足条件的第一条记录
+     */
+    public BulkOperation<T> replace(Query<T> query, T entity) {
+        requests.add(new ReplaceOneModel<>(QueryUtils.filter(query), document(entity)));
+        return this;
+    }
+
+    /**
+     * 按id整体替换记录
+     *
+     * @param entity 实体，id不能为空
+     * @param upsert 记录不存在时是否插入
+     */
+    public BulkOperation<T> replace(T entity, boolean upsert) {
+        requests.add(new ReplaceOneModel<>(new BasicDBObject(Mapper.ID_KEY, storedId(entity)), document(entity),
+                new UpdateOptions().upsert(upsert)));
+        return this;
+    }
+
+    /**
+     * 删除满足条件的全部记录
+     */
+    public BulkOperation<T> delete(Query<T> query) {
+        requests.add(new DeleteManyModel<>(QueryUtils.filter(query)));
+        return this;
+    }
+
+    /**
+     * 按例删除满足条件的全部记录，条件为空时会删除全部记录
+     */
+    public BulkOperation<T> delete(T condition) {
+        return delete(dao.createQuery(condition));
+    }
+
+    /**
+     * 只删除满足条件的第一条记录
+     */
+    public BulkOperation<T> deleteOne(Query<T> query) {
+        requests.add(new DeleteOneModel<>(QueryUtils.filter(query)));
+        return this;
+    }
+
+    /**
+     * 已添加的操作数
+     */
+    public int size() {
+        return requests.size();
+    }
+
+    /**
+     * 执行已添加的全部操作，没有操作时不访问数据库
+     *
+     * @return 按分片汇总的结果
+     */
+    public BulkOperationResult execute() {
+        return dao.execute(this);
+    }
+
+    /**
+     * 按分片串行提交，有序执行时分片失败后停止，之后的操作记为未执行
+     */
+    BulkOperationResult write(MongoCollection<BasicDBObject> collection) {
+        if (options.getWriteConcern() != null) {
+            collection = collection.withWriteConcern(options.getWriteConcern());
+        }
+        final List<BulkOperationResult.ChunkResult> chunks = new ArrayList<>();
+        boolean stopped = false;
+        for (int offset = 0; offset < requests.size(); offset += options.getChunkSize()) {
+            final int end = Math.min(offset + options.getChunkSize(), requests.size());
+            if (stopped) {
+                chunks.add(new BulkOperationResult.ChunkResult(offset, end - offset, 0, 0, 0, 0,
+                        Collections.emptyList(), range(offset, end), Collections.emptyList(), null));
+                continue;
+            }
+            final BulkOperationResult.ChunkResult chunk = write(collection, requests.subList(offset, end), offset);
+            chunks.add(chunk);
+            stopped = options.isOrdered() && !chunk.getFailedIndexes().isEmpty();
+        }
+        return new BulkOperationResult(chunks);
+    }
+
+    private BulkOperationResult.ChunkResult write(MongoCollection<BasicDBObject> collection, List<WriteModel<BasicDBObject>> chunk, int offset) {
+        try {
+            final BulkWriteResult result = collection.bulkWrite(chunk, new BulkWriteOptions().ordered(options.isOrdered()));
+            return chunkResult(offset, chunk.size(), result, Collections.emptyList(), Collections.emptyList(), Collections.emptyList());
+        } catch (MongoBulkWriteException e) {
+            final List<BulkWriteError> errors = e.getWriteErrors().stream()
+                    .map(it -> new BulkWriteError(it.getCode(), it.getMessage(), details(it.getDetails()), offset + it.getIndex()))
+                    .collect(Collectors.toList());
+            final List<Integer> failed = errors.stream().map(BulkWriteError::getIndex).collect(Collectors.toList());
+            // 有序执行时服务端在第一个错误处停止
+            final List<Integer> unexecuted = options.isOrdered() && !failed.isEmpty()
+                    ? range(failed.get(0) + 1, offset + chunk.size())
+                    : Collections.emptyList();
+            return chunkResult(offset, chunk.size(), e.getWriteResult(), failed, unexecuted, errors);
+        } catch (RuntimeException e) {
+            return new BulkOperationResult.ChunkResult(offset, chunk.size(), 0, 0, 0, 0,
+                    range(offset, offset + chunk.size()), Collections.emptyList(), Collections.emptyList(), e);
+        }
+    }
+
+    private static BulkOperationResult.ChunkResult chunkResult(int offset, int size, BulkWriteResult result, List<Integer> failed,
+                                                               List<Integer> unexecuted, List<BulkWriteError> errors) {
+        if (!result.wasAcknowledged()) {
+            return new BulkOperationResult.ChunkResult(offset, size, 0, 0, 0, 0, failed, unexecuted, errors, null);
+        }
+        return new BulkOperationResult.ChunkResult(offset, size, result.getMatchedCount(),
+                result.isModifiedCountAvailable() ? result.getModifiedCount() : 0,
+                result.getUpserts().size(), result.getDeletedCount(), failed, unexecuted, errors, null);
+    }
+
+    private static DBObject details(BsonDocument details) {
+        return details == null || details.isEmpty() ? new BasicDBObject()
+                : DETAILS_CODEC.decode(new BsonDocumentReader(details), DecoderContext.builder().build());
+    }
+
+    private static List<Integer> range(int from, int to) {
+        final List<Integer> indexes = new ArrayList<>(Math.max(to - from, 0));
+        for (int i = from; i < to; i++) {
+            indexes.add(i);
+        }
+        return indexes;
+    }
+
+    /**
+     * 添加时复制更新内容：getOps()只是浅拷贝，调用方复用同一个UpdateOperations时不能影响已添加的操作；
+     * 版本号自增只加在副本上，不修改调用方的对象
+     */
+    private BasicDBObject ops(UpdateOperations<T> update) {
+        if (!(update instanceof UpdateOpsImpl)) {
+            throw new IllegalArgumentException("bulk update requires UpdateOperations created by the dao or datastore, got "
+                    + (update == null ? null : update.getClass().getName()));
+        }
+        final DBObject source = ((UpdateOpsImpl<?>) update).getOps();
+        final BasicDBObject ops = new BasicDBObject();
+        for (String operator : source.keySet()) {
+            final Object value = source.get(operator);
+            // 各操作符下的字段在Morphia中是普通Map
+            ops.put(operator, value instanceof Map ? new BasicDBObject((Map<?, ?>) value)
+                    : value instanceof DBObject ? new BasicDBObject(((DBObject) value).toMap()) : value);
+        }
+        final MappedField version = dao.getDatastore().getMapper().getMappedClass(clazz).getMappedVersionField();
+        if (version != null) {
+            BasicDBObject inc = (BasicDBObject) ops.get("$inc");
+            if (inc == null) {
+                inc = new BasicDBObject();
+                ops.put("$inc", inc);
+            }
+            inc.put(version.getNameToStore(), 1);
+        }
+        return ops;
+    }
+
+    private BasicDBObject document(T entity) {
+        final DBObject document = dao.getDatastore().getMapper().toDBObject(entity);
+        return document instanceof BasicDBObject ? (BasicDBObject) document : new BasicDBObject(document.toMap());
+    }
+
+    private Object storedId(T entity) {
+        final FieldInfo idField = EntityMapperManager.INSTANCE.getEntityMapper(clazz).getIdField();
+        final Object id = idField == null ? null : idField.getValue(entity);
+        if (id == null) {
+            throw new IllegalArgumentException("replace(entity) requires a non-null @Id: " + clazz.getName());
+        }
+        return id instanceof String && ObjectId.isValid((String) id) ? new ObjectId((String) id) : id;
+    }
+}
@@ -0,0 +1,55 @@
+package com.github.mx.mongo.dao;
+
+import com.mongodb.WriteConcern;
+
+/**
+ * 批量写选项
+ * <p>
+ * Create by max on 2020/01/16
+ */
+public class BulkOperationOptions {
+
+    /**
+     * 每个分片最多的操作数
+     */
+    private int chunkSize = 1000;
+    /**
+     * 是否有序执行，有序时遇到第一个错误即停止，后续分片不再执行；
+     * 无序时服务端会按操作类型分组执行，同一文档上的多个操作不保证先后
+     */
+    private boolean ordered = true;
+    /**
+     * 写关注，为null时使用collection默认值
+     */
+    private WriteConcern writeConcern;
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public BulkOperationOptions chunkSize(int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize must be positive");
+        }
+        this.chunkSize = chunkSize;
+        return this;
+    }
+
+    public boolean isOrdered() {
+        return ordered;
+    }
+
+    public BulkOperationOptions ordered(boolean ordered) {
+        this.ordered = ordered;
+        return this;
+    }
+
+    public WriteConcern getWriteConcern() {
+        return writeConcern;
+    }
+
+    public BulkOperationOptions writeConcern(WriteConcern writeConcern) {
+        this.writeConcern = writeConcern;
+        return this;
+    }
+}
@@ -0,0 +1,160 @@
+package com.github.mx.mongo.dao;
+
+import com.mongodb.BulkWriteError;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 批量写结果，按分片汇总
+ * <p>
+ * Create by max on 2020/01/16
+ */
+public class BulkOperationResult {
+
+    private final List<ChunkResult> chunks;
+
+    public BulkOperationResult(List<ChunkResult> chunks) {
+        this.chunks = Collections.unmodifiableList(chunks);
+    }
+
+    public List<ChunkResult> getChunks() {
+        return chunks;
+    }
+
+    public int getMatchedCount() {
+        return chunks.stream().mapToInt(ChunkResult::getMatchedCount).sum();
+    }
+
+    public int getModifiedCount() {
+        return chunks.stream().mapToInt(ChunkResult::getModifiedCount).sum();
+    }
+
+    public int getUpsertedCount() {
+        return chunks.stream().mapToInt(ChunkResult::getUpsertedCount).sum();
+    }
+
+    public int getDeletedCount() {
+        return chunks.stream().mapToInt(ChunkResult::getDeletedCount).sum();
+    }
+
+    /**
+     * 失败的操作在添加顺序中的下标
+     */
+    public List<Integer> getFailedIndexes() {
+        final List<Integer> indexes = new ArrayList<>();
+        chunks.forEach(chunk -> indexes.addAll(chunk.getFailedIndexes()));
+        Collections.sort(indexes);
+        return indexes;
+    }
+
+    /**
+     * 有序执行遇到错误后没有执行的操作在添加顺序中的下标，可以据此重试
+     */
+    public List<Integer> getUnexecutedIndexes() {
+        final List<Integer> indexes = new ArrayList<>();
+        chunks.forEach(chunk -> indexes.addAll(chunk.getUnexecutedIndexes()));
+        return indexes;
+    }
+
+    /**
+     * 单条操作的错误，下标为添加顺序中的下标
+     */
+    public List<BulkWriteError> getWriteErrors() {
+        final List<BulkWriteError> errors = new ArrayList<>();
+        chunks.forEach(chunk -> errors.addAll(chunk.getWriteErrors()));
+        return errors;
+    }
+
+    public boolean isSuccess() {
+        return chunks.stream().allMatch(chunk -> chunk.getFailedIndexes().isEmpty() && chunk.getUnexecutedIndexes().isEmpty());
+    }
+
+    /**
+     * 单个分片的执行结果，写关注为UNACKNOWLEDGED时各计数均为0
+     */
+    public static class ChunkResult {
+
+        private final int offset;
+        private final int size;
+        private final int matchedCount;
+        private final int modifiedCount;
+        private final int upsertedCount;
+        private final int deletedCount;
+        private final List<Integer> failedIndexes;
+        private final List<Integer> unexecutedIndexes;
+        private final List<BulkWriteError> writeErrors;
+        private final Exception error;
+
+        public ChunkResult(int offset, int size, int matchedCount, int modifiedCount, int upsertedCount, int deletedCount,
+                           List<Integer> failedIndexes, List<Integer> unexecutedIndexes, List<BulkWriteError> writeErrors,
+                           Exception error) {
+            this.offset = offset;
+            this.size = size;
+            this.matchedCount = matchedCount;
+            this.modifiedCount = modifiedCount;
+            this.upsertedCount = upsertedCount;
+            this.deletedCount = deletedCount;
+            this.failedIndexes = failedIndexes;
+            this.unexecutedIndexes = unexecutedIndexes;
+            this.writeErrors = writeErrors;
+            this.error = error;
+        }
+
+        /**
+         * 分片第一个操作在添加顺序中的下标
+         */
+        public int getOffset() {
+            return offset;
+        }
+
+        public int getSize() {
+            return size;
+        }
+
+        public int getMatchedCount() {
+            return matchedCount;
+        }
+
+        public int getModifiedCount() {
+            return modifiedCount;
+        }
+
+        public int getUpsertedCount() {
+            return upsertedCount;
+        }
+
+        public int getDeletedCount() {
+            return deletedCount;
+        }
+
+        /**
+         * 失败的操作在添加顺序中的下标
+         */
+        public List<Integer> getFailedIndexes() {
+            return failedIndexes;
+        }
+
+        /**
+         * 没有执行的操作在添加顺序中的下标：有序执行时出错操作之后的操作，以及之后整个分片
+         */
+        public List<Integer> getUnexecutedIndexes() {
+            return unexecutedIndexes;
+        }
+
+        /**
+         * 单条操作的错误，下标为添加顺序中的下标
+         */
+        public List<BulkWriteError> getWriteErrors() {
+            return writeErrors;
+        }
+
+        /**
+         * 分片整体失败(非单条操作错误，例如网络异常)时的异常
+         */
+        public Exception getError() {
+            return error;
+        }
+    }
+}
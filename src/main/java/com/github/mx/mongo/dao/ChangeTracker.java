@@ -0,0 +1,158 @@
+package com.github.mx.mongo.dao;
+
+import com.github.mx.mongo.mapper.EntityMapper;
+import com.github.mx.mongo.mapper.EntityMapperManager;
+import com.github.mx.mongo.mapper.FieldInfo;
+import com.github.mx.mongo.mongo.DatastoreExt;
+import com.google.common.collect.MapMaker;
+import org.mongodb.morphia.mapping.MappedClass;
+import org.mongodb.morphia.mapping.MappedField;
+import org.mongodb.morphia.mapping.Mapper;
+import org.mongodb.morphia.query.Query;
+import org.mongodb.morphia.query.UpdateOperations;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 脏字段跟踪：dao读出实体时按字段保存快照，update(entity)时与快照比较，只把变化的字段写成$set/$unset
+ * <p>
+ * 快照以实体对象本身(==)为key弱引用保存，实体不再使用后随GC回收。快照中的值已转换为存储形式，
+ * 集合、内嵌对象的原地修改同样能比较出来
+ * <p>
+ * Create by max on 2020/01/16
+ */
+final class ChangeTracker<T> {
+
+    private final DatastoreExt datastore;
+    private final Class<T> clazz;
+    private final Map<T, Object[]> snapshots = new MapMaker().weakKeys().makeMap();
+    private volatile Fields fields;
+
+    ChangeTracker(DatastoreExt datastore, Class<T> clazz) {
+        this.datastore = datastore;
+        this.clazz = clazz;
+    }
+
+    /**
+     * 记录实体当前的状态，已经跟踪的实体保留原来的快照
+     */
+    void track(T entity) {
+        if (entity != null) {
+            snapshots.computeIfAbsent(entity, this::snapshot);
+        }
+    }
+
+    /**
+     * 比较实体与快照，把变化的字段写入ops
+     *
+     * @return 更新成功后应保存的新快照，没有变化时返回null
+     */
+    Object[] diff(T entity, UpdateOperations<T> ops) {
+        final Fields fields = fields();
+        final Object[] before = snapshots.get(entity);
+        final Object[] after = snapshot(entity);
+        boolean changed = false;
+        for (int i = 0; i < fields.infos.length; i++) {
+            final String name = fields.infos[i].getFieldName();
+            final Object value = fields.infos[i].getValue(entity);
+            if (before == null) {
+                // 未跟踪的实体(例如投影读出或手工构造)不知道哪些字段原本有值，只写非空字段，不做$unset
+                if (value != null) {
+                    ops.set(name, value);
+                    changed = true;
+                }
+                continue;
+            }
+            if (Objects.deepEquals(before[i], after[i])) {
+                continue;
+            }
+            if (value == null) {
+                ops.unset(name);
+            } else {
+                ops.set(name, value);
+            }
+            changed = true;
+        }
+        return changed ? after : null;
+    }
+
+    /**
+     * 有@Version字段时按实体当前的版本号加乐观锁，版本号由Morphia在更新时自增
+     *
+     * @return 是否加了版本条件
+     */
+    boolean lock(T entity, Query<T> query) {
+        final MappedField version = fields().version;
+        if (version == null) {
+            return false;
+        }
+        query.field(version.getNameToStore()).equal(version.getFieldValue(entity));
+        return true;
+    }
+
+    /**
+     * 更新成功后保存新快照并把实体的版本号加一
+     */
+    void commit(T entity, Object[] snapshot) {
+        final MappedField version = fields().version;
+        if (version != null) {
+            final Object current = version.getFieldValue(entity);
+            version.setFieldValue(entity, current == null ? 1L : ((Number) current).longValue() + 1);
+        }
+        snapshots.put(entity, snapshot);
+    }
+
+    private Object[] snapshot(T entity) {
+        final Fields fields = fields();
+        final Mapper mapper = datastore.getMapper();
+        final Object[] values = new Object[fields.infos.length];
+        for (int i = 0; i < values.length; i++) {
+            final Object value = fields.infos[i].getValue(entity);
+            if (value != null) {
+                final Object stored = mapper.toMongoObject(fields.mapped[i], null, value);
+                values[i] = stored instanceof Date ? new Date(((Date) stored).getTime()) : stored;
+            }
+        }
+        return values;
+    }
+
+    private Fields fields() {
+        Fields resolved = fields;
+        if (resolved == null) {
+            resolved = new Fields(EntityMapperManager.INSTANCE.getEntityMapper(clazz), datastore.getMapper().getMappedClass(clazz));
+            fields = resolved;
+        }
+        return resolved;
+    }
+
+    /**
+     * 参与比较的字段：有getter/setter且由Morphia持久化，不含id和版本号
+     */
+    private static final class Fields {
+        private final FieldInfo[] infos;
+        private final MappedField[] mapped;
+        private final MappedField version;
+
+        private Fields(EntityMapper<?> entityMapper, MappedClass mappedClass) {
+            this.version = mappedClass.getMappedVersionField();
+            final FieldInfo idField = entityMapper.getIdField();
+            final List<FieldInfo> infos = new ArrayList<>();
+            final List<MappedField> mapped = new ArrayList<>();
+            for (FieldInfo fieldInfo : entityMapper.getFieldInfos()) {
+                final MappedField mappedField = mappedClass.getMappedFieldByJavaField(fieldInfo.getFieldName());
+                if (mappedField == null || fieldInfo == idField || Mapper.ID_KEY.equals(mappedField.getNameToStore())
+                        || (version != null && mappedField.getJavaFieldName().equals(version.getJavaFieldName()))) {
+                    continue;
+                }
+                infos.add(fieldInfo);
+                mapped.add(mappedField);
+            }
+            this.infos = infos.toArray(new FieldInfo[0]);
+            this.mapped = mapped.toArray(new MappedField[0]);
+        }
+    }
+}
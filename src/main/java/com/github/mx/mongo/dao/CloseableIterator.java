@@ -0,0 +1,63 @@
+package com.github.mx.mongo.dao;
+
+import org.mongodb.morphia.query.MorphiaIterator;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+
+/**
+ * 可关闭的游标迭代器，遍历结束或调用close时释放服务端游标
+ * <p>
+ * Create by max on 2020/01/16
+ */
+public class CloseableIterator<T> implements Iterator<T>, AutoCloseable {
+
+    private final MorphiaIterator<T, T> cursor;
+    /**
+     * 每条记录返回前的回调，可为null
+     */
+    private final Consumer<? super T> onNext;
+    private boolean closed;
+
+    public CloseableIterator(MorphiaIterator<T, T> cursor) {
+        this(cursor, null);
+    }
+
+    CloseableIterator(MorphiaIterator<T, T> cursor, Consumer<? super T> onNext) {
+        this.cursor = cursor;
+        this.onNext = onNext;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (closed) {
+            return false;
+        }
+        if (cursor.hasNext()) {
+            return true;
+        }
+        close();
+        return false;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        final T next = cursor.next();
+        if (onNext != null) {
+            onNext.accept(next);
+        }
+        return next;
+    }
+
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            cursor.close();
+        }
+    }
+}
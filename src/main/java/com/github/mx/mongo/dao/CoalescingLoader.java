@@ -0,0 +1,216 @@
+package com.github.mx.mongo.dao;
+
+import com.github.mx.mongo.mongo.DatastoreExt;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 合并按id读取：任意线程的selectById先进入队列，攒够maxBatchSize个或等待maxDelayMillis后合并成一次$in查询，再把结果分发给各自的调用方
+ * <p>
+ * 同一个id已经在排队或查询中时直接共用同一个结果(single-flight)。查询走selectMapByIds，不经过按id读取的缓存
+ * <p>
+ * Create by max on 2020/01/16
+ */
+public class CoalescingLoader<T> implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(CoalescingLoader.class);
+
+    private final BaseDao<T> dao;
+    private final CoalescingOptions options;
+    private final SelectByIdsOptions selectOptions;
+    private final BlockingQueue<String> queue = new LinkedBlockingQueue<>();
+    private final Map<String, CompletableFuture<T>> inFlight = new ConcurrentHashMap<>();
+    private final Semaphore running;
+    private final Thread dispatcher;
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private volatile boolean closed;
+
+    public CoalescingLoader(BaseDao<T> dao) {
+        this(dao, new CoalescingOptions());
+    }
+
+    public CoalescingLoader(BaseDao<T> dao, CoalescingOptions options) {
+        this.dao = dao;
+        this.options = options;
+        this.selectOptions = new SelectByIdsOptions().chunkSize(options.getMaxBatchSize()).parallelism(1);
+        this.running = new Semaphore(options.getParallelism());
+        this.dispatcher = new Thread(this::run, "mongo-coalescing-" + dao.getClass().getSimpleName());
+        this.dispatcher.setDaemon(true);
+        this.dispatcher.start();
+        if (dao.getDatastore() instanceof DatastoreExt) {
+            ((DatastoreExt) dao.getDatastore()).addCloseable(this);
+        }
+    }
+
+    /**
+     * 根据id查询记录，阻塞到所在批次查询完成
+     *
+     * @param id 记录id
+     * @return 实体，不存在时返回null
+     */
+    public T selectById(String id) {
+        try {
+            return load(id).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 根据id异步查询记录
+     *
+     * @param id 记录id
+     * @return 所在批次查询完成后返回实体，不存在时为null
+     */
+    public CompletableFuture<T> load(String id) {
+        requests.increment();
+        if (!ObjectId.isValid(id)) {
+            final CompletableFuture<T> failed = new CompletableFuture<>();
+            failed.completeExceptionally(new IllegalArgumentException("invalid ObjectId: " + id));
+            return failed;
+        }
+        final CompletableFuture<T> existing = inFlight.get(id);
+        if (existing != null) {
+            return existing;
+        }
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        final CompletableFuture<T> raced = inFlight.putIfAbsent(id, future);
+        if (raced != null) {
+            return raced;
+        }
+        if (closed) {
+            inFlight.remove(id, future);
+            future.completeExceptionally(new IllegalStateException("coalescing loader is closed"));
+            return future;
+        }
+        queue.add(id);
+        // 关闭与入队并发时，dispatcher可能已经退出
+        if (closed && !dispatcher.isAlive() && queue.remove(id)) {
+            fail(Collections.singletonList(id), new IllegalStateException("coalescing loader is closed"));
+        }
+        return future;
+    }
+
+    /**
+     * 累计的selectById调用次数
+     */
+    public long getRequestCount() {
+        return requests.sum();
+    }
+
+    /**
+     * 累计发出的查询次数
+     */
+    public long getBatchCount() {
+        return batches.sum();
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        dispatcher.interrupt();
+        try {
+            dispatcher.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // 关闭后到达的id在当前线程查完
+        final List<String> rest = new ArrayList<>();
+        while (queue.drainTo(rest, options.getMaxBatchSize()) > 0) {
+            select(rest);
+            rest.clear();
+        }
+        if (dao.getDatastore() instanceof DatastoreExt) {
+            ((DatastoreExt) dao.getDatastore()).removeCloseable(this);
+        }
+    }
+
+    private void run() {
+        final List<String> batch = new ArrayList<>(options.getMaxBatchSize());
+        while (!closed) {
+            try {
+                batch.add(queue.take());
+                final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(options.getMaxDelayMillis());
+                while (batch.size() < options.getMaxBatchSize()) {
+                    queue.drainTo(batch, options.getMaxBatchSize() - batch.size());
+                    final long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= options.getMaxBatchSize() || remaining <= 0) {
+                        break;
+                    }
+                    final String next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next != null) {
+                        batch.add(next);
+                    }
+                }
+                dispatch(new ArrayList<>(batch));
+            } catch (InterruptedException e) {
+                // 关闭时剩余的id由close处理
+                queue.addAll(batch);
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.error("coalescing dispatch failed", e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void dispatch(List<String> ids) throws InterruptedException {
+        running.acquire();
+        try {
+            CompletableFuture.runAsync(() -> select(ids), options.getExecutor() == null ? DaoExecutors.SHARED : options.getExecutor())
+                    .whenComplete((result, e) -> running.release());
+        } catch (RuntimeException e) {
+            running.release();
+            fail(ids, e);
+        }
+    }
+
+    private void select(List<String> ids) {
+        batches.increment();
+        final Map<String, T> found;
+        try {
+            found = dao.selectMapByIds(ids, selectOptions);
+        } catch (RuntimeException e) {
+            fail(ids, e);
+            return;
+        }
+        ids.forEach(id -> {
+            final CompletableFuture<T> future = inFlight.remove(id);
+            if (future != null) {
+                future.complete(found.get(id));
+            }
+        });
+    }
+
+    private void fail(List<String> ids, Throwable e) {
+        ids.forEach(id -> {
+            final CompletableFuture<T> future = inFlight.remove(id);
+            if (future != null) {
+                future.completeExceptionally(e);
+            }
+        });
+    }
+}
@@ -0,0 +1,73 @@
+package com.github.mx.mongo.dao;
+
+import java.util.concurrent.Executor;
+
+/**
+ * 合并按id读取的选项
+ * <p>
+ * Create by max on 2020/01/16
+ */
+public class CoalescingOptions {
+
+    /**
+     * 一次$in查询最多包含的id数
+     */
+    private int maxBatchSize = 500;
+    /**
+     * 第一个id到达后最多等待多久发出查询(毫秒)
+     */
+    private long maxDelayMillis = 2;
+    /**
+     * 同时在执行的查询数
+     */
+    private int parallelism = 4;
+    /**
+     * 执行查询的线程池，为null时使用内置的共享线程池
+     */
+    private Executor executor;
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    public CoalescingOptions maxBatchSize(int maxBatchSize) {
+        if (maxBatchSize <= 0) {
+            throw new IllegalArgumentException("maxBatchSize must be positive");
+        }
+        this.maxBatchSize = maxBatchSize;
+        return this;
+    }
+
+    public long getMaxDelayMillis() {
+        return maxDelayMillis;
+    }
+
+    public CoalescingOptions maxDelayMillis(long maxDelayMillis) {
+        if (maxDelayMillis < 0) {
+            throw new IllegalArgumentException("maxDelayMillis must not be negative");
+        }
+        this.maxDelayMillis = maxDelayMillis;
+        return this;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public CoalescingOptions parallelism(int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("parallelism must be positive");
+        }
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    public CoalescingOptions executor(Executor executor) {
+        this.executor = executor;
+        return this;
+    }
+}
@@ -0,0 +1,20 @@
+package com.github.mx.mongo.dao;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * dao内部分片并行执行时默认使用的共享线程池，并发度由调用方各自限制
+ * <p>
+ * Create by max on 2020/01/16
+ */
+final class DaoExecutors {
+
+    static final ExecutorService SHARED = Executors.newCachedThreadPool(
+            new ThreadFactoryBuilder().setNameFormat("mongo-dao-%d").setDaemon(true).build());
+
+    private DaoExecutors() {
+    }
+}
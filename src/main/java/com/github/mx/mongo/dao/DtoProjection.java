@@ -0,0 +1,70 @@
+package com.github.mx.mongo.dao;
+
+import com.github.mx.mongo.mapper.EntityMapper;
+import com.github.mx.mongo.mapper.EntityMapperManager;
+import com.github.mx.mongo.mapper.FieldInfo;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 实体到DTO的投影计划：DTO中与实体同名且类型兼容的字段作为查询投影，查询结果按预先生成的访问器拷贝到DTO
+ * <p>
+ * Create by max on 2020/01/16
+ */
+final class DtoProjection<T, D> {
+
+    private final EntityMapper<D> dtoMapper;
+    private final Projection projection;
+    private final FieldInfo[] sourceFields;
+    private final FieldInfo[] targetFields;
+
+    DtoProjection(Class<T> entityClass, Class<D> dtoClass) {
+        final EntityMapper<T> entityMapper = EntityMapperManager.INSTANCE.getEntityMapper(entityClass);
+        this.dtoMapper = EntityMapperManager.INSTANCE.getEntityMapper(dtoClass);
+        final List<FieldInfo> sources = new ArrayList<>();
+        final List<FieldInfo> targets = new ArrayList<>();
+        final List<String> fields = new ArrayList<>();
+        for (FieldInfo target : dtoMapper.getFieldInfos()) {
+            final FieldInfo source = entityMapper.getFieldInfo(target.getFieldName());
+            if (source != null && target.getSetterMethod().getParameterTypes()[0]
+                    .isAssignableFrom(source.getGetterMethod().getReturnType())) {
+                sources.add(source);
+                targets.add(target);
+                if (source != entityMapper.getIdField()) {
+                    fields.add(source.getFieldName());
+                }
+            }
+        }
+        if (sources.isEmpty()) {
+            throw new IllegalArgumentException(String.format("%s has no field matching %s", dtoClass.getName(), entityClass.getName()));
+        }
+        // 只匹配到id时也需要一个有效的投影，_id默认返回
+        this.projection = fields.isEmpty() ? Projection.include("_id") : Projection.include(fields);
+        this.sourceFields = sources.toArray(new FieldInfo[0]);
+        this.targetFields = targets.toArray(new FieldInfo[0]);
+    }
+
+    Projection getProjection() {
+        return projection;
+    }
+
+    D convert(T entity) {
+        if (entity == null) {
+            return null;
+        }
+        final D dto = dtoMapper.newInstance();
+        for (int i = 0; i < sourceFields.length; i++) {
+            targetFields[i].setValue(dto, sourceFields[i].getValue(entity));
+        }
+        return dto;
+    }
+
+    List<D> convert(List<T> entities) {
+        final List<D> list = new ArrayList<>(entities.size());
+        for (T entity : entities) {
+            list.add(convert(entity));
+        }
+        return list;
+    }
+}
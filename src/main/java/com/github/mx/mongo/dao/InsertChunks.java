@@ -0,0 +1,81 @@
+package com.github.mx.mongo.dao;
+
+import com.mongodb.DBObject;
+import com.mongodb.DefaultDBEncoder;
+import org.bson.types.ObjectId;
+import org.mongodb.morphia.mapping.Mapper;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * 批量插入的映射与切分：逐个把实体映射成文档并补齐_id，按分片条数和编码后的字节数切分.
+ * 每次next只映射到下一个分片为止，调用方可以边切分边提交；映射出的文档按实体顺序追加到documents
+ * <p>
+ * Create by max on 2020/01/16
+ */
+class InsertChunks<T> implements Iterator<List<DBObject>> {
+
+    private final List<T> entities;
+    private final Mapper mapper;
+    private final int chunkSize;
+    private final int maxChunkBytes;
+    private final DefaultDBEncoder encoder;
+    private final List<DBObject> documents;
+    private int index;
+    private int offset;
+    /**
+     * documents中最后一个文档的字节数，该文档超出上一分片时留给下一分片
+     */
+    private int lastSize;
+
+    InsertChunks(List<T> entities, Mapper mapper, BulkInsertOptions options, List<DBObject> documents) {
+        this.entities = entities;
+        this.mapper = mapper;
+        this.chunkSize = options.getChunkSize();
+        this.maxChunkBytes = options.getMaxChunkBytes();
+        this.encoder = maxChunkBytes > 0 ? new DefaultDBEncoder() : null;
+        this.documents = documents;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return index < entities.size();
+    }
+
+    @Override
+    public List<DBObject> next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        offset = index;
+        final List<DBObject> chunk = new ArrayList<>(Math.min(chunkSize, entities.size() - index));
+        int chunkBytes = 0;
+        while (index < entities.size()) {
+            if (index == documents.size()) {
+                final DBObject document = mapper.toDBObject(entities.get(index));
+                if (document.get(Mapper.ID_KEY) == null) {
+                    document.put(Mapper.ID_KEY, new ObjectId());
+                }
+                documents.add(document);
+                lastSize = encoder == null ? 0 : encoder.encode(document).length;
+            }
+            if (!chunk.isEmpty() && (chunk.size() >= chunkSize || (encoder != null && chunkBytes + lastSize > maxChunkBytes))) {
+                break;
+            }
+            chunk.add(documents.get(index));
+            chunkBytes += lastSize;
+            index++;
+        }
+        return chunk;
+    }
+
+    /**
+     * 最近一次next返回的分片第一条在entities中的下标
+     */
+    int offset() {
+        return offset;
+    }
+}
@@ -0,0 +1,107 @@
+package com.github.mx.mongo.dao;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * 归并多个已排序的游标，comparator为null时按顺序拼接；达到limit或遍历结束时关闭全部游标，构造时读取首条记录失败也会关闭全部游标
+ * <p>
+ * Create by max on 2020/01/16
+ */
+class MergingIterator<T> implements Iterator<T>, AutoCloseable {
+
+    private final List<CloseableIterator<T>> cursors;
+    private final PriorityQueue<Head<T>> heads;
+    private long remaining;
+    private int current;
+    private boolean closed;
+
+    MergingIterator(List<CloseableIterator<T>> cursors, Comparator<? super T> comparator, long limit) {
+        this.cursors = cursors;
+        this.remaining = limit <= 0 ? Long.MAX_VALUE : limit;
+        if (comparator == null) {
+            this.heads = null;
+            return;
+        }
+        this.heads = new PriorityQueue<>(Math.max(1, cursors.size()), (a, b) -> comparator.compare(a.value, b.value));
+        try {
+            for (CloseableIterator<T> cursor : cursors) {
+                if (cursor.hasNext()) {
+                    heads.add(new Head<>(cursor, cursor.next()));
+                }
+            }
+        } catch (RuntimeException e) {
+            // 调用方拿不到这个对象，已经打开的游标只能在这里关闭
+            for (CloseableIterator<T> cursor : cursors) {
+                try {
+                    cursor.close();
+                } catch (RuntimeException suppressed) {
+                    e.addSuppressed(suppressed);
+                }
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (closed) {
+            return false;
+        }
+        if (remaining > 0) {
+            if (heads != null) {
+                if (!heads.isEmpty()) {
+                    return true;
+                }
+            } else {
+                while (current < cursors.size() && !cursors.get(current).hasNext()) {
+                    current++;
+                }
+                if (current < cursors.size()) {
+                    return true;
+                }
+            }
+        }
+        close();
+        return false;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        remaining--;
+        if (heads == null) {
+            return cursors.get(current).next();
+        }
+        final Head<T> head = heads.poll();
+        final T value = head.value;
+        if (head.cursor.hasNext()) {
+            head.value = head.cursor.next();
+            heads.add(head);
+        }
+        return value;
+    }
+
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            cursors.forEach(CloseableIterator::close);
+        }
+    }
+
+    private static final class Head<T> {
+        private final CloseableIterator<T> cursor;
+        private T value;
+
+        private Head(CloseableIterator<T> cursor, T value) {
+            this.cursor = cursor;
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.github.mx.mongo.dao;
+
+import java.util.List;
+
+/**
+ * 基于游标(keyset)的分页结果
+ * <p>
+ * Create by max on 2020/01/16
+ */
+public class Page<T> {
+
+    private final List<T> list;
+
+    /**
+     * 下一页的延续标记，没有下一页时为null
+     */
+    private final String nextToken;
+
+    public Page(List<T> list, String nextToken) {
+        this.list = list;
+        this.nextToken = nextToken;
+    }
+
+    public List<T> getList() {
+        return list;
+    }
+
+    public String getNextToken() {
+        return nextToken;
+    }
+
+    public boolean hasNext() {
+        return nextToken != null;
+    }
+}
@@ -0,0 +1,50 @@
+package com.github.mx.mongo.dao;
+
+import org.bson.BSONObject;
+import org.bson.BasicBSONDecoder;
+import org.bson.BasicBSONEncoder;
+import org.bson.BasicBSONObject;
+
+import java.util.Base64;
+
+/**
+ * 分页延续标记的编解码，内容为上一页最后一条记录的排序键和_id，BSON编码保留值的类型；排序键为null时也显式写入
+ * <p>
+ * Create by max on 2020/01/16
+ */
+final class PageToken {
+
+    private static final String VALUE = "v";
+    private static final String ID = "i";
+
+    private final Object value;
+    private final Object id;
+
+    PageToken(Object value, Object id) {
+        this.value = value;
+        this.id = id;
+    }
+
+    Object getValue() {
+        return value;
+    }
+
+    Object getId() {
+        return id;
+    }
+
+    String encode() {
+        final BasicBSONObject object = new BasicBSONObject(ID, id);
+        object.put(VALUE, value instanceof Enum ? ((Enum<?>) value).name() : value);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(new BasicBSONEncoder().encode(object));
+    }
+
+    static PageToken decode(String token) {
+        try {
+            final BSONObject object = new BasicBSONDecoder().readObject(Base64.getUrlDecoder().decode(token));
+            return new PageToken(object.get(VALUE), object.get(ID));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("invalid page token: " + token, e);
+        }
+    }
+}
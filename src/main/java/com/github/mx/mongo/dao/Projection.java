@@ -0,0 +1,63 @@
+package com.github.mx.mongo.dao;
+
+import org.mongodb.morphia.query.Query;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 查询字段投影，服务端只返回指定的字段，未返回的字段在实体中保持默认值
+ * <p>
+ * Create by max on 2020/01/16
+ */
+public final class Projection {
+
+    private final List<String> fields;
+    private final boolean include;
+
+    private Projection(List<String> fields, boolean include) {
+        if (fields.isEmpty()) {
+            throw new IllegalArgumentException("projection requires at least one field");
+        }
+        this.fields = Collections.unmodifiableList(fields);
+        this.include = include;
+    }
+
+    /**
+     * 只返回指定字段(_id默认返回)
+     */
+    public static Projection include(String... fields) {
+        return new Projection(Arrays.asList(fields), true);
+    }
+
+    public static Projection include(List<String> fields) {
+        return new Projection(fields, true);
+    }
+
+    /**
+     * 返回除指定字段外的所有字段
+     */
+    public static Projection exclude(String... fields) {
+        return new Projection(Arrays.asList(fields), false);
+    }
+
+    public static Projection exclude(List<String> fields) {
+        return new Projection(fields, false);
+    }
+
+    public List<String> getFields() {
+        return fields;
+    }
+
+    public boolean isInclude() {
+        return include;
+    }
+
+    <T> Query<T> apply(Query<T> query) {
+        for (String field : fields) {
+            query.project(field, include);
+        }
+        return query;
+    }
+}
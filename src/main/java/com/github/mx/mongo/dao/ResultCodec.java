@@ -0,0 +1,254 @@
+package com.github.mx.mongo.dao;
+
+import com.github.mx.mongo.mapper.EntityMapper;
+import com.github.mx.mongo.mapper.EntityMapperManager;
+import com.github.mx.mongo.mapper.FieldInfo;
+import com.github.mx.mongo.mongo.DatastoreExt;
+import com.mongodb.DBObject;
+import org.bson.BsonBinary;
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.codecs.BsonValueCodec;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.bson.types.Binary;
+import org.bson.types.Decimal128;
+import org.bson.types.ObjectId;
+import org.mongodb.morphia.mapping.MappedClass;
+import org.mongodb.morphia.mapping.MappedField;
+import org.mongodb.morphia.mapping.Mapper;
+
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * 把聚合结果直接从BSON解码到实体或DTO，不经过中间的DBObject.
+ * 按Morphia存储的字段名(@Property等重命名后的名字)匹配EntityMapper中的字段，_id对应@Id字段(没有时对应id字段)，其他字段跳过不解析；
+ * 字段类型是内嵌对象时由Morphia的Mapper转换，集合字段按泛型参数逐个转换元素
+ * <p>
+ * Create by max on 2020/01/16
+ */
+final class ResultCodec<R> implements Codec<R> {
+
+    private final Class<R> clazz;
+    private final EntityMapper<R> entityMapper;
+    private final Map<String, FieldInfo> fields = new HashMap<>();
+    private final Map<String, Class<?>> types = new HashMap<>();
+    /**
+     * 集合字段的元素类型，取不到泛型参数时没有
+     */
+    private final Map<String, Class<?>> elementTypes = new HashMap<>();
+    private final DatastoreExt datastore;
+    private final CodecRegistry registry;
+    private final BsonValueCodec fallback = new BsonValueCodec();
+
+    /**
+     * @param registry 解码内嵌文档使用的CodecRegistry
+     */
+    ResultCodec(Class<R> clazz, DatastoreExt datastore, CodecRegistry registry) {
+        this.clazz = clazz;
+        this.entityMapper = EntityMapperManager.INSTANCE.getEntityMapper(clazz);
+        this.datastore = datastore;
+        this.registry = registry;
+        final MappedClass mappedClass = datastore.getMapper().getMappedClass(clazz);
+        for (FieldInfo fieldInfo : entityMapper.getFieldInfos()) {
+            final MappedField mappedField = mappedClass.getMappedFieldByJavaField(fieldInfo.getFieldName());
+            put(mappedField != null ? mappedField.getNameToStore() : fieldInfo.getFieldName(), fieldInfo);
+        }
+        final FieldInfo idField = entityMapper.getIdField() != null ? entityMapper.getIdField() : fields.get("id");
+        if (idField != null) {
+            put(Mapper.ID_KEY, idField);
+        }
+    }
+
+    private void put(String name, FieldInfo fieldInfo) {
+        fields.put(name, fieldInfo);
+        types.put(name, fieldInfo.getSetterMethod().getParameterTypes()[0]);
+        final Type genericType = fieldInfo.getSetterMethod().getGenericParameterTypes()[0];
+        if (genericType instanceof ParameterizedType) {
+            final Type[] arguments = ((ParameterizedType) genericType).getActualTypeArguments();
+            if (arguments.length == 1 && arguments[0] instanceof Class) {
+                elementTypes.put(name, (Class<?>) arguments[0]);
+            }
+        }
+    }
+
+    @Override
+    public R decode(BsonReader reader, DecoderContext decoderContext) {
+        final R result = entityMapper.newInstance();
+        reader.readStartDocument();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            final String name = reader.readName();
+            final FieldInfo fieldInfo = fields.get(name);
+            if (fieldInfo == null) {
+                reader.skipValue();
+                continue;
+            }
+            final Class<?> type = types.get(name);
+            final Object value = convert(name, readValue(reader, decoderContext), type, elementTypes.get(name));
+            if (value != null || !type.isPrimitive()) {
+                fieldInfo.setValue(result, value);
+            }
+        }
+        reader.readEndDocument();
+        return result;
+    }
+
+    private Object readValue(BsonReader reader, DecoderContext context) {
+        switch (reader.getCurrentBsonType()) {
+            case NULL:
+                reader.readNull();
+                return null;
+            case STRING:
+                return reader.readString();
+            case INT32:
+                return reader.readInt32();
+            case INT64:
+                return reader.readInt64();
+            case DOUBLE:
+                return reader.readDouble();
+            case DECIMAL128:
+                return reader.readDecimal128();
+            case BOOLEAN:
+                return reader.readBoolean();
+            case DATE_TIME:
+                return new Date(reader.readDateTime());
+            case OBJECT_ID:
+                return reader.readObjectId();
+            case BINARY:
+                final BsonBinary binary = reader.readBinaryData();
+                return new Binary(binary.getType(), binary.getData());
+            case ARRAY:
+                final List<Object> list = new ArrayList<>();
+                reader.readStartArray();
+                while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+                    list.add(readValue(reader, context));
+                }
+                reader.readEndArray();
+                return list;
+            case DOCUMENT:
+                return registry.get(DBObject.class).decode(reader, context);
+            default:
+                return fallback.decode(reader, context);
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private Object convert(String name, Object value, Class<?> type, Class<?> elementType) {
+        if (value instanceof List && Collection.class.isAssignableFrom(type)) {
+            final Collection<Object> collection = newCollection(name, type);
+            for (Object element : (List<?>) value) {
+                collection.add(elementType == null ? element : convert(name, element, elementType, null));
+            }
+            return collection;
+        }
+        if (value == null || type.isInstance(value)) {
+            return value;
+        }
+        if (value instanceof Number) {
+            final Number number = (Number) value;
+            if (type == Integer.class || type == int.class) {
+                return number.intValue();
+            } else if (type == Long.class || type == long.class) {
+                return number.longValue();
+            } else if (type == Double.class || type == double.class) {
+                return number.doubleValue();
+            } else if (type == Float.class || type == float.class) {
+                return number.floatValue();
+            } else if (type == Short.class || type == short.class) {
+                return number.shortValue();
+            } else if (type == Byte.class || type == byte.class) {
+                return number.byteValue();
+            } else if (type == Boolean.class || type == boolean.class) {
+                return number.intValue() != 0;
+            } else if (type == BigDecimal.class) {
+                return new BigDecimal(number.toString());
+            } else if (type == Decimal128.class) {
+                return new Decimal128(new BigDecimal(number.toString()));
+            }
+        } else if (value instanceof Decimal128) {
+            // NaN、Infinity只能读到Decimal128或浮点数字段，-0读到BigDecimal时为0
+            final Decimal128 decimal = (Decimal128) value;
+            if (type == Double.class || type == double.class) {
+                return Double.parseDouble(decimal.toString());
+            } else if (type == Float.class || type == float.class) {
+                return Float.parseFloat(decimal.toString());
+            } else if (decimal.isFinite()) {
+                return convert(name, new BigDecimal(decimal.toString()), type, elementType);
+            }
+        } else if (value instanceof Boolean && type == boolean.class) {
+            return value;
+        } else if (value instanceof ObjectId && type == String.class) {
+            return value.toString();
+        } else if (value instanceof String && type == ObjectId.class) {
+            return new ObjectId((String) value);
+        } else if (value instanceof String && type.isEnum()) {
+            return Enum.valueOf((Class<Enum>) type, (String) value);
+        } else if (value instanceof Binary && type == byte[].class) {
+            return ((Binary) value).getData();
+        } else if (value instanceof Date) {
+            final Instant instant = ((Date) value).toInstant();
+            if (type == Instant.class) {
+                return instant;
+            } else if (type == LocalDateTime.class) {
+                return LocalDateTime.ofInstant(instant, ZoneId.systemDefault());
+            } else if (type == LocalDate.class) {
+                return LocalDateTime.ofInstant(instant, ZoneId.systemDefault()).toLocalDate();
+            } else if (type == Long.class || type == long.class) {
+                return instant.toEpochMilli();
+            }
+        } else if (value instanceof DBObject) {
+            final Mapper mapper = datastore.getMapper();
+            return mapper.fromDBObject(datastore, type, (DBObject) value, mapper.createEntityCache());
+        }
+        throw new IllegalArgumentException(String.format("cannot convert aggregation result field %s.%s from %s to %s",
+                clazz.getName(), name, value.getClass().getName(), type.getName()));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Collection<Object> newCollection(String name, Class<?> type) {
+        if (type.isAssignableFrom(ArrayList.class)) {
+            return new ArrayList<>();
+        } else if (type.isAssignableFrom(LinkedHashSet.class)) {
+            return new LinkedHashSet<>();
+        } else if (type.isAssignableFrom(TreeSet.class)) {
+            return new TreeSet<>();
+        } else if (!type.isInterface() && !Modifier.isAbstract(type.getModifiers())) {
+            try {
+                return (Collection<Object>) type.getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalArgumentException(String.format("cannot instantiate aggregation result field %s.%s of %s",
+                        clazz.getName(), name, type.getName()), e);
+            }
+        }
+        throw new IllegalArgumentException(String.format("unsupported collection type of aggregation result field %s.%s: %s",
+                clazz.getName(), name, type.getName()));
+    }
+
+    @Override
+    public void encode(BsonWriter writer, R value, EncoderContext encoderContext) {
+        throw new UnsupportedOperationException("aggregation result codec is decode only");
+    }
+
+    @Override
+    public Class<R> getEncoderClass() {
+        return clazz;
+    }
+}
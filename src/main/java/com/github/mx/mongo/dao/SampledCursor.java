@@ -0,0 +1,64 @@
+package com.github.mx.mongo.dao;
+
+import com.github.mx.mongo.metrics.DaoProbe;
+import com.mongodb.client.MongoCursor;
+
+import java.util.Iterator;
+
+/**
+ * 流式结果的游标，关闭时按实际读取的条数记录指标，读取失败时记录异常；耗时包含调用方处理结果的时间
+ * <p>
+ * Create by max on 2020/01/16
+ */
+class SampledCursor<R> implements Iterator<R>, AutoCloseable {
+
+    private final MongoCursor<R> cursor;
+    private final DaoProbe.Sample sample;
+    private int documents;
+    private boolean recorded;
+
+    SampledCursor(MongoCursor<R> cursor, DaoProbe.Sample sample) {
+        this.cursor = cursor;
+        this.sample = sample;
+    }
+
+    @Override
+    public boolean hasNext() {
+        try {
+            return cursor.hasNext();
+        } catch (RuntimeException e) {
+            throw error(e);
+        }
+    }
+
+    @Override
+    public R next() {
+        try {
+            final R next = cursor.next();
+            documents++;
+            return next;
+        } catch (RuntimeException e) {
+            throw error(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            cursor.close();
+        } finally {
+            if (!recorded) {
+                recorded = true;
+                sample.stop(this, documents);
+            }
+        }
+    }
+
+    private RuntimeException error(RuntimeException e) {
+        if (!recorded) {
+            recorded = true;
+            sample.error(e);
+        }
+        return e;
+    }
+}
@@ -0,0 +1,89 @@
+package com.github.mx.mongo.dao;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * 在多个分片上并行执行同一个操作，同时在执行的操作数受parallelism限制，结果按分片顺序返回
+ * <p>
+ * Create by max on 2020/01/16
+ */
+final class ScatterGather {
+
+    private ScatterGather() {
+    }
+
+    /**
+     * @param discard 有分片失败时，用来释放其他分片已经返回的结果(例如关闭游标)
+     */
+    static <S, R> List<R> execute(List<S> shards, Function<S, R> task, Consumer<? super R> discard,
+                                  int parallelism, Executor executor) {
+        final AtomicReferenceArray<R> results = new AtomicReferenceArray<>(shards.size());
+        // 只有一个分片或不允许并行时直接在调用线程执行
+        if (shards.size() == 1 || parallelism == 1) {
+            for (int i = 0; i < shards.size(); i++) {
+                try {
+                    results.set(i, task.apply(shards.get(i)));
+                } catch (RuntimeException e) {
+                    discard(results, discard);
+                    throw e;
+                }
+            }
+            return toList(results);
+        }
+        final Semaphore inFlight = new Semaphore(parallelism);
+        final List<CompletableFuture<Void>> futures = new ArrayList<>(shards.size());
+        RuntimeException error = null;
+        for (int i = 0; i < shards.size() && error == null; i++) {
+            final int index = i;
+            final S shard = shards.get(i);
+            inFlight.acquireUninterruptibly();
+            try {
+                futures.add(CompletableFuture.runAsync(() -> results.set(index, task.apply(shard)), executor)
+                        .whenComplete((result, e) -> inFlight.release()));
+            } catch (RuntimeException e) {
+                inFlight.release();
+                error = e;
+            }
+        }
+        // 等全部结束，避免失败时还有游标在后台打开
+        for (CompletableFuture<Void> future : futures) {
+            try {
+                future.join();
+            } catch (CompletionException e) {
+                if (error == null) {
+                    error = e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+                }
+            }
+        }
+        if (error != null) {
+            discard(results, discard);
+            throw error;
+        }
+        return toList(results);
+    }
+
+    private static <R> void discard(AtomicReferenceArray<R> results, Consumer<? super R> discard) {
+        for (int i = 0; i < results.length(); i++) {
+            final R result = results.get(i);
+            if (result != null && discard != null) {
+                discard.accept(result);
+            }
+        }
+    }
+
+    private static <R> List<R> toList(AtomicReferenceArray<R> results) {
+        final List<R> list = new ArrayList<>(results.length());
+        for (int i = 0; i < results.length(); i++) {
+            list.add(results.get(i));
+        }
+        return list;
+    }
+}
@@ -0,0 +1,148 @@
+package com.github.mx.mongo.dao;
+
+import com.github.mx.mongo.cache.DaoCache;
+import com.github.mx.mongo.mapper.EntityMapperManager;
+import com.github.mx.mongo.mapper.FieldInfo;
+import com.mongodb.DBObject;
+import org.bson.types.ObjectId;
+import org.mongodb.morphia.mapping.Mapper;
+import org.mongodb.morphia.query.MorphiaIterator;
+import org.mongodb.morphia.query.Query;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+
+/**
+ * 大批量id查询：去重后先查dao缓存，未命中的按chunkSize切分成多个$in查询并行执行并写回缓存，结果按调用方给定的id顺序返回.
+ * 按ObjectId匹配结果，大小写不同的id视为同一条记录，返回结果的key为调用方传入的原字符串
+ * <p>
+ * Create by max on 2020/01/16
+ */
+class SelectByIdsFanOut<T> {
+
+    private final BaseDaoImpl<T> dao;
+    private final FieldInfo idField;
+
+    SelectByIdsFanOut(BaseDaoImpl<T> dao, Class<T> clazz) {
+        this.dao = dao;
+        this.idField = EntityMapperManager.INSTANCE.getEntityMapper(clazz).getIdField();
+        if (idField == null) {
+            throw new IllegalStateException("selectByIds requires a field with annotation @Id: " + clazz.getName());
+        }
+    }
+
+    Map<String, T> select(List<String> ids, SelectByIdsOptions options) {
+        // 每个id字符串只解析一次，大小写不同的id解析为同一个ObjectId
+        final Map<String, ObjectId> parsed = new LinkedHashMap<>(capacity(ids.size()));
+        for (String id : ids) {
+            if (!parsed.containsKey(id)) {
+                parsed.put(id, new ObjectId(id));
+            }
+        }
+        final Map<ObjectId, T> found = new ConcurrentHashMap<>(capacity(parsed.size()));
+        final Set<ObjectId> missing = new LinkedHashSet<>(capacity(parsed.size()));
+        // 先查缓存，缓存按规范的十六进制id存取，与写操作的失效一致
+        final DaoCache<DBObject> cache = dao.cache();
+        final boolean cached = cache.isEnabled();
+        final long version = cache.version();
+        for (ObjectId id : parsed.values()) {
+            if (found.containsKey(id) || missing.contains(id)) {
+                continue;
+            }
+            final DaoCache.Cached<DBObject> hit = cached ? cache.get(id.toHexString()) : null;
+            if (hit == null) {
+                missing.add(id);
+            } else {
+                final T entity = dao.fromCached(hit);
+                if (entity != null) {
+                    found.put(id, entity);
+                }
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            fetch(missing, found, options);
+            if (cached) {
+                missing.forEach(id -> cache.put(id.toHexString(), dao.toCached(found.get(id)), version));
+            }
+        }
+
+        final Map<String, T> result = new LinkedHashMap<>(capacity(found.size()));
+        parsed.forEach((id, objectId) -> {
+            final T entity = found.get(objectId);
+            if (entity != null) {
+                result.put(id, entity);
+            }
+        });
+        return result;
+    }
+
+    private void fetch(Set<ObjectId> ids, Map<ObjectId, T> found, SelectByIdsOptions options) {
+        final Semaphore inFlight = new Semaphore(options.getParallelism());
+        final List<CompletableFuture<Void>> futures = new ArrayList<>();
+        final int chunkSize = options.getChunkSize();
+        List<ObjectId> chunk = new ArrayList<>(Math.min(chunkSize, ids.size()));
+        int remaining = ids.size();
+        for (ObjectId id : ids) {
+            chunk.add(id);
+            remaining--;
+            if (chunk.size() == chunkSize || remaining == 0) {
+                submit(chunk, found, options, inFlight, futures, remaining == 0 && futures.isEmpty());
+                chunk = new ArrayList<>(Math.min(chunkSize, remaining));
+            }
+        }
+        try {
+            futures.forEach(CompletableFuture::join);
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private void submit(List<ObjectId> chunk, Map<ObjectId, T> found, SelectByIdsOptions options, Semaphore inFlight,
+                        List<CompletableFuture<Void>> futures, boolean only) {
+        // 只有一个分片或不允许并行时直接在调用线程执行
+        if (only || options.getParallelism() == 1) {
+            query(chunk, found);
+            return;
+        }
+        inFlight.acquireUninterruptibly();
+        try {
+            futures.add(CompletableFuture.runAsync(() -> query(chunk, found),
+                    options.getExecutor() == null ? DaoExecutors.SHARED : options.getExecutor())
+                    .whenComplete((result, e) -> inFlight.release()));
+        } catch (RuntimeException e) {
+            inFlight.release();
+            throw e;
+        }
+    }
+
+    private void query(List<ObjectId> chunk, Map<ObjectId, T> found) {
+        final Query<T> query = dao.createQuery();
+        query.field(Mapper.ID_KEY).in(chunk);
+        final MorphiaIterator<T, T> iterator = query.fetch(dao.findOptions());
+        try {
+            while (iterator.hasNext()) {
+                final T entity = iterator.next();
+                final Object id = idField.getValue(entity);
+                found.put(id instanceof ObjectId ? (ObjectId) id : new ObjectId(id.toString()), entity);
+            }
+        } finally {
+            iterator.close();
+        }
+    }
+
+    private static int capacity(int size) {
+        return Math.max(16, size * 4 / 3 + 1);
+    }
+}
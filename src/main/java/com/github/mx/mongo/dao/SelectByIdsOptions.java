@@ -0,0 +1,57 @@
+package com.github.mx.mongo.dao;
+
+import java.util.concurrent.Executor;
+
+/**
+ * 大批量id查询选项
+ * <p>
+ * Create by max on 2020/01/16
+ */
+public class SelectByIdsOptions {
+
+    /**
+     * 每个$in查询包含的id数
+     */
+    private int chunkSize = 500;
+    /**
+     * 同时在执行的查询数
+     */
+    private int parallelism = 4;
+    /**
+     * 执行查询的线程池，为null时使用内置的共享线程池
+     */
+    private Executor executor;
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public SelectByIdsOptions chunkSize(int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize must be positive");
+        }
+        this.chunkSize = chunkSize;
+        return this;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public SelectByIdsOptions parallelism(int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("parallelism must be positive");
+        }
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    public SelectByIdsOptions executor(Executor executor) {
+        this.executor = executor;
+        return this;
+    }
+}
@@ -0,0 +1,35 @@
+package com.github.mx.mongo.dao;
+
+import java.util.List;
+
+/**
+ * 分片规则：根据分片字段的值决定记录所在的collection后缀
+ * <p>
+ * Create by max on 2020/01/16
+ */
+public interface ShardFunction {
+
+    /**
+     * 分片字段(实体属性名)
+     *
+     * @return 字段名
+     */
+    String getField();
+
+    /**
+     * 分片字段的值所在的分片
+     *
+     * @param key 分片字段的值，不能为null
+     * @return collection后缀，例如 2019
+     */
+    String shardOf(Object key);
+
+    /**
+     * 覆盖[from, to)区间的全部分片，按分片字段的值升序排列，from不小于to时为空
+     *
+     * @param from 起始值
+     * @param to   结束值
+     * @return collection后缀列表
+     */
+    List<String> shardsBetween(Object from, Object to);
+}
@@ -0,0 +1,117 @@
+package com.github.mx.mongo.dao;
+
+import com.mongodb.AggregationOptions;
+import com.mongodb.DBObject;
+import org.mongodb.morphia.query.Query;
+
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * 按分片字段拆分到多个collection(例如 user_2019、user_2020)的数据访问.
+ * 写入按分片字段路由到对应的collection；区间查询并行查询涉及的分片，再按排序字段归并
+ * <p>
+ * 区间均为[from, to)，from、to的类型需要与分片字段一致
+ * <p>
+ * Create by max on 2020/01/16
+ */
+public interface ShardedDao<T> {
+
+    /**
+     * 分片规则
+     *
+     * @return ShardFunction
+     */
+    ShardFunction getShardFunction();
+
+    /**
+     * 指定分片的dao，可以执行更新、删除等单分片操作
+     *
+     * @param shard collection后缀
+     * @return dao
+     */
+    BaseDao<T> shard(String shard);
+
+    /**
+     * 实体所在分片的dao
+     *
+     * @param entity 实体，分片字段不能为空
+     * @return dao
+     */
+    BaseDao<T> shardOf(T entity);
+
+    /**
+     * 保存到实体所在的分片
+     *
+     * @param entity 实体，分片字段不能为空
+     * @return 返回新建的id
+     */
+    String insert(T entity);
+
+    /**
+     * 按分片分组后批量保存
+     *
+     * @param entities 对象集合
+     */
+    void insertBatch(List<T> entities);
+
+    /**
+     * 区间查询，结果按sortKey排序
+     *
+     * @param condition 逻辑与条件
+     * @param from      分片字段起始值(包含)
+     * @param to        分片字段结束值(不包含)
+     * @param sortKey   排序字段，前缀"-"表示降序，为null时按分片顺序返回
+     * @param limit     全局限制条数，小于等于0时不限制
+     * @return 实体列表
+     */
+    List<T> selectList(T condition, Object from, Object to, String sortKey, int limit);
+
+    /**
+     * 区间流式查询，各分片的游标并行打开，按sortKey归并.
+     * 使用完毕必须关闭，建议配合try-with-resources
+     *
+     * @param condition 逻辑与条件
+     * @param from      分片字段起始值(包含)
+     * @param to        分片字段结束值(不包含)
+     * @param sortKey   排序字段，前缀"-"表示降序，为null时按分片顺序返回
+     * @param limit     全局限制条数，小于等于0时不限制
+     * @return 实体流
+     */
+    Stream<T> stream(T condition, Object from, Object to, String sortKey, int limit);
+
+    /**
+     * 区间流式查询，criteria在每个分片的查询上追加条件
+     *
+     * @param from     分片字段起始值(包含)
+     * @param to       分片字段结束值(不包含)
+     * @param criteria 追加查询条件
+     * @param sortKey  排序字段，前缀"-"表示降序，为null时按分片顺序返回
+     * @param limit    全局限制条数，小于等于0时不限制
+     * @return 实体流
+     */
+    Stream<T> stream(Object from, Object to, Consumer<Query<T>> criteria, String sortKey, int limit);
+
+    /**
+     * 区间内的记录数目，各分片并行计数后求和
+     *
+     * @param condition 逻辑与条件
+     * @param from      分片字段起始值(包含)
+     * @param to        分片字段结束值(不包含)
+     * @return 记录数目
+     */
+    long selectCount(T condition, Object from, Object to);
+
+    /**
+     * 区间聚合，在每个分片上并行执行pipeline(前面自动加上区间的$match)，按分片顺序拼接结果.
+     * $group等结果是分片内的，跨分片的合并需要调用方再做一次
+     *
+     * @param from     分片字段起始值(包含)
+     * @param to       分片字段结束值(不包含)
+     * @param pipeline pipeline
+     * @param options  AggregationOptions
+     * @return 各分片的聚合结果
+     */
+    List<DBObject> aggregate(Object from, Object to, List<? extends DBObject> pipeline, AggregationOptions options);
+}
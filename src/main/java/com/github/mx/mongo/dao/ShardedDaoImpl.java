@@ -0,0 +1,382 @@
+package com.github.mx.mongo.dao;
+
+import com.github.mx.mongo.mapper.EntityMapper;
+import com.github.mx.mongo.mapper.EntityMapperManager;
+import com.github.mx.mongo.mapper.FieldInfo;
+import com.github.mx.mongo.metrics.DaoProbe;
+import com.github.mx.mongo.mongo.DatastoreExt;
+import com.github.mx.mongo.util.QueryUtils;
+import com.mongodb.AggregationOptions;
+import com.mongodb.BasicDBObject;
+import com.mongodb.Cursor;
+import com.mongodb.DBObject;
+import org.bson.types.Binary;
+import org.bson.types.Decimal128;
+import org.bson.types.ObjectId;
+import org.mongodb.morphia.annotations.Id;
+import org.mongodb.morphia.mapping.MappedField;
+import org.mongodb.morphia.mapping.Mapper;
+import org.mongodb.morphia.query.CountOptions;
+import org.mongodb.morphia.query.FindOptions;
+import org.mongodb.morphia.query.Query;
+import org.mongodb.morphia.query.Sort;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * 分片dao实现类，每个分片对应getDatastoreBySuffix(dbName, shard)上的一个collection
+ * <pre>
+ * public class OrderDaoImpl extends ShardedDaoImpl&lt;Order&gt; {
+ *     public OrderDaoImpl(DatastoreExt datastoreExt) {
+ *         super(datastoreExt, Order.class, TimeShardFunction.byMonth("createTime"));
+ *     }
+ * }
+ * </pre>
+ * <p>
+ * Create by max on 2020/01/16
+ */
+public abstract class ShardedDaoImpl<T> implements ShardedDao<T> {
+
+    private final DatastoreExt datastore;
+    private final String dbName;
+    private final Class<T> clazz;
+    private final ShardFunction function;
+    private final FieldInfo shardField;
+    private final Map<String, Shard<T>> shards = new ConcurrentHashMap<>();
+    private final DaoProbe probe;
+
+    public ShardedDaoImpl(DatastoreExt datastoreExt, Class<T> clazz, ShardFunction function) {
+        this(datastoreExt, datastoreExt.getDB().getName(), clazz, function);
+    }
+
+    public ShardedDaoImpl(DatastoreExt datastoreExt, String dbName, Class<T> clazz, ShardFunction function) {
+        this.datastore = datastoreExt;
+        this.dbName = dbName;
+        this.clazz = clazz;
+        this.function = function;
+        this.shardField = EntityMapperManager.INSTANCE.getEntityMapper(clazz).getFieldInfo(function.getField());
+        if (shardField == null) {
+            throw new IllegalArgumentException(String.format("shard field is not a valid field with getter and setter: %s.%s", clazz.getName(), function.getField()));
+        }
+        this.probe = new DaoProbe(datastoreExt.getMongoMetrics(), getClass().getSimpleName(), datastoreExt.getCollection(clazz).getName());
+    }
+
+    @Override
+    public ShardFunction getShardFunction() {
+        return function;
+    }
+
+    @Override
+    public BaseDao<T> shard(String shard) {
+        return shardDao(shard);
+    }
+
+    @Override
+    public BaseDao<T> shardOf(T entity) {
+        final Object key = shardField.getValue(entity);
+        if (key == null) {
+            throw new IllegalArgumentException("shard field is null: " + clazz.getName() + "." + function.getField());
+        }
+        return shardDao(function.shardOf(key));
+    }
+
+    @Override
+    public String insert(T entity) {
+        return shardOf(entity).insert(entity);
+    }
+
+    @Override
+    public void insertBatch(List<T> entities) {
+        final Map<BaseDao<T>, List<T>> groups = new LinkedHashMap<>();
+        entities.forEach(entity -> groups.computeIfAbsent(shardOf(entity), it -> new ArrayList<>()).add(entity));
+        groups.forEach(BaseDao::insertBatch);
+    }
+
+    @Override
+    public List<T> selectList(T condition, Object from, Object to, String sortKey, int limit) {
+        final DaoProbe.Sample sample = probe.start("selectList");
+        try (Stream<T> stream = stream(condition, from, to, sortKey, limit)) {
+            return sample.stop(stream.collect(Collectors.toList()));
+        } catch (RuntimeException e) {
+            throw sample.error(e);
+        }
+    }
+
+    @Override
+    public Stream<T> stream(T condition, Object from, Object to, String sortKey, int limit) {
+        return scan(condition, from, to, null, sortKey, limit);
+    }
+
+    @Override
+    public Stream<T> stream(Object from, Object to, Consumer<Query<T>> criteria, String sortKey, int limit) {
+        return scan(null, from, to, criteria, sortKey, limit);
+    }
+
+    private Stream<T> scan(T condition, Object from, Object to, Consumer<Query<T>> criteria, String sortKey, int limit) {
+        final Comparator<T> comparator = sortKey == null ? null : comparator(sortKey);
+        final FindOptions options = new FindOptions();
+        if (limit > 0) {
+            // 每个分片最多贡献limit条
+            options.limit(limit);
+        }
+        final List<CloseableIterator<T>> cursors = ScatterGather.execute(shardsBetween(from, to), shard -> {
+            final Query<T> query = rangeQuery(shard, condition, from, to);
+            if (criteria != null) {
+                criteria.accept(query);
+            }
+            if (sortKey != null) {
+                order(query, sortKey);
+            }
+            final CloseableIterator<T> cursor = shard.iterator(query, options);
+            // 在工作线程里拿到第一批数据
+            cursor.hasNext();
+            return cursor;
+        }, CloseableIterator::close, getParallelism(), getExecutor());
+        final MergingIterator<T> iterator = new MergingIterator<>(cursors, comparator, limit);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(iterator::close);
+    }
+
+    @Override
+    public long selectCount(T condition, Object from, Object to) {
+        final DaoProbe.Sample sample = probe.start("selectCount");
+        try {
+            final List<Long> counts = ScatterGather.execute(shardsBetween(from, to),
+                    shard -> shard.getDatastore().getCount(rangeQuery(shard, condition, from, to),
+                            new CountOptions().readPreference(shard.readPreference())),
+                    null, getParallelism(), getExecutor());
+            return sample.stop(counts.stream().mapToLong(Long::longValue).sum());
+        } catch (RuntimeException e) {
+            throw sample.error(e);
+        }
+    }
+
+    @Override
+    public List<DBObject> aggregate(Object from, Object to, List<? extends DBObject> pipeline, AggregationOptions options) {
+        final DaoProbe.Sample sample = probe.start("aggregate");
+        try {
+            final List<List<DBObject>> results = ScatterGather.execute(shardsBetween(from, to), shard -> {
+                final List<DBObject> stages = new ArrayList<>(pipeline.size() + 1);
+                stages.add(new BasicDBObject("$match", QueryUtils.filter(rangeQuery(shard, null, from, to))));
+                stages.addAll(pipeline);
+                final List<DBObject> documents = new ArrayList<>();
+                final Cursor cursor = shard.aggregate(stages, options);
+                try {
+                    cursor.forEachRemaining(documents::add);
+                } finally {
+                    cursor.close();
+                }
+                return documents;
+            }, null, getParallelism(), getExecutor());
+            final List<DBObject> documents = new ArrayList<>();
+            results.forEach(documents::addAll);
+            return sample.stop(documents);
+        } catch (RuntimeException e) {
+            throw sample.error(e);
+        }
+    }
+
+    /**
+     * 分片对应的datastore，collection使用前缀等其他命名方式时覆盖此方法
+     *
+     * @param shard collection后缀
+     * @return datastore
+     */
+    protected DatastoreExt getShardDatastore(String shard) {
+        return datastore.getDatastoreBySuffix(dbName, shard);
+    }
+
+    /**
+     * 同时在执行的分片查询数
+     */
+    protected int getParallelism() {
+        return 8;
+    }
+
+    /**
+     * 执行分片查询的线程池，默认使用内置的共享线程池
+     */
+    protected Executor getExecutor() {
+        return DaoExecutors.SHARED;
+    }
+
+    private Shard<T> shardDao(String shard) {
+        return shards.computeIfAbsent(shard, it -> new Shard<>(getShardDatastore(it), clazz));
+    }
+
+    private List<Shard<T>> shardsBetween(Object from, Object to) {
+        if (from == null || to == null) {
+            throw new IllegalArgumentException("shard range must not be null");
+        }
+        return function.shardsBetween(from, to).stream().map(this::shardDao).collect(Collectors.toList());
+    }
+
+    private Query<T> rangeQuery(Shard<T> shard, T condition, Object from, Object to) {
+        final Query<T> query = condition == null ? shard.createQuery() : shard.createQuery(condition);
+        query.field(function.getField()).greaterThanOrEq(from);
+        query.field(function.getField()).lessThan(to);
+        return query;
+    }
+
+    private static void order(Query<?> query, String sortKey) {
+        final boolean descending = sortKey.startsWith("-");
+        final String field = descending ? sortKey.substring(1) : sortKey;
+        final Sort idSort = descending ? Sort.descending(Mapper.ID_KEY) : Sort.ascending(Mapper.ID_KEY);
+        if (Mapper.ID_KEY.equals(field)) {
+            query.order(idSort);
+        } else {
+            query.order(descending ? Sort.descending(field) : Sort.ascending(field), idSort);
+        }
+    }
+
+    /**
+     * 与分片内的排序一致：先按排序字段，相同时按id，null排在最前
+     */
+    private Comparator<T> comparator(String sortKey) {
+        final boolean descending = sortKey.startsWith("-");
+        final String field = descending ? sortKey.substring(1) : sortKey;
+        final EntityMapper<T> entityMapper = EntityMapperManager.INSTANCE.getEntityMapper(clazz);
+        final FieldInfo idField = entityMapper.getIdField();
+        if (idField == null) {
+            throw new IllegalStateException("sorted shard query requires a field with annotation @Id: " + clazz.getName());
+        }
+        final boolean byId = Mapper.ID_KEY.equals(field) || idField.getFieldName().equals(field);
+        final FieldInfo sortField = byId ? idField : entityMapper.getFieldInfo(field);
+        if (sortField == null) {
+            throw new IllegalArgumentException(String.format("sort field is not a valid field with getter and setter: %s.%s", clazz.getName(), field));
+        }
+        final Function<T, Object> sortValue = stored(sortField);
+        Comparator<T> comparator = (a, b) -> compareValues(sortValue.apply(a), sortValue.apply(b));
+        if (!byId) {
+            final Function<T, Object> idValue = stored(idField);
+            comparator = comparator.thenComparing((a, b) -> compareValues(idValue.apply(a), idValue.apply(b)));
+        }
+        return descending ? comparator.reversed() : comparator;
+    }
+
+    /**
+     * 取字段在库中的存储形式，例如枚举为名字、字符串形式的id为ObjectId，与分片内服务端排序使用的值一致
+     */
+    private Function<T, Object> stored(FieldInfo fieldInfo) {
+        final Mapper mapper = datastore.getMapper();
+        final MappedField mappedField = mapper.getMappedClass(clazz).getMappedFieldByJavaField(fieldInfo.getFieldName());
+        return entity -> {
+            final Object value = fieldInfo.getValue(entity);
+            if (value == null) {
+                return null;
+            }
+            final Object stored = mappedField == null ? value : mapper.toMongoObject(mappedField, null, value);
+            return stored instanceof String && ObjectId.isValid((String) stored) && mappedField != null
+                    && mappedField.hasAnnotation(Id.class) ? new ObjectId((String) stored) : stored;
+        };
+    }
+
+    /**
+     * 按MongoDB的BSON排序规则比较：不同类型按类型顺序，同类型按值；无法比较的值视为相等
+     */
+    @SuppressWarnings("unchecked")
+    private static int compareValues(Object a, Object b) {
+        final int typeOrder = Integer.compare(typeOrder(a), typeOrder(b));
+        if (typeOrder != 0 || a == null) {
+            return typeOrder;
+        }
+        if (typeOrder(a) == 1) {
+            return compareNumbers(a, b);
+        }
+        if (a instanceof Comparable && a.getClass() == b.getClass()) {
+            return ((Comparable<Object>) a).compareTo(b);
+        }
+        return 0;
+    }
+
+    private static int typeOrder(Object value) {
+        if (value == null) {
+            return 0;
+        } else if (value instanceof Number || value instanceof Decimal128) {
+            return 1;
+        } else if (value instanceof String) {
+            return 2;
+        } else if (value instanceof List || value instanceof Object[]) {
+            return 4;
+        } else if (value instanceof DBObject || value instanceof Map) {
+            return 3;
+        } else if (value instanceof byte[] || value instanceof Binary) {
+            return 5;
+        } else if (value instanceof ObjectId) {
+            return 6;
+        } else if (value instanceof Boolean) {
+            return 7;
+        } else if (value instanceof Date) {
+            return 8;
+        }
+        return 9;
+    }
+
+    /**
+     * 整数与浮点数按数值比较，NaN排在所有数值之前
+     */
+    private static int compareNumbers(Object a, Object b) {
+        final boolean nanA = isNaN(a);
+        final boolean nanB = isNaN(b);
+        if (nanA || nanB) {
+            return nanA == nanB ? 0 : (nanA ? -1 : 1);
+        }
+        final int infinityA = infinity(a);
+        final int infinityB = infinity(b);
+        if (infinityA != 0 || infinityB != 0) {
+            return Integer.compare(infinityA, infinityB);
+        }
+        return toBigDecimal(a).compareTo(toBigDecimal(b));
+    }
+
+    /**
+     * 正无穷为1，负无穷为-1，有限值为0
+     */
+    private static int infinity(Object value) {
+        final boolean infinite = value instanceof Double && ((Double) value).isInfinite()
+                || value instanceof Float && ((Float) value).isInfinite()
+                || value instanceof Decimal128 && ((Decimal128) value).isInfinite();
+        if (!infinite) {
+            return 0;
+        }
+        final boolean negative = value instanceof Decimal128 ? ((Decimal128) value).isNegative() : ((Number) value).doubleValue() < 0;
+        return negative ? -1 : 1;
+    }
+
+    private static boolean isNaN(Object value) {
+        return value instanceof Double && ((Double) value).isNaN() || value instanceof Float && ((Float) value).isNaN()
+                || value instanceof Decimal128 && ((Decimal128) value).isNaN();
+    }
+
+    private static BigDecimal toBigDecimal(Object number) {
+        if (number instanceof BigDecimal) {
+            return (BigDecimal) number;
+        } else if (number instanceof Decimal128) {
+            return ((Decimal128) number).bigDecimalValue();
+        } else if (number instanceof Double || number instanceof Float) {
+            return BigDecimal.valueOf(((Number) number).doubleValue());
+        }
+        return BigDecimal.valueOf(((Number) number).longValue());
+    }
+
+    private static final class Shard<T> extends BaseDaoImpl<T> {
+        private Shard(DatastoreExt datastoreExt, Class<T> clazz) {
+            super(datastoreExt, clazz);
+        }
+    }
+}
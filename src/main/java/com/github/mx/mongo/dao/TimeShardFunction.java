@@ -0,0 +1,114 @@
+package com.github.mx.mongo.dao;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 按时间分片，例如按年的user_2019、按月的user_201901
+ * <p>
+ * 分片字段支持Date、Instant、LocalDate、LocalDateTime、ZonedDateTime、OffsetDateTime及毫秒时间戳
+ * <p>
+ * Create by max on 2020/01/16
+ */
+public class TimeShardFunction implements ShardFunction {
+
+    private final String field;
+    private final DateTimeFormatter formatter;
+    private final ChronoUnit unit;
+    private final ZoneId zone;
+
+    public TimeShardFunction(String field, String pattern, ChronoUnit unit) {
+        this(field, pattern, unit, ZoneId.systemDefault());
+    }
+
+    /**
+     * @param field   分片字段
+     * @param pattern 后缀格式，例如 yyyyMM
+     * @param unit    分片跨度，支持YEARS、MONTHS、DAYS、HOURS，需要与pattern一致
+     * @param zone    计算分片使用的时区
+     */
+    public TimeShardFunction(String field, String pattern, ChronoUnit unit, ZoneId zone) {
+        if (unit != ChronoUnit.YEARS && unit != ChronoUnit.MONTHS && unit != ChronoUnit.DAYS && unit != ChronoUnit.HOURS) {
+            throw new IllegalArgumentException("unsupported shard unit: " + unit);
+        }
+        this.field = field;
+        this.formatter = DateTimeFormatter.ofPattern(pattern);
+        this.unit = unit;
+        this.zone = zone;
+    }
+
+    public static TimeShardFunction byYear(String field) {
+        return new TimeShardFunction(field, "yyyy", ChronoUnit.YEARS);
+    }
+
+    public static TimeShardFunction byMonth(String field) {
+        return new TimeShardFunction(field, "yyyyMM", ChronoUnit.MONTHS);
+    }
+
+    public static TimeShardFunction byDay(String field) {
+        return new TimeShardFunction(field, "yyyyMMdd", ChronoUnit.DAYS);
+    }
+
+    @Override
+    public String getField() {
+        return field;
+    }
+
+    @Override
+    public String shardOf(Object key) {
+        return formatter.format(toDateTime(key));
+    }
+
+    @Override
+    public List<String> shardsBetween(Object from, Object to) {
+        final ZonedDateTime start = toDateTime(from);
+        final ZonedDateTime end = toDateTime(to);
+        final List<String> shards = new ArrayList<>();
+        if (!start.isBefore(end)) {
+            return shards;
+        }
+        for (ZonedDateTime it = truncate(start); it.isBefore(end); it = it.plus(1, unit)) {
+            shards.add(formatter.format(it));
+        }
+        return shards;
+    }
+
+    private ZonedDateTime truncate(ZonedDateTime time) {
+        switch (unit) {
+            case YEARS:
+                return time.withDayOfYear(1).truncatedTo(ChronoUnit.DAYS);
+            case MONTHS:
+                return time.withDayOfMonth(1).truncatedTo(ChronoUnit.DAYS);
+            default:
+                return time.truncatedTo(unit);
+        }
+    }
+
+    private ZonedDateTime toDateTime(Object key) {
+        if (key instanceof Date) {
+            return ((Date) key).toInstant().atZone(zone);
+        } else if (key instanceof Instant) {
+            return ((Instant) key).atZone(zone);
+        } else if (key instanceof Number) {
+            return Instant.ofEpochMilli(((Number) key).longValue()).atZone(zone);
+        } else if (key instanceof LocalDate) {
+            return ((LocalDate) key).atStartOfDay(zone);
+        } else if (key instanceof LocalDateTime) {
+            return ((LocalDateTime) key).atZone(zone);
+        } else if (key instanceof ZonedDateTime) {
+            return ((ZonedDateTime) key).withZoneSameInstant(zone);
+        } else if (key instanceof OffsetDateTime) {
+            return ((OffsetDateTime) key).atZoneSameInstant(zone);
+        }
+        throw new IllegalArgumentException("unsupported shard key of field " + field + ": " + key);
+    }
+}
@@ -0,0 +1,199 @@
+package com.github.mx.mongo.dao;
+
+import com.github.mx.mongo.mongo.DatastoreExt;
+import com.mongodb.BulkWriteError;
+import com.mongodb.MongoException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 合并写入：任意线程提交的单条insert先进入有界队列，攒够batchSize条或等待maxDelayMillis后批量写出
+ * <p>
+ * 队列满时提交线程阻塞(背压)；返回的future在数据写入(或按UNACKNOWLEDGED发出)后完成，需要确认落库的调用方可以等待它。
+ * 如果dao使用的是工厂创建的DatastoreExt，会自动注册到工厂，应用关闭时先flush再关闭连接
+ * <p>
+ * Create by max on 2020/01/16
+ */
+public class WriteBehindInserter<T> implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(WriteBehindInserter.class);
+
+    private final BaseDao<T> dao;
+    private final WriteBehindOptions options;
+    private final BulkInsertOptions bulkOptions;
+    private final BlockingQueue<Pending<T>> queue;
+    private final Thread flusher;
+    private volatile boolean closed;
+
+    public WriteBehindInserter(BaseDao<T> dao) {
+        this(dao, new WriteBehindOptions());
+    }
+
+    public WriteBehindInserter(BaseDao<T> dao, WriteBehindOptions options) {
+        this.dao = dao;
+        this.options = options;
+        this.bulkOptions = new BulkInsertOptions()
+                .chunkSize(options.getBatchSize())
+                .parallelism(1)
+                .writeConcern(options.getWriteConcern());
+        this.queue = new ArrayBlockingQueue<>(options.getQueueCapacity());
+        this.flusher = new Thread(this::run, "mongo-write-behind-" + dao.getClass().getSimpleName());
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+        if (dao.getDatastore() instanceof DatastoreExt) {
+            ((DatastoreExt) dao.getDatastore()).addCloseable(this);
+        }
+    }
+
+    /**
+     * 提交一条待写入的记录，队列满时阻塞
+     *
+     * @param entity 实体
+     * @return 写入完成后返回实体(id已回填)
+     */
+    public CompletableFuture<T> insert(T entity) {
+        if (closed) {
+            throw new IllegalStateException("write-behind inserter is closed");
+        }
+        final Pending<T> pending = new Pending<>(entity);
+        try {
+            if (options.getOfferTimeoutMillis() <= 0) {
+                queue.put(pending);
+            } else if (!queue.offer(pending, options.getOfferTimeoutMillis(), TimeUnit.MILLISECONDS)) {
+                throw new RejectedExecutionException("write-behind queue is full, capacity " + options.getQueueCapacity());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("interrupted while waiting for write-behind queue", e);
+        }
+        // 关闭与入队并发时，flusher可能已经退出
+        if (closed && !flusher.isAlive() && queue.remove(pending)) {
+            pending.future.completeExceptionally(new IllegalStateException("write-behind inserter is closed"));
+        }
+        return pending.future;
+    }
+
+    /**
+     * 在当前线程写出队列中已有的全部记录
+     */
+    public void flush() {
+        final List<Pending<T>> batch = new ArrayList<>(options.getBatchSize());
+        while (queue.drainTo(batch, options.getBatchSize()) > 0) {
+            write(batch);
+            batch.clear();
+        }
+    }
+
+    /**
+     * 当前排队等待写入的记录数
+     */
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            flusher.join(options.getCloseTimeoutMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (flusher.isAlive()) {
+            log.warn("write-behind flusher did not finish in {} ms, {} entities dropped", options.getCloseTimeoutMillis(), queue.size());
+            final List<Pending<T>> rest = new ArrayList<>();
+            queue.drainTo(rest);
+            rest.forEach(it -> it.future.completeExceptionally(new IllegalStateException("write-behind inserter closed before flush")));
+        }
+        if (dao.getDatastore() instanceof DatastoreExt) {
+            ((DatastoreExt) dao.getDatastore()).removeCloseable(this);
+        }
+    }
+
+    private void run() {
+        final List<Pending<T>> batch = new ArrayList<>(options.getBatchSize());
+        while (!closed || !queue.isEmpty()) {
+            try {
+                final Pending<T> first = queue.poll(Math.max(options.getMaxDelayMillis(), 1), TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                final long deadline = first.enqueuedAt + TimeUnit.MILLISECONDS.toNanos(options.getMaxDelayMillis());
+                while (batch.size() < options.getBatchSize() && !closed) {
+                    queue.drainTo(batch, options.getBatchSize() - batch.size());
+                    final long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= options.getBatchSize() || remaining <= 0) {
+                        break;
+                    }
+                    final Pending<T> next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next != null) {
+                        batch.add(next);
+                    }
+                }
+                queue.drainTo(batch, options.getBatchSize() - batch.size());
+                write(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                closed = true;
+            } catch (RuntimeException e) {
+                log.error("write-behind flush failed", e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(List<Pending<T>> batch) {
+        final List<T> entities = new ArrayList<>(batch.size());
+        batch.forEach(it -> entities.add(it.entity));
+        final BulkInsertResult result;
+        try {
+            result = dao.insertBatch(entities, bulkOptions);
+        } catch (RuntimeException e) {
+            batch.forEach(it -> it.future.completeExceptionally(e));
+            return;
+        }
+        final Exception[] errors = new Exception[batch.size()];
+        for (BulkInsertResult.ChunkResult chunk : result.getChunks()) {
+            for (Integer index : chunk.getFailedIndexes()) {
+                errors[index] = chunk.getError() != null ? chunk.getError() : new IllegalStateException("insert failed at index " + index);
+            }
+            for (BulkWriteError error : chunk.getWriteErrors()) {
+                errors[error.getIndex()] = new MongoException(error.getCode(), error.getMessage());
+            }
+            for (Integer index : chunk.getUnexecutedIndexes()) {
+                errors[index] = new IllegalStateException("insert at index " + index + " not executed: ordered write stopped at an earlier failure");
+            }
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            final Pending<T> pending = batch.get(i);
+            if (errors[i] == null) {
+                pending.future.complete(pending.entity);
+            } else {
+                pending.future.completeExceptionally(errors[i]);
+            }
+        }
+    }
+
+    private static final class Pending<T> {
+        private final T entity;
+        private final long enqueuedAt = System.nanoTime();
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+
+        private Pending(T entity) {
+            this.entity = entity;
+        }
+    }
+}
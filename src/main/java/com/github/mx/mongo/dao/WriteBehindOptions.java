@@ -0,0 +1,96 @@
+package com.github.mx.mongo.dao;
+
+import com.mongodb.WriteConcern;
+
+/**
+ * 合并写入选项
+ * <p>
+ * Create by max on 2020/01/16
+ */
+public class WriteBehindOptions {
+
+    /**
+     * 攒够多少条写一次
+     */
+    private int batchSize = 500;
+    /**
+     * 第一条入队后最多等待多久写出(毫秒)
+     */
+    private long maxDelayMillis = 50;
+    /**
+     * 队列容量，满了之后insert会阻塞
+     */
+    private int queueCapacity = 10000;
+    /**
+     * 队列满时最多阻塞多久(毫秒)，超时抛出RejectedExecutionException；小于等于0时一直阻塞
+     */
+    private long offerTimeoutMillis;
+    /**
+     * 写关注，为null时使用collection默认值；遥测类数据可使用WriteConcern.UNACKNOWLEDGED
+     */
+    private WriteConcern writeConcern;
+    /**
+     * 关闭时等待剩余数据写出的最长时间(毫秒)
+     */
+    private long closeTimeoutMillis = 10000;
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public WriteBehindOptions batchSize(int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batchSize must be positive");
+        }
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    public long getMaxDelayMillis() {
+        return maxDelayMillis;
+    }
+
+    public WriteBehindOptions maxDelayMillis(long maxDelayMillis) {
+        this.maxDelayMillis = maxDelayMillis;
+        return this;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public WriteBehindOptions queueCapacity(int queueCapacity) {
+        if (queueCapacity <= 0) {
+            throw new IllegalArgumentException("queueCapacity must be positive");
+        }
+        this.queueCapacity = queueCapacity;
+        return this;
+    }
+
+    public long getOfferTimeoutMillis() {
+        return offerTimeoutMillis;
+    }
+
+    public WriteBehindOptions offerTimeoutMillis(long offerTimeoutMillis) {
+        this.offerTimeoutMillis = offerTimeoutMillis;
+        return this;
+    }
+
+    public WriteConcern getWriteConcern() {
+        return writeConcern;
+    }
+
+    public WriteBehindOptions writeConcern(WriteConcern writeConcern) {
+        this.writeConcern = writeConcern;
+        return this;
+    }
+
+    public long getCloseTimeoutMillis() {
+        return closeTimeoutMillis;
+    }
+
+    public WriteBehindOptions closeTimeoutMillis(long closeTimeoutMillis) {
+        this.closeTimeoutMillis = closeTimeoutMillis;
+        return this;
+    }
+}
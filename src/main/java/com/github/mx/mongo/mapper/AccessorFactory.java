@@ -0,0 +1,155 @@
+package com.github.mx.mongo.mapper;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 为getter/setter及无参构造器生成访问器，避免每次调用都走反射
+ * <p>
+ * 实体类对当前ClassLoader可见且为public时使用LambdaMetafactory生成，否则退化为MethodHandle
+ * <p>
+ * Create by max on 2020/01/16
+ */
+final class AccessorFactory {
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    private AccessorFactory() {
+    }
+
+    @SuppressWarnings("unchecked")
+    static Function<Object, Object> getter(Method method) {
+        final MethodHandle handle = unreflect(method);
+        if (canSpin(method)) {
+            try {
+                final CallSite site = LambdaMetafactory.metafactory(LOOKUP, "apply",
+                        MethodType.methodType(Function.class),
+                        MethodType.methodType(Object.class, Object.class),
+                        handle,
+                        MethodType.methodType(handle.type().returnType(), method.getDeclaringClass()).wrap());
+                return (Function<Object, Object>) site.getTarget().invoke();
+            } catch (Throwable ignore) {
+                // fall through to MethodHandle
+            }
+        }
+        final MethodHandle generic = handle.asType(MethodType.methodType(Object.class, Object.class));
+        return target -> {
+            try {
+                return generic.invokeExact(target);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalStateException(e);
+            }
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    static BiConsumer<Object, Object> setter(Method method) {
+        final MethodHandle handle = unreflect(method);
+        if (canSpin(method)) {
+            try {
+                final CallSite site = LambdaMetafactory.metafactory(LOOKUP, "accept",
+                        MethodType.methodType(BiConsumer.class),
+                        MethodType.methodType(void.class, Object.class, Object.class),
+                        handle,
+                        MethodType.methodType(void.class, method.getDeclaringClass(), wrap(method.getParameterTypes()[0])));
+                return (BiConsumer<Object, Object>) site.getTarget().invoke();
+            } catch (Throwable ignore) {
+                // fall through to MethodHandle
+            }
+        }
+        final MethodHandle generic = handle.asType(MethodType.methodType(void.class, Object.class, Object.class));
+        return (target, value) -> {
+            try {
+                generic.invokeExact(target, value);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalStateException(e);
+            }
+        };
+    }
+
+    /**
+     * 无参构造器，没有时返回null
+     */
+    @SuppressWarnings("unchecked")
+    static <T> Supplier<T> constructor(Class<T> clazz) {
+        final Constructor<T> constructor;
+        final MethodHandle handle;
+        try {
+            constructor = clazz.getDeclaredConstructor();
+            if (!Modifier.isPublic(clazz.getModifiers()) || !Modifier.isPublic(constructor.getModifiers())) {
+                constructor.setAccessible(true);
+            }
+            handle = LOOKUP.unreflectConstructor(constructor);
+        } catch (NoSuchMethodException | IllegalAccessException | RuntimeException e) {
+            return null;
+        }
+        if (Modifier.isPublic(constructor.getModifiers()) && canSpin(clazz)) {
+            try {
+                final CallSite site = LambdaMetafactory.metafactory(LOOKUP, "get",
+                        MethodType.methodType(Supplier.class),
+                        MethodType.methodType(Object.class),
+                        handle,
+                        MethodType.methodType(clazz));
+                return (Supplier<T>) site.getTarget().invoke();
+            } catch (Throwable ignore) {
+                // fall through to MethodHandle
+            }
+        }
+        final MethodHandle generic = handle.asType(MethodType.methodType(Object.class));
+        return () -> {
+            try {
+                return (T) generic.invokeExact();
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalStateException(e);
+            }
+        };
+    }
+
+    private static MethodHandle unreflect(Method method) {
+        try {
+            if (!Modifier.isPublic(method.getDeclaringClass().getModifiers())) {
+                method.setAccessible(true);
+            }
+            return LOOKUP.unreflect(method);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("cannot access " + method, e);
+        }
+    }
+
+    /**
+     * 生成的lambda类定义在本类的ClassLoader中，实体类必须对其可见
+     */
+    private static boolean canSpin(Method method) {
+        return canSpin(method.getDeclaringClass());
+    }
+
+    private static boolean canSpin(Class<?> owner) {
+        if (!Modifier.isPublic(owner.getModifiers())) {
+            return false;
+        }
+        try {
+            return Class.forName(owner.getName(), false, AccessorFactory.class.getClassLoader()) == owner;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    private static Class<?> wrap(Class<?> type) {
+        return MethodType.methodType(type).wrap().returnType();
+    }
+}
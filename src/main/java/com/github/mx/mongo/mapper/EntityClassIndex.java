@@ -0,0 +1,166 @@
+package com.github.mx.mongo.mapper;
+
+import org.mongodb.morphia.Morphia;
+import org.mongodb.morphia.mapping.MappingException;
+import org.mongodb.morphia.utils.ReflectionUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.reflect.Modifier;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 实体类索引，代替morphia.mapPackage
+ * <p>
+ * 同一个包只扫描一次classpath，之后新建的Mapper/MapperExt直接复用扫描结果；
+ * 如果classpath中有{@link EntityIndexProcessor}编译期生成的索引文件，则完全不扫描
+ * <p>
+ * Create by max on 2020/01/16
+ */
+public class EntityClassIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(EntityClassIndex.class);
+
+    public static final EntityClassIndex INSTANCE = new EntityClassIndex();
+
+    /**
+     * 编译期生成的索引文件，每行一个@Entity/@Embedded类的全名
+     */
+    public static final String INDEX_RESOURCE = "META-INF/mongo-support/entities";
+
+    private final Map<String, List<Class<?>>> classes = new ConcurrentHashMap<>();
+    private volatile Set<String> indexed;
+
+    private EntityClassIndex() {
+    }
+
+    /**
+     * 把包下的@Entity/@Embedded类映射到morphia，与morphia.mapPackage等价
+     *
+     * @param morphia              Morphia
+     * @param packageName          包名
+     * @param ignoreInvalidClasses 是否忽略无法映射的类
+     * @param useIndex             是否使用编译期生成的索引
+     */
+    public void mapPackage(Morphia morphia, String packageName, boolean ignoreInvalidClasses, boolean useIndex) {
+        final boolean subPackages = morphia.getMapper().getOptions().isMapSubPackages();
+        for (Class<?> clazz : getEntityClasses(packageName, subPackages, useIndex)) {
+            try {
+                morphia.map(clazz);
+            } catch (MappingException e) {
+                if (!ignoreInvalidClasses) {
+                    throw e;
+                }
+                log.error("cannot map class {}", clazz.getName(), e);
+            }
+        }
+    }
+
+    /**
+     * 包下可映射的实体类
+     *
+     * @param packageName 包名
+     * @param subPackages 是否包含子包
+     * @param useIndex    是否使用编译期生成的索引
+     * @return 实体类
+     */
+    public List<Class<?>> getEntityClasses(String packageName, boolean subPackages, boolean useIndex) {
+        final String key = packageName + (subPackages ? ".**" : "") + (useIndex ? "" : "#scan");
+        return classes.computeIfAbsent(key, it -> load(packageName, subPackages, useIndex));
+    }
+
+    /**
+     * 丢弃已缓存的扫描结果
+     */
+    public void invalidate() {
+        classes.clear();
+        indexed = null;
+    }
+
+    private List<Class<?>> load(String packageName, boolean subPackages, boolean useIndex) {
+        final long start = System.nanoTime();
+        final Collection<Class<?>> candidates = new LinkedHashSet<>();
+        final List<String> names = useIndex ? indexedClasses(packageName, subPackages) : Collections.emptyList();
+        if (names.isEmpty()) {
+            try {
+                candidates.addAll(ReflectionUtils.getClasses(packageName, subPackages));
+            } catch (IOException | ClassNotFoundException e) {
+                throw new MappingException("Could not get map classes from package " + packageName, e);
+            }
+        } else {
+            for (String name : names) {
+                try {
+                    candidates.add(Class.forName(name, false, classLoader()));
+                } catch (ClassNotFoundException | LinkageError e) {
+                    // 索引可能比classpath旧
+                    log.warn("class {} in entity index not found", name);
+                }
+            }
+        }
+        final List<Class<?>> entities = new ArrayList<>();
+        for (Class<?> clazz : candidates) {
+            if ((ReflectionUtils.getClassEntityAnnotation(clazz) != null || ReflectionUtils.getClassEmbeddedAnnotation(clazz) != null)
+                    && !Modifier.isAbstract(clazz.getModifiers())) {
+                entities.add(clazz);
+            }
+        }
+        log.info("found {} entity classes in {} by {} in {} ms", entities.size(), packageName,
+                names.isEmpty() ? "classpath scan" : "index", (System.nanoTime() - start) / 1000000);
+        return Collections.unmodifiableList(entities);
+    }
+
+    private List<String> indexedClasses(String packageName, boolean subPackages) {
+        final List<String> names = new ArrayList<>();
+        for (String name : index()) {
+            final int pos = name.lastIndexOf('.');
+            final String pkg = pos < 0 ? "" : name.substring(0, pos);
+            if (pkg.equals(packageName) || (subPackages && pkg.startsWith(packageName + '.'))) {
+                names.add(name);
+            }
+        }
+        return names;
+    }
+
+    private Set<String> index() {
+        Set<String> current = indexed;
+        if (current == null) {
+            current = new LinkedHashSet<>();
+            try {
+                final Enumeration<URL> resources = classLoader().getResources(INDEX_RESOURCE);
+                while (resources.hasMoreElements()) {
+                    try (BufferedReader reader = new BufferedReader(new InputStreamReader(resources.nextElement().openStream(), StandardCharsets.UTF_8))) {
+                        String line;
+                        while ((line = reader.readLine()) != null) {
+                            line = line.trim();
+                            if (!line.isEmpty() && !line.startsWith("#")) {
+                                current.add(line);
+                            }
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                log.warn("cannot read entity index {}", INDEX_RESOURCE, e);
+            }
+            indexed = current;
+        }
+        return current;
+    }
+
+    private static ClassLoader classLoader() {
+        final ClassLoader loader = Thread.currentThread().getContextClassLoader();
+        return loader != null ? loader : EntityClassIndex.class.getClassLoader();
+    }
+}
@@ -0,0 +1,81 @@
+package com.github.mx.mongo.mapper;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * 编译期生成实体类索引{@link EntityClassIndex#INDEX_RESOURCE}，启动时不再扫描classpath
+ * <p>
+ * 没有注册为自动发现的processor，需要在maven-compiler-plugin的annotationProcessors中显式指定。
+ * 增量编译时会合并已有的索引，并去掉已经不存在的类
+ * <p>
+ * Create by max on 2020/01/16
+ */
+@SupportedAnnotationTypes({"org.mongodb.morphia.annotations.Entity", "org.mongodb.morphia.annotations.Embedded"})
+public class EntityIndexProcessor extends AbstractProcessor {
+
+    private final Set<String> entities = new TreeSet<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (TypeElement annotation : annotations) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                if (element.getKind() == ElementKind.CLASS && !element.getModifiers().contains(Modifier.ABSTRACT)) {
+                    entities.add(processingEnv.getElementUtils().getBinaryName((TypeElement) element).toString());
+                }
+            }
+        }
+        if (roundEnv.processingOver() && !entities.isEmpty()) {
+            write();
+        }
+        return false;
+    }
+
+    private void write() {
+        final Set<String> all = new TreeSet<>(entities);
+        try {
+            final FileObject existing = processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "", EntityClassIndex.INDEX_RESOURCE);
+            try (Reader reader = existing.openReader(true); BufferedReader lines = new BufferedReader(reader)) {
+                String line;
+                while ((line = lines.readLine()) != null) {
+                    if (!line.isEmpty() && processingEnv.getElementUtils().getTypeElement(line.replace('$', '.')) != null) {
+                        all.add(line);
+                    }
+                }
+            }
+        } catch (IOException ignore) {
+            // 第一次编译时还没有索引
+        }
+        try {
+            final FileObject index = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", EntityClassIndex.INDEX_RESOURCE);
+            try (Writer writer = index.openWriter()) {
+                for (String name : all) {
+                    writer.write(name);
+                    writer.write('\n');
+                }
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "cannot write " + EntityClassIndex.INDEX_RESOURCE + ": " + e);
+        }
+    }
+}
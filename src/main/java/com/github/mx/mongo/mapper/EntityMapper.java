@@ -1,6 +1,9 @@
 package com.github.mx.mongo.mapper;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
 
 /**
  * Create by max on 2020/01/16
@@ -13,6 +16,18 @@ public class EntityMapper<T> {
 
     private List<FieldInfo> fieldInfos;
 
+    private Map<String, FieldInfo> fieldInfoMap;
+
+    /**
+     * 按例查询时需要检查的字段(不含id)，解析时预先计算好
+     */
+    private FieldInfo[] conditionFields;
+
+    /**
+     * 无参构造器，类没有无参构造器时为null
+     */
+    private Supplier<T> constructor;
+
     public Class<T> getClazz() {
         return clazz;
     }
@@ -35,5 +50,40 @@ public class EntityMapper<T> {
 
     public void setFieldInfos(List<FieldInfo> fieldInfos) {
         this.fieldInfos = fieldInfos;
+        final Map<String, FieldInfo> map = new HashMap<>();
+        fieldInfos.forEach(fieldInfo -> map.put(fieldInfo.getFieldName(), fieldInfo));
+        this.fieldInfoMap = map;
+    }
+
+    /**
+     * 根据字段名获取字段信息
+     *
+     * @param fieldName 字段名
+     * @return 字段信息，不存在时返回null
+     */
+    public FieldInfo getFieldInfo(String fieldName) {
+        return fieldInfoMap.get(fieldName);
+    }
+
+    /**
+     * 通过无参构造器创建实例
+     */
+    public T newInstance() {
+        if (constructor == null) {
+            throw new IllegalStateException("no default constructor: " + clazz.getName());
+        }
+        return constructor.get();
+    }
+
+    public void setConstructor(Supplier<T> constructor) {
+        this.constructor = constructor;
+    }
+
+    public FieldInfo[] getConditionFields() {
+        return conditionFields;
+    }
+
+    public void setConditionFields(FieldInfo[] conditionFields) {
+        this.conditionFields = conditionFields;
     }
 }
\ No newline at end of file
@@ -3,9 +3,7 @@ package com.github.mx.mongo.mapper;
 import org.mongodb.morphia.annotations.Id;
 
 import java.lang.reflect.Field;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -17,23 +15,37 @@ public class EntityMapperManager {
 
     public static final EntityMapperManager INSTANCE = new EntityMapperManager();
 
-    private final Map<Class<?>, EntityMapper<?>> cache = new HashMap<>();
+    /**
+     * 每个Class只会发布一个EntityMapper，并发首次访问时多余的解析结果会被丢弃，读取无锁
+     */
+    private final ClassValue<EntityMapper<?>> cache = new ClassValue<EntityMapper<?>>() {
+        @Override
+        protected EntityMapper<?> computeValue(Class<?> type) {
+            return parseEntityMapper(type);
+        }
+    };
 
     private EntityMapperManager() {
     }
 
     public <T> EntityMapper<T> getEntityMapper(Class<T> clazz) {
-        if (!cache.containsKey(clazz)) {
-            final EntityMapper<T> mapper = parseEntityMapper(clazz);
-            cache.putIfAbsent(clazz, mapper);
-        }
         @SuppressWarnings("unchecked") final EntityMapper<T> mapper = (EntityMapper<T>) cache.get(clazz);
         return mapper;
     }
 
+    /**
+     * 预先解析实体类，避免首次请求时才反射解析
+     *
+     * @param classes 实体类
+     */
+    public void preParse(Iterable<Class<?>> classes) {
+        classes.forEach(cache::get);
+    }
+
     private <T> EntityMapper<T> parseEntityMapper(Class<T> clazz) {
         final EntityMapper<T> entityMapper = new EntityMapper<>();
         entityMapper.setClazz(clazz);
+        entityMapper.setConstructor(AccessorFactory.constructor(clazz));
         entityMapper.setFieldInfos(FieldInfo.parseField(clazz));
 
         final List<Field> idAnnotations = Stream.of(clazz.getDeclaredFields())
@@ -56,6 +68,10 @@ public class EntityMapperManager {
         } else {
             entityMapper.setIdField(null);
         }
+        final FieldInfo idField = entityMapper.getIdField();
+        entityMapper.setConditionFields(entityMapper.getFieldInfos().stream()
+                .filter(fieldInfo -> fieldInfo != idField)
+                .toArray(FieldInfo[]::new));
         return entityMapper;
     }
 }
@@ -6,6 +6,8 @@ import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
 import java.util.stream.Stream;
 
 /**
@@ -17,7 +19,8 @@ public class FieldInfo {
     private String columnName;
     private Method getterMethod;
     private Method setterMethod;
-
+    private Function<Object, Object> getter;
+    private BiConsumer<Object, Object> setter;
 
     public static List<FieldInfo> parseField(Class<?> clazz) {
         final Field[] fields = clazz.getDeclaredFields();
@@ -58,6 +61,7 @@ public class FieldInfo {
 
     public void setGetterMethod(Method getterMethod) {
         this.getterMethod = getterMethod;
+        this.getter = AccessorFactory.getter(getterMethod);
     }
 
     public Method getSetterMethod() {
@@ -66,6 +70,21 @@ public class FieldInfo {
 
     public void setSetterMethod(Method setterMethod) {
         this.setterMethod = setterMethod;
+        this.setter = AccessorFactory.setter(setterMethod);
+    }
+
+    /**
+     * 通过预先生成的访问器读取字段值
+     */
+    public Object getValue(Object target) {
+        return getter.apply(target);
+    }
+
+    /**
+     * 通过预先生成的访问器设置字段值
+     */
+    public void setValue(Object target, Object value) {
+        setter.accept(target, value);
     }
 
     public FieldInfo() {
@@ -76,5 +95,7 @@ public class FieldInfo {
         this.columnName = columnName;
         this.getterMethod = getterMethod;
         this.setterMethod = setterMethod;
+        this.getter = AccessorFactory.getter(getterMethod);
+        this.setter = AccessorFactory.setter(setterMethod);
     }
 }
@@ -0,0 +1,23 @@
+package com.github.mx.mongo.metrics;
+
+/**
+ * dao调用指标的SPI，每次调用结束后回调一次，实现必须线程安全且不能阻塞
+ * <p>
+ * 默认提供{@link NoopDaoMetrics}和基于Micrometer的{@link MicrometerDaoMetrics}，通过{@link MongoMetrics#setMetrics(DaoMetrics)}安装
+ * <p>
+ * Create by max on 2020/01/16
+ */
+public interface DaoMetrics {
+
+    /**
+     * 记录一次调用
+     *
+     * @param dao           dao类名，Datastore层的调用为"Datastore"
+     * @param collection    collection名字，无法确定时为"-"
+     * @param method        方法名
+     * @param durationNanos 耗时，纳秒
+     * @param documents     返回的文档数，写操作和计数为0
+     * @param error         调用抛出的异常，成功时为null
+     */
+    void record(String dao, String collection, String method, long durationNanos, int documents, Throwable error);
+}
@@ -0,0 +1,223 @@
+package com.github.mx.mongo.metrics;
+
+import org.mongodb.morphia.query.Query;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * dao方法的计时埋点，每个dao持有一个：
+ * <pre>
+ * final DaoProbe.Sample sample = probe.start("selectList");
+ * try {
+ *     return sample.query(query).stop(query.asList());
+ * } catch (RuntimeException e) {
+ *     throw sample.error(e);
+ * }
+ * </pre>
+ * 未开启时start返回共享的空Sample，不取时间也不分配对象
+ * <p>
+ * Create by max on 2020/01/16
+ */
+public final class DaoProbe {
+
+    private static final Logger log = LoggerFactory.getLogger(DaoProbe.class);
+
+    private final MongoMetrics settings;
+    private final String dao;
+    private final String collection;
+    private final Function<Object, String> resolver;
+    private final boolean slowQueryLog;
+
+    public DaoProbe(String dao, String collection) {
+        this(MongoMetrics.INSTANCE, dao, collection);
+    }
+
+    /**
+     * @param settings 指标与慢查询配置，一般为{@code DatastoreExt.getMongoMetrics()}
+     */
+    public DaoProbe(MongoMetrics settings, String dao, String collection) {
+        this.settings = settings;
+        this.dao = dao;
+        this.collection = collection == null ? "-" : collection;
+        this.resolver = null;
+        this.slowQueryLog = true;
+    }
+
+    /**
+     * collection不固定时(如Datastore层)，由resolver根据调用的目标对象(实体、Class、Query等)解析，只在开启时才解析
+     *
+     * @param slowQueryLog 是否打印慢查询日志，同一次调用被多层埋点时只需要最外层打印
+     */
+    public DaoProbe(String dao, Function<Object, String> resolver, boolean slowQueryLog) {
+        this(MongoMetrics.INSTANCE, dao, resolver, slowQueryLog);
+    }
+
+    public DaoProbe(MongoMetrics settings, String dao, Function<Object, String> resolver, boolean slowQueryLog) {
+        this.settings = settings;
+        this.dao = dao;
+        this.collection = "-";
+        this.resolver = resolver;
+        this.slowQueryLog = slowQueryLog;
+    }
+
+    public boolean isEnabled() {
+        return settings.isEnabled();
+    }
+
+    public Sample start(String method) {
+        if (!settings.isEnabled()) {
+            return Sample.DISABLED;
+        }
+        return new Sample(this, method, null);
+    }
+
+    /**
+     * @param target 用于解析collection的对象，见{@link #DaoProbe(String, Function, boolean)}
+     */
+    public Sample start(String method, Object target) {
+        if (!settings.isEnabled()) {
+            return Sample.DISABLED;
+        }
+        return new Sample(this, method, target);
+    }
+
+    private String collectionOf(Sample sample) {
+        if (resolver == null || sample.target == null) {
+            return collection;
+        }
+        try {
+            final String resolved = resolver.apply(sample.target);
+            return resolved == null ? collection : resolved;
+        } catch (RuntimeException e) {
+            return collection;
+        }
+    }
+
+    private void record(Sample sample, int documents, Throwable error) {
+        final long duration = System.nanoTime() - sample.startNanos;
+        final String collection = collectionOf(sample);
+        try {
+            settings.getMetrics().record(dao, collection, sample.method, duration, documents, error);
+        } catch (RuntimeException e) {
+            log.warn("cannot record metrics for {}.{}", dao, sample.method, e);
+        }
+        final long slowQueryNanos = settings.getSlowQueryNanos();
+        if (slowQueryLog && slowQueryNanos >= 0 && duration >= slowQueryNanos) {
+            logSlowQuery(sample, collection, duration, documents, settings.isExplainSlowQueries());
+        }
+    }
+
+    private void logSlowQuery(Sample sample, String collection, long duration, int documents, boolean explain) {
+        try {
+            final String shape = sample.query == null ? "-" : QueryShape.of(sample.query);
+            log.warn("slow mongo query {}.{} on {}: {} ms, {} documents, {}", dao, sample.method, collection,
+                    TimeUnit.NANOSECONDS.toMillis(duration), documents, shape);
+            if (explain && sample.query != null) {
+                log.warn("explain of slow mongo query {}.{}: {}", dao, sample.method, sample.query.explain());
+            }
+        } catch (RuntimeException e) {
+            log.warn("cannot log slow query {}.{}", dao, sample.method, e);
+        }
+    }
+
+    private static int documents(Object result) {
+        if (result instanceof Collection) {
+            return ((Collection<?>) result).size();
+        }
+        if (result instanceof Map) {
+            return ((Map<?, ?>) result).size();
+        }
+        if (result instanceof Number || result instanceof Boolean || result instanceof String) {
+            // 计数、写入条数、id等不算返回的文档
+            return 0;
+        }
+        return result == null ? 0 : 1;
+    }
+
+    /**
+     * 一次调用的计时
+     */
+    public static final class Sample {
+
+        static final Sample DISABLED = new Sample(null, null, null);
+
+        private final DaoProbe probe;
+        private final String method;
+        private final Object target;
+        private final long startNanos;
+        private Query<?> query;
+
+        private Sample(DaoProbe probe, String method, Object target) {
+            this.probe = probe;
+            this.method = method;
+            this.target = target;
+            this.startNanos = probe == null ? 0 : System.nanoTime();
+        }
+
+        /**
+         * 关联本次执行的查询，慢查询日志据此打印查询形状
+         */
+        public Sample query(Query<?> query) {
+            if (probe != null) {
+                this.query = query;
+                final QueryShapeRecorder recorder = probe.settings.getQueryShapeRecorder();
+                if (probe.slowQueryLog && recorder.isEnabled()) {
+                    recorder.record(query);
+                }
+            }
+            return this;
+        }
+
+        /**
+         * 调用成功，返回结果本身
+         */
+        public <R> R stop(R result) {
+            if (probe != null) {
+                probe.record(this, documents(result), null);
+            }
+            return result;
+        }
+
+        /**
+         * 计数、写入条数等，避免装箱
+         */
+        public long stop(long result) {
+            if (probe != null) {
+                probe.record(this, 0, null);
+            }
+            return result;
+        }
+
+        public boolean stop(boolean result) {
+            if (probe != null) {
+                probe.record(this, 0, null);
+            }
+            return result;
+        }
+
+        /**
+         * 返回数量已知的结果，如分页
+         */
+        public <R> R stop(R result, int documents) {
+            if (probe != null) {
+                probe.record(this, documents, null);
+            }
+            return result;
+        }
+
+        /**
+         * 调用失败，返回异常本身以便直接throw
+         */
+        public <E extends Throwable> E error(E error) {
+            if (probe != null) {
+                probe.record(this, 0, error);
+            }
+            return error;
+        }
+    }
+}
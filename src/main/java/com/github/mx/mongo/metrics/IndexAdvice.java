@@ -0,0 +1,69 @@
+package com.github.mx.mongo.metrics;
+
+import com.mongodb.DBObject;
+
+/**
+ * 一种查询形状的索引分析结果
+ * <p>
+ * Create by max on 2020/01/16
+ */
+public class IndexAdvice {
+
+    public enum Status {
+        /**
+         * 有索引前缀按"等值-排序-范围"完整覆盖
+         */
+        COVERED,
+        /**
+         * 有可用的索引，但需要内存排序或回表过滤部分条件
+         */
+        PARTIAL,
+        /**
+         * 没有可用的索引，会全表扫描(COLLSCAN)
+         */
+        MISSING
+    }
+
+    private final QueryShapeStats shape;
+    private final Status status;
+    private final DBObject recommendedIndex;
+    private final boolean created;
+
+    public IndexAdvice(QueryShapeStats shape, Status status, DBObject recommendedIndex, boolean created) {
+        this.shape = shape;
+        this.status = status;
+        this.recommendedIndex = recommendedIndex;
+        this.created = created;
+    }
+
+    public QueryShapeStats getShape() {
+        return shape;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * 建议的索引，COVERED时为null
+     */
+    public DBObject getRecommendedIndex() {
+        return recommendedIndex;
+    }
+
+    /**
+     * 是否已经自动创建了建议的索引
+     */
+    public boolean isCreated() {
+        return created;
+    }
+
+    IndexAdvice created() {
+        return new IndexAdvice(shape, status, recommendedIndex, true);
+    }
+
+    @Override
+    public String toString() {
+        return status + " " + shape + (recommendedIndex == null ? "" : " recommended=" + recommendedIndex) + (created ? " (created)" : "");
+    }
+}
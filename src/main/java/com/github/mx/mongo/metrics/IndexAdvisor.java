@@ -0,0 +1,179 @@
+package com.github.mx.mongo.metrics;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 按"等值-排序-范围"规则比较查询形状与已有索引，给出缺失或不完整时建议的索引
+ * <p>
+ * analyze只依赖索引的key文档，可以直接传入构造的索引列表验证规则
+ * <p>
+ * Create by max on 2020/01/16
+ */
+public final class IndexAdvisor {
+
+    private static final Logger log = LoggerFactory.getLogger(IndexAdvisor.class);
+
+    private IndexAdvisor() {
+    }
+
+    /**
+     * 读取collection现有索引并分析，create为true时为MISSING的形状创建建议的索引
+     *
+     * @param collection collection
+     * @param shapes     该collection上记录的查询形状
+     * @param create     是否创建缺失的索引
+     * @return 分析结果，没有任何条件和排序的形状不参与分析
+     */
+    public static List<IndexAdvice> advise(DBCollection collection, List<QueryShapeStats> shapes, boolean create) {
+        final List<DBObject> indexes = new ArrayList<>();
+        collection.getIndexInfo().forEach(it -> indexes.add((DBObject) it.get("key")));
+        final List<IndexAdvice> advices = analyze(indexes, shapes);
+        if (!create) {
+            return advices;
+        }
+        final Set<DBObject> created = new HashSet<>();
+        final List<IndexAdvice> result = new ArrayList<>(advices.size());
+        for (IndexAdvice advice : advices) {
+            if (advice.getStatus() != IndexAdvice.Status.MISSING) {
+                result.add(advice);
+                continue;
+            }
+            try {
+                if (created.add(advice.getRecommendedIndex())) {
+                    collection.createIndex(advice.getRecommendedIndex(), new BasicDBObject("background", true));
+                    log.info("created index {} on {}", advice.getRecommendedIndex(), advice.getShape().getNamespace());
+                }
+                result.add(advice.created());
+            } catch (RuntimeException e) {
+                log.warn("cannot create index {} on {}", advice.getRecommendedIndex(), advice.getShape().getNamespace(), e);
+                result.add(advice);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param indexes 索引的key文档，例如 {a: 1, b: -1}
+     * @param shapes  查询形状
+     * @return 分析结果
+     */
+    public static List<IndexAdvice> analyze(List<DBObject> indexes, List<QueryShapeStats> shapes) {
+        final List<List<Map.Entry<String, Integer>>> keys = new ArrayList<>(indexes.size());
+        indexes.forEach(it -> keys.add(keysOf(it)));
+        final List<IndexAdvice> advices = new ArrayList<>();
+        for (QueryShapeStats shape : shapes) {
+            if (shape.getEquality().isEmpty() && shape.getSort().isEmpty() && shape.getRange().isEmpty()) {
+                continue;
+            }
+            IndexAdvice.Status status = IndexAdvice.Status.MISSING;
+            for (List<Map.Entry<String, Integer>> index : keys) {
+                if (covers(index, shape)) {
+                    status = IndexAdvice.Status.COVERED;
+                    break;
+                }
+                if (usable(index, shape)) {
+                    status = IndexAdvice.Status.PARTIAL;
+                }
+            }
+            advices.add(new IndexAdvice(shape, status, status == IndexAdvice.Status.COVERED ? null : recommend(shape), false));
+        }
+        return advices;
+    }
+
+    /**
+     * 普通索引的字段及方向，遇到text、hashed等特殊索引字段时截断
+     */
+    private static List<Map.Entry<String, Integer>> keysOf(DBObject index) {
+        final Map<String, Integer> keys = new LinkedHashMap<>();
+        for (String field : index.keySet()) {
+            final Object direction = index.get(field);
+            if (!(direction instanceof Number)) {
+                break;
+            }
+            keys.put(field, ((Number) direction).doubleValue() < 0 ? -1 : 1);
+        }
+        return new ArrayList<>(keys.entrySet());
+    }
+
+    private static boolean covers(List<Map.Entry<String, Integer>> index, QueryShapeStats shape) {
+        int i = 0;
+        final Set<String> equality = new HashSet<>(shape.getEquality());
+        while (i < index.size() && equality.remove(index.get(i).getKey())) {
+            i++;
+        }
+        if (!equality.isEmpty()) {
+            return false;
+        }
+        // 排序方向要么全部一致，要么全部相反
+        int sign = 0;
+        for (String sort : sortFields(shape)) {
+            final boolean descending = sort.startsWith("-");
+            final String field = descending ? sort.substring(1) : sort;
+            if (i >= index.size() || !index.get(i).getKey().equals(field)) {
+                return false;
+            }
+            final int relative = index.get(i).getValue() * (descending ? -1 : 1);
+            if (sign != 0 && sign != relative) {
+                return false;
+            }
+            sign = relative;
+            i++;
+        }
+        final Set<String> range = new HashSet<>(shape.getRange());
+        while (i < index.size() && range.remove(index.get(i).getKey())) {
+            i++;
+        }
+        return range.isEmpty();
+    }
+
+    /**
+     * 索引首字段出现在条件中，或没有条件时与第一个排序字段相同
+     */
+    private static boolean usable(List<Map.Entry<String, Integer>> index, QueryShapeStats shape) {
+        if (index.isEmpty()) {
+            return false;
+        }
+        final String first = index.get(0).getKey();
+        if (shape.getEquality().contains(first) || shape.getRange().contains(first)) {
+            return true;
+        }
+        final List<String> sort = sortFields(shape);
+        return !sort.isEmpty() && (sort.get(0).equals(first) || sort.get(0).equals("-" + first));
+    }
+
+    /**
+     * 等值条件字段上的排序不影响索引选择
+     */
+    private static List<String> sortFields(QueryShapeStats shape) {
+        final List<String> fields = new ArrayList<>(shape.getSort().size());
+        for (String sort : shape.getSort()) {
+            final String field = sort.startsWith("-") ? sort.substring(1) : sort;
+            if (!shape.getEquality().contains(field)) {
+                fields.add(sort);
+            }
+        }
+        return fields;
+    }
+
+    private static DBObject recommend(QueryShapeStats shape) {
+        final BasicDBObject index = new BasicDBObject();
+        shape.getEquality().forEach(field -> index.put(field, 1));
+        for (String sort : sortFields(shape)) {
+            final boolean descending = sort.startsWith("-");
+            index.putIfAbsent(descending ? sort.substring(1) : sort, descending ? -1 : 1);
+        }
+        shape.getRange().forEach(field -> index.putIfAbsent(field, 1));
+        return index;
+    }
+}
@@ -0,0 +1,60 @@
+package com.github.mx.mongo.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 基于Micrometer的指标实现，micrometer-core为optional依赖，使用时需要应用自行引入
+ * <pre>
+ * mongo.dao.calls      Timer，tag: dao/collection/method/outcome(success或异常类名)，调用次数、错误次数与耗时分布
+ * mongo.dao.documents  DistributionSummary，tag: dao/collection/method，返回的文档数
+ * </pre>
+ * <p>
+ * Create by max on 2020/01/16
+ */
+public class MicrometerDaoMetrics implements DaoMetrics {
+
+    private static final String SUCCESS = "success";
+
+    private final MeterRegistry registry;
+    private final boolean histogram;
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+    private final Map<String, DistributionSummary> summaries = new ConcurrentHashMap<>();
+
+    public MicrometerDaoMetrics(MeterRegistry registry) {
+        this(registry, true);
+    }
+
+    /**
+     * @param registry  MeterRegistry
+     * @param histogram 是否发布耗时直方图(p50/p95/p99及桶)，关闭后只有次数、总耗时和最大值
+     */
+    public MicrometerDaoMetrics(MeterRegistry registry, boolean histogram) {
+        this.registry = registry;
+        this.histogram = histogram;
+    }
+
+    @Override
+    public void record(String dao, String collection, String method, long durationNanos, int documents, Throwable error) {
+        final String outcome = error == null ? SUCCESS : error.getClass().getSimpleName();
+        final String key = dao + '|' + collection + '|' + method;
+        timers.computeIfAbsent(key + '|' + outcome, it -> {
+            final Timer.Builder builder = Timer.builder("mongo.dao.calls")
+                    .tags("dao", dao, "collection", collection, "method", method, "outcome", outcome);
+            if (histogram) {
+                builder.publishPercentiles(0.5, 0.95, 0.99).publishPercentileHistogram();
+            }
+            return builder.register(registry);
+        }).record(durationNanos, TimeUnit.NANOSECONDS);
+        if (error == null && documents > 0) {
+            summaries.computeIfAbsent(key, it -> DistributionSummary.builder("mongo.dao.documents")
+                    .tags("dao", dao, "collection", collection, "method", method)
+                    .register(registry)).record(documents);
+        }
+    }
+}
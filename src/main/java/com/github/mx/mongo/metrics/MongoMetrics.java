@@ -0,0 +1,105 @@
+package com.github.mx.mongo.metrics;
+
+import com.github.mx.nacos.config.core.api.IConfig;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 指标与慢查询配置的注册中心
+ * <p>
+ * 安装非Noop的{@link DaoMetrics}、配置了慢查询阈值或开启了{@link QueryShapeRecorder}时埋点才生效，否则每次调用只多读两个volatile字段:
+ * <pre>
+ * mongo.slowQueryMillis=500       慢查询阈值，小于0关闭(默认)
+ * mongo.slowQueryExplain=false    慢查询时是否再执行一次explain()并打印结果
+ * </pre>
+ * 每个MongoDataStoreFactoryBean持有自己的实例，慢查询配置只受本工厂的配置影响，通过{@code DatastoreExt.getMongoMetrics()}获取；
+ * 没有单独安装指标实现时使用INSTANCE上安装的，INSTANCE上的指标实现因此对所有工厂生效
+ * <p>
+ * Create by max on 2020/01/16
+ */
+public class MongoMetrics {
+
+    public static final MongoMetrics INSTANCE = new MongoMetrics(null, QueryShapeRecorder.INSTANCE);
+
+    /**
+     * 未安装指标实现时使用parent的，INSTANCE的parent为null
+     */
+    private final MongoMetrics parent;
+    private final QueryShapeRecorder recorder;
+    private volatile DaoMetrics metrics;
+    private volatile long slowQueryNanos = -1;
+    private volatile boolean explainSlowQueries;
+    private volatile boolean enabled;
+
+    /**
+     * @param recorder 同一工厂的查询形状记录，开启记录时埋点也随之开启
+     */
+    public MongoMetrics(QueryShapeRecorder recorder) {
+        this(INSTANCE, recorder);
+    }
+
+    private MongoMetrics(MongoMetrics parent, QueryShapeRecorder recorder) {
+        this.parent = parent;
+        this.recorder = recorder;
+        recorder.addListener(this);
+    }
+
+    /**
+     * 安装指标实现，传null恢复为INSTANCE上安装的(INSTANCE本身恢复为Noop)
+     */
+    public void setMetrics(DaoMetrics metrics) {
+        this.metrics = metrics;
+        refresh();
+    }
+
+    public DaoMetrics getMetrics() {
+        final DaoMetrics current = metrics;
+        if (current != null) {
+            return current;
+        }
+        return parent == null ? NoopDaoMetrics.INSTANCE : parent.getMetrics();
+    }
+
+    /**
+     * 配置中心变更时调用
+     */
+    public void reload(IConfig config) {
+        final int slowQueryMillis = config.getInt("mongo.slowQueryMillis", -1);
+        this.slowQueryNanos = slowQueryMillis < 0 ? -1 : TimeUnit.MILLISECONDS.toNanos(slowQueryMillis);
+        this.explainSlowQueries = config.getBool("mongo.slowQueryExplain");
+        refresh();
+    }
+
+    /**
+     * 慢查询阈值，纳秒，小于0表示关闭
+     */
+    public void setSlowQueryNanos(long slowQueryNanos) {
+        this.slowQueryNanos = slowQueryNanos;
+        refresh();
+    }
+
+    public long getSlowQueryNanos() {
+        return slowQueryNanos;
+    }
+
+    public void setExplainSlowQueries(boolean explainSlowQueries) {
+        this.explainSlowQueries = explainSlowQueries;
+    }
+
+    public boolean isExplainSlowQueries() {
+        return explainSlowQueries;
+    }
+
+    public QueryShapeRecorder getQueryShapeRecorder() {
+        return recorder;
+    }
+
+    public boolean isEnabled() {
+        return enabled || parent != null && parent.getMetrics() != NoopDaoMetrics.INSTANCE;
+    }
+
+    void refresh() {
+        final DaoMetrics current = metrics;
+        this.enabled = current != null && current != NoopDaoMetrics.INSTANCE || slowQueryNanos >= 0 || recorder.isEnabled();
+    }
+}
@@ -0,0 +1,18 @@
+package com.github.mx.mongo.metrics;
+
+/**
+ * 不记录任何指标，安装它时dao的埋点直接跳过计时
+ * <p>
+ * Create by max on 2020/01/16
+ */
+public final class NoopDaoMetrics implements DaoMetrics {
+
+    public static final NoopDaoMetrics INSTANCE = new NoopDaoMetrics();
+
+    private NoopDaoMetrics() {
+    }
+
+    @Override
+    public void record(String dao, String collection, String method, long durationNanos, int documents, Throwable error) {
+    }
+}
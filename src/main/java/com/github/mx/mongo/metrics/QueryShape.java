@@ -0,0 +1,66 @@
+package com.github.mx.mongo.metrics;
+
+import com.github.mx.mongo.util.QueryUtils;
+import com.mongodb.BasicDBList;
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+import org.mongodb.morphia.query.Query;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 查询的形状：保留字段名和操作符，值统一替换为"?"，用于日志中区分不同的查询而不泄露数据
+ * <p>
+ * Create by max on 2020/01/16
+ */
+public final class QueryShape {
+
+    private static final String PLACEHOLDER = "?";
+
+    private QueryShape() {
+    }
+
+    public static String of(Query<?> query) {
+        final StringBuilder shape = new StringBuilder("filter: ").append(mask(QueryUtils.filter(query)));
+        final DBObject sort = QueryUtils.sort(query);
+        if (sort != null && !sort.keySet().isEmpty()) {
+            shape.append(", sort: ").append(sort);
+        }
+        final DBObject fields = QueryUtils.fields(query);
+        if (fields != null && !fields.keySet().isEmpty()) {
+            shape.append(", projection: ").append(fields.keySet());
+        }
+        return shape.toString();
+    }
+
+    static Object mask(Object value) {
+        if (value instanceof List) {
+            final BasicDBList masked = new BasicDBList();
+            for (Object it : (List<?>) value) {
+                // 标量数组(如$in)只保留一个占位，长度不同的同一查询形状相同
+                if (it instanceof DBObject || it instanceof Map) {
+                    masked.add(mask(it));
+                } else if (masked.isEmpty()) {
+                    masked.add(PLACEHOLDER);
+                }
+            }
+            return masked;
+        }
+        if (value instanceof Map) {
+            // morphia构造的条件中操作符部分是普通Map
+            final BasicDBObject masked = new BasicDBObject();
+            ((Map<?, ?>) value).forEach((key, it) -> masked.put(String.valueOf(key), mask(it)));
+            return masked;
+        }
+        if (value instanceof DBObject) {
+            final DBObject object = (DBObject) value;
+            final BasicDBObject masked = new BasicDBObject();
+            for (String key : object.keySet()) {
+                masked.put(key, mask(object.get(key)));
+            }
+            return masked;
+        }
+        return PLACEHOLDER;
+    }
+}
@@ -0,0 +1,259 @@
+package com.github.mx.mongo.metrics;
+
+import com.github.mx.mongo.util.QueryUtils;
+import com.github.mx.nacos.config.core.api.IConfig;
+import com.google.common.base.Splitter;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
+import org.mongodb.morphia.query.Query;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 记录各collection上dao实际发出的查询形状(条件字段集合与排序)及次数，再与已有索引比较找出可能全表扫描的查询:
+ * <pre>
+ * mongo.shapes.enabled=false          是否记录查询形状
+ * mongo.shapes.createIndexes=false    advise时是否自动创建缺失的索引，只用于测试环境，激活的profile包含prod时不会创建
+ * </pre>
+ * 每个collection最多记录MAX_SHAPES种形状
+ * <p>
+ * 每个MongoDataStoreFactoryBean持有自己的实例，激活的profile取自工厂所在的Spring Environment，
+ * 通过{@code DatastoreExt.getQueryShapeRecorder()}获取；INSTANCE只供不经过工厂创建的DatastoreExt使用，
+ * 激活的profile取自-Dspring.profiles.active或SPRING_PROFILES_ACTIVE
+ * <p>
+ * Create by max on 2020/01/16
+ */
+public class QueryShapeRecorder {
+
+    public static final QueryShapeRecorder INSTANCE = new QueryShapeRecorder();
+
+    private static final Logger log = LoggerFactory.getLogger(QueryShapeRecorder.class);
+
+    private static final int MAX_SHAPES = 1000;
+
+    private final Map<String, Namespace> namespaces = new ConcurrentHashMap<>();
+    /**
+     * 依赖是否开启记录的埋点配置，开关变化时通知其刷新
+     */
+    private final List<MongoMetrics> listeners = new CopyOnWriteArrayList<>();
+    private volatile boolean enabled;
+    private volatile boolean createIndexes;
+    /**
+     * 为null时从系统属性及环境变量读取
+     */
+    private volatile List<String> activeProfiles;
+
+    public QueryShapeRecorder() {
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        listeners.forEach(MongoMetrics::refresh);
+    }
+
+    /**
+     * 设置激活的profile，包含prod时advise不会创建索引
+     */
+    public void setActiveProfiles(Collection<String> activeProfiles) {
+        this.activeProfiles = activeProfiles == null ? null : ImmutableList.copyOf(activeProfiles);
+    }
+
+    void addListener(MongoMetrics metrics) {
+        listeners.add(metrics);
+    }
+
+    /**
+     * 配置中心变更时调用
+     */
+    public void reload(IConfig config) {
+        this.createIndexes = config.getBool("mongo.shapes.createIndexes");
+        setEnabled(config.getBool("mongo.shapes.enabled"));
+    }
+
+    /**
+     * 记录一次查询
+     */
+    public void record(Query<?> query) {
+        final DBCollection collection = QueryUtils.collection(query);
+        final Namespace namespace = namespaces.computeIfAbsent(collection.getFullName(), it -> new Namespace());
+        // 连接配置变更后使用最新的collection读取索引
+        namespace.collection = collection;
+        final List<String> sort = new ArrayList<>();
+        final DBObject sortObject = QueryUtils.sort(query);
+        if (sortObject != null) {
+            for (String field : sortObject.keySet()) {
+                final Object direction = sortObject.get(field);
+                if (!field.startsWith("$")) {
+                    sort.add(direction instanceof Number && ((Number) direction).intValue() < 0 ? "-" + field : field);
+                }
+            }
+        }
+        for (Filter filter : filters(QueryUtils.filter(query))) {
+            final String key = String.join(",", filter.equality) + '|' + String.join(",", sort) + '|' + String.join(",", filter.range);
+            LongAdder counter = namespace.shapes.get(key);
+            if (counter == null) {
+                if (namespace.shapes.size() >= MAX_SHAPES) {
+                    continue;
+                }
+                counter = namespace.shapes.computeIfAbsent(key, it -> new LongAdder());
+                namespace.parsed.putIfAbsent(key, new QueryShapeStats(collection.getFullName(),
+                        new ArrayList<>(filter.equality), sort, new ArrayList<>(filter.range), 0));
+            }
+            counter.increment();
+        }
+    }
+
+    /**
+     * 已记录的查询形状，按次数降序
+     */
+    public List<QueryShapeStats> getShapes() {
+        final List<QueryShapeStats> shapes = new ArrayList<>();
+        namespaces.values().forEach(it -> shapes.addAll(it.snapshot()));
+        shapes.sort(Comparator.comparingLong(QueryShapeStats::getCount).reversed());
+        return shapes;
+    }
+
+    /**
+     * 清空已记录的形状
+     */
+    public void reset() {
+        namespaces.clear();
+    }
+
+    /**
+     * 读取各collection的索引与已记录的形状比较，并打印没有被完整覆盖的形状
+     *
+     * @return 分析结果
+     */
+    public List<IndexAdvice> advise() {
+        final boolean create = createIndexes && !isProduction();
+        final List<IndexAdvice> advices = new ArrayList<>();
+        namespaces.forEach((name, namespace) -> {
+            try {
+                advices.addAll(IndexAdvisor.advise(namespace.collection, namespace.snapshot(), create));
+            } catch (RuntimeException e) {
+                log.warn("cannot analyze indexes of {}", name, e);
+            }
+        });
+        advices.stream()
+                .filter(it -> it.getStatus() != IndexAdvice.Status.COVERED)
+                .forEach(it -> log.warn("query shape not covered by index: {}", it));
+        return advices;
+    }
+
+    private boolean isProduction() {
+        Collection<String> profiles = activeProfiles;
+        if (profiles == null) {
+            final String property = System.getProperty("spring.profiles.active", System.getenv("SPRING_PROFILES_ACTIVE"));
+            profiles = Strings.isNullOrEmpty(property) ? Collections.emptyList() : Splitter.on(',').trimResults().splitToList(property);
+        }
+        return profiles.stream().anyMatch(it -> it.toLowerCase().contains("prod"));
+    }
+
+    /**
+     * 拆出等值和范围条件字段，$and展开，$or的每个分支分别作为一种形状(每个分支都需要可用的索引)
+     */
+    static List<Filter> filters(DBObject query) {
+        final Filter base = new Filter();
+        final List<List<?>> ors = new ArrayList<>();
+        collect(query, base, ors);
+        if (ors.isEmpty()) {
+            return Collections.singletonList(base.normalize());
+        }
+        final List<Filter> filters = new ArrayList<>();
+        for (List<?> branches : ors) {
+            for (Object branch : branches) {
+                final Filter filter = base.copy();
+                collect(branch, filter, new ArrayList<>());
+                filters.add(filter.normalize());
+            }
+        }
+        return filters;
+    }
+
+    private static void collect(Object filter, Filter target, List<List<?>> ors) {
+        final Map<?, ?> map = asMap(filter);
+        if (map == null) {
+            return;
+        }
+        map.forEach((key, value) -> {
+            final String field = String.valueOf(key);
+            if ("$and".equals(field) && value instanceof List) {
+                ((List<?>) value).forEach(it -> collect(it, target, ors));
+            } else if (("$or".equals(field) || "$nor".equals(field)) && value instanceof List) {
+                ors.add((List<?>) value);
+            } else if (!field.startsWith("$")) {
+                final Map<?, ?> operators = asMap(value);
+                if (operators == null || operators.isEmpty() || !String.valueOf(operators.keySet().iterator().next()).startsWith("$")) {
+                    target.equality.add(field);
+                } else if (operators.containsKey("$eq") || operators.containsKey("$in")) {
+                    target.equality.add(field);
+                } else {
+                    target.range.add(field);
+                }
+            }
+        });
+    }
+
+    private static Map<?, ?> asMap(Object value) {
+        if (value instanceof Map) {
+            return (Map<?, ?>) value;
+        }
+        if (value instanceof DBObject) {
+            return ((DBObject) value).toMap();
+        }
+        return null;
+    }
+
+    static final class Filter {
+        private final Set<String> equality = new TreeSet<>();
+        private final Set<String> range = new TreeSet<>();
+
+        private Filter copy() {
+            final Filter copy = new Filter();
+            copy.equality.addAll(equality);
+            copy.range.addAll(range);
+            return copy;
+        }
+
+        private Filter normalize() {
+            range.removeAll(equality);
+            return this;
+        }
+    }
+
+    private static final class Namespace {
+        private volatile DBCollection collection;
+        private final Map<String, LongAdder> shapes = new ConcurrentHashMap<>();
+        private final Map<String, QueryShapeStats> parsed = new ConcurrentHashMap<>();
+
+        private List<QueryShapeStats> snapshot() {
+            final List<QueryShapeStats> list = new ArrayList<>(shapes.size());
+            shapes.forEach((key, counter) -> {
+                final QueryShapeStats shape = parsed.get(key);
+                if (shape != null) {
+                    list.add(new QueryShapeStats(shape.getNamespace(), shape.getEquality(), shape.getSort(), shape.getRange(), counter.sum()));
+                }
+            });
+            return list;
+        }
+    }
+}
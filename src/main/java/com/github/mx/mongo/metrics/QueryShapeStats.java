@@ -0,0 +1,60 @@
+package com.github.mx.mongo.metrics;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 一种查询形状及其调用次数：等值条件字段、排序字段(降序带"-"前缀)、范围条件字段
+ * <p>
+ * Create by max on 2020/01/16
+ */
+public class QueryShapeStats {
+
+    private final String namespace;
+    private final List<String> equality;
+    private final List<String> sort;
+    private final List<String> range;
+    private final long count;
+
+    public QueryShapeStats(String namespace, List<String> equality, List<String> sort, List<String> range, long count) {
+        this.namespace = namespace;
+        this.equality = Collections.unmodifiableList(equality);
+        this.sort = Collections.unmodifiableList(sort);
+        this.range = Collections.unmodifiableList(range);
+        this.count = count;
+    }
+
+    /**
+     * db.collection
+     */
+    public String getNamespace() {
+        return namespace;
+    }
+
+    /**
+     * 等值条件字段($eq、$in及直接相等)，按字段名排序
+     */
+    public List<String> getEquality() {
+        return equality;
+    }
+
+    public List<String> getSort() {
+        return sort;
+    }
+
+    /**
+     * 范围及其他条件字段，按字段名排序
+     */
+    public List<String> getRange() {
+        return range;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    @Override
+    public String toString() {
+        return namespace + " equality=" + equality + " sort=" + sort + " range=" + range + " count=" + count;
+    }
+}
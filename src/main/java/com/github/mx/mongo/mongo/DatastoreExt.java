@@ -1,6 +1,11 @@
 package com.github.mx.mongo.mongo;
 
+import com.github.mx.mongo.cache.DaoCaches;
+import com.github.mx.mongo.metrics.MongoMetrics;
+import com.github.mx.mongo.metrics.QueryShapeRecorder;
+import com.github.mx.mongo.route.ReadRoutes;
 import org.mongodb.morphia.AdvancedDatastore;
+import org.mongodb.morphia.mapping.Mapper;
 
 /**
  * 扩展datastore功能
@@ -34,4 +39,64 @@ public interface DatastoreExt extends AdvancedDatastore {
      * @return datastore对象
      */
     DatastoreExt getDatastoreBySuffix(String dbName, String suffix);
+
+    /**
+     * 获取当前datastore使用的Mapper，可用于实体与DBObject互转
+     *
+     * @return Mapper
+     */
+    Mapper getMapper();
+
+    /**
+     * 注册需要随datastore关闭的资源，工厂destroy时会在关闭mongo连接之前调用其close，例如flush缓冲中的写入；
+     * 默认不托管，由调用方自行关闭
+     *
+     * @param closeable 资源
+     */
+    default void addCloseable(AutoCloseable closeable) {
+    }
+
+    /**
+     * 取消注册，资源提前关闭时调用，避免工厂一直持有
+     *
+     * @param closeable 资源
+     */
+    default void removeCloseable(AutoCloseable closeable) {
+    }
+
+    /**
+     * 该datastore所属工厂的dao缓存，配置随工厂的配置中心变更
+     *
+     * @return dao缓存注册中心
+     */
+    default DaoCaches getDaoCaches() {
+        return DaoCaches.INSTANCE;
+    }
+
+    /**
+     * 该datastore所属工厂的指标与慢查询配置，慢查询阈值等随工厂的配置中心变更
+     *
+     * @return 指标与慢查询配置
+     */
+    default MongoMetrics getMongoMetrics() {
+        return MongoMetrics.INSTANCE;
+    }
+
+    /**
+     * 该datastore所属工厂的读路由，随工厂的配置中心变更
+     *
+     * @return 读路由
+     */
+    default ReadRoutes getReadRoutes() {
+        return ReadRoutes.INSTANCE;
+    }
+
+    /**
+     * 该datastore所属工厂的查询形状记录，可用于索引建议
+     *
+     * @return 查询形状记录
+     */
+    default QueryShapeRecorder getQueryShapeRecorder() {
+        return getMongoMetrics().getQueryShapeRecorder();
+    }
 }
@@ -0,0 +1,1081 @@
+package com.github.mx.mongo.mongo;
+
+import com.github.mx.mongo.cache.DaoCaches;
+import com.github.mx.mongo.metrics.DaoProbe;
+import com.github.mx.mongo.metrics.MongoMetrics;
+import com.github.mx.mongo.route.ReadRoutes;
+import com.github.mx.mongo.util.QueryUtils;
+import com.mongodb.DB;
+import com.mongodb.DBCollection;
+import com.mongodb.DBDecoderFactory;
+import com.mongodb.DBObject;
+import com.mongodb.DBRef;
+import com.mongodb.MapReduceCommand;
+import com.mongodb.MongoClient;
+import com.mongodb.ReadPreference;
+import com.mongodb.WriteConcern;
+import com.mongodb.WriteResult;
+import org.mongodb.morphia.AdvancedDatastore;
+import org.mongodb.morphia.DeleteOptions;
+import org.mongodb.morphia.FindAndModifyOptions;
+import org.mongodb.morphia.InsertOptions;
+import org.mongodb.morphia.Key;
+import org.mongodb.morphia.MapReduceOptions;
+import org.mongodb.morphia.MapreduceResults;
+import org.mongodb.morphia.UpdateOptions;
+import org.mongodb.morphia.aggregation.AggregationPipeline;
+import org.mongodb.morphia.mapping.Mapper;
+import org.mongodb.morphia.query.CountOptions;
+import org.mongodb.morphia.query.Query;
+import org.mongodb.morphia.query.QueryFactory;
+import org.mongodb.morphia.query.UpdateOperations;
+import org.mongodb.morphia.query.UpdateResults;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * DatastoreExt的实现，直接转发到当前的AdvancedDatastore
+ * <p>
+ * 配置变更时loadConfig通过setDelegate整体替换delegate，已经注入到dao中的对象不变；
+ * 每次调用只读一次volatile字段，异常原样抛出，不再有反射调用的包装
+ * <p>
+ * Create by max on 2020/01/16
+ */
+class DelegatingDatastore implements DatastoreExt {
+
+    private final MongoDataStoreFactoryBean factory;
+    private final String dbName;
+    /**
+     * 访问数据库的方法记录指标，慢查询日志由dao层打印
+     */
+    private final DaoProbe probe;
+    private volatile AdvancedDatastore delegate;
+
+    DelegatingDatastore(MongoDataStoreFactoryBean factory, String dbName, AdvancedDatastore datastore) {
+        this.factory = factory;
+        this.dbName = dbName;
+        this.delegate = datastore;
+        this.probe = new DaoProbe(getMongoMetrics(), "Datastore", this::collectionOf, false);
+    }
+
+    MongoDataStoreFactoryBean getFactory() {
+        return factory;
+    }
+
+    String getDbName() {
+        return dbName;
+    }
+
+    AdvancedDatastore getDelegate() {
+        return delegate;
+    }
+
+    void setDelegate(AdvancedDatastore delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public String toString() {
+        return "Datastore-db:" + dbName;
+    }
+
+    private MongoDataStoreFactoryBean factory() {
+        if (factory == null) {
+            throw new UnsupportedOperationException("datastore of " + dbName + " is not created by MongoDataStoreFactoryBean");
+        }
+        return factory;
+    }
+
+    @Override
+    public DatastoreExt use(String dbName) {
+        return factory().getOrCreate(dbName, null);
+    }
+
+    @Override
+    public DatastoreExt getDatastoreByPrefix(String dbName, String prefix) {
+        return factory().getOrCreate(dbName, prefix + "_%s");
+    }
+
+    @Override
+    public DatastoreExt getDatastoreBySuffix(String dbName, String suffix) {
+        return factory().getOrCreate(dbName, "%s_" + suffix);
+    }
+
+    /**
+     * Morphia 1.3的AdvancedDatastore没有暴露Mapper，只能从过时的DatastoreImpl上取
+     */
+    @Override
+    @SuppressWarnings("deprecation")
+    public Mapper getMapper() {
+        return ((org.mongodb.morphia.DatastoreImpl) delegate).getMapper();
+    }
+
+    @Override
+    public void addCloseable(AutoCloseable closeable) {
+        if (factory != null) {
+            factory.addCloseable(closeable);
+        }
+    }
+
+    @Override
+    public void removeCloseable(AutoCloseable closeable) {
+        if (factory != null) {
+            factory.removeCloseable(closeable);
+        }
+    }
+
+    @Override
+    public DaoCaches getDaoCaches() {
+        return factory == null ? DaoCaches.INSTANCE : factory.getDaoCaches();
+    }
+
+    @Override
+    public MongoMetrics getMongoMetrics() {
+        return factory == null ? MongoMetrics.INSTANCE : factory.getMongoMetrics();
+    }
+
+    @Override
+    public ReadRoutes getReadRoutes() {
+        return factory == null ? ReadRoutes.INSTANCE : factory.getReadRoutes();
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public AggregationPipeline createAggregation(Class source) {
+        return delegate.createAggregation(source);
+    }
+
+    @Override
+    public <T> Query<T> createQuery(Class<T> clazz) {
+        return delegate.createQuery(clazz);
+    }
+
+    @Override
+    public <T> UpdateOperations<T> createUpdateOperations(Class<T> clazz) {
+        return delegate.createUpdateOperations(clazz);
+    }
+
+    @Override
+    public <T, V> WriteResult delete(Class<T> clazz, V id) {
+        final DaoProbe.Sample sample = probe.start("delete", clazz);
+        try {
+            return sample.stop(delegate.delete(clazz, id));
+        } catch (RuntimeException e) {
+            throw sample.error(e);
+        }
+    }
+
+    @Override
+    public <T, V> WriteResult delete(Class<T> clazz, V id, DeleteOptions options) {
+        final DaoProbe.Sample sample = probe.start("delete", clazz);
+        try {
+            return sample.stop(delegate.delete(clazz, id, options));
+        } catch (RuntimeException e) {
+            throw sample.error(e);
+        }
+    }
+
+    @Override
+    public <T, V> WriteResult delete(Class<T> clazz, Iterable<V> ids) {
+        final DaoProbe.Sample sample = probe.start("delete", clazz);
+        try {
+            return sample.stop(delegate.delete(clazz, ids));
+        } catch (RuntimeException e) {
+            throw sample.error(e);
+        }
+    }
+
+    @Override
+    public <T, V> WriteResult delete(Class<T> clazz, Iterable<V> ids, DeleteOptions options) {
+        final DaoProbe.Sample sample = probe.start("delete", clazz);
+        try {
+            return sample.stop(delegate.delete(clazz, ids, options));
+        } catch (RuntimeException e) {
+            throw sample.error(e);
+        }
+    }
+
+    @Override
+    public <T> WriteResult delete(Query<T> query) {
+        final DaoProbe.Sample sample = probe.start("delete", query);
+        try {
+            return sample.query(query).stop(delegate.delete(query));
+        } catch (RuntimeException e) {
+            throw sample.error(e);
+        }
+    }
+
+    @Override
+    public <T> WriteResult delete(Query<T> query, DeleteOptions options) {
+        final DaoProbe.Sample sample = probe.start("delete", query);
+        try {
+            return sample.query(query).stop(delegate.delete(query, options));
+        } catch (RuntimeException e) {
+            throw sample.error(e);
+        }
+    }
+
+    @Override
+    @Deprecated
+    public <T> WriteResult delete(Query<T> query, WriteConcern wc) {
+        final DaoProbe.Sample sample = probe.start("delete", query);
+        try {
+            return sample.query(query).stop(delegate.delete(query, wc));
+        } catch (RuntimeException e) {
+            throw sample.error(e);
+        }
+    }
+
+    @Override
+    public <T> WriteResult delete(T entity) {
+        final DaoProbe.Sample sample = probe.start("delete", entity);
+        try {
+            return sample.stop(delegate.delete(entity));
+        } catch (RuntimeException e) {
+            throw sample.error(e);
+        }
+    }
+
+    @Override
+    public <T> WriteResult delete(T entity, DeleteOptions options) {
+        final DaoProbe.Sample sample = probe.start("delete", entity);
+        try {
+            return sample.stop(delegate.delete(entity, options));
+        } catch (RuntimeException e) {
+            throw sample.error(e);
+        }
+    }
+
+    @Override
+    @Deprecated
+    public <T> WriteResult delete(T entity, WriteConcern wc) {
+        final DaoProbe.Sample sample = probe.start("delete", entity);
+        try {
+            return sample.stop(delegate.delete(entity, wc));
+        } catch (RuntimeException e) {
+            throw sample.error(e);
+        }
+    }
+
+    @Override
+    public void ensureCaps() {
+        delegate.ensureCaps();
+    }
+
+    @Override
+    public void enableDocumentValidation() {
+        delegate.enableDocumentValidation();
+    }
+
+    @Override
+    @Deprecated
+    public <T> void ensureIndex(Class<T> clazz, String fields) {
+        delegate.ensureIndex(clazz, fields);
+    }
+
+    @Override
+    @Deprecated
+    public <T> void ensureIndex(Class<T> clazz, String name, String fields, boolean unique, boolean dropDupsOnCreate) {
+        delegate.ensureIndex(clazz, name, fields, unique, dropDupsOnCreate);
+    }
+
+    @Override
+    public void ensureIndexes() {
+        delegate.ensureIndexes();
+    }
+
+    @Override
+    public void ensureIndexes(boolean background) {
+        delegate.ensureIndexes(background);
+    }
+
+    @Override
+    public <T> void ensureIndexes(Class<T> clazz) {
+        delegate.ensureIndexes(clazz);
+    }
+
+    @Override
+    public <T> void ensureIndexes(Class<T> clazz, boolean background) {
+        delegate.ensureIndexes(clazz, background);
+    }
+
+    @Override
+    public Key<?> exists(Object keyOrEntity) {
+        final DaoProbe.Sample sample = probe.start("exists", keyOrEntity);
+        try {
+            return sample.stop(delegate.exists(keyOrEntity));
+        } catch (RuntimeException e) {
+            throw sample.error(e);
+        }
+    }
+
+    @Override
+    public <T> Query<T> find(Class<T> clazz) {
+        return delegate.find(clazz);
+    }
+
+    @Override
+    @Deprecated
+    public <T, V> Query<T> find(Class<T> clazz, String property, V value) {
+        return delegate.find(clazz, property, value);
+    }
+
+    @Override
+    @Deprecated
+    public <T, V> Query<T> find(Class<T> clazz, String property, V value, int offset, int size) {
+        return delegate.find(clazz, property, value, offset, size);
+    }
+
+    @Override
+    public <T> T findAndDelete(Query<T> query) {
+        final DaoProbe.Sample sample = probe.start("findAndDelete", query);
+        try {
+            return sample.query(query).stop(delegate.findAndDelete(query));
+        } catch (RuntimeException e) {
+            throw sample.error(e);
+        }
+    }
+
+    @Override
+    public <T> T findAndDelete(Query<T> query, FindAndModifyOptions options) {
+        final DaoProbe.Sample sample = probe.start("findAndDelete", query);
+        try {
+            return sample.query(query).stop(delegate.findAndDelete(query, options));
+        } catch (RuntimeException e) {
+            throw sample.error(e);
+        }
+    }
+
+    @Override
+    public <T> T findAndModify(Query<T> query, UpdateOperations<T> operations, FindAndModifyOptions options) {
+        final DaoProbe.Sample sample = probe.start("findAndModify", query);
+        try {
+            return sample.query(query).stop(delegate.findAndModify(query, operations, options));
+        } catch (RuntimeException e) {
+            throw sample.error(e);
+        }
+    }
+
+    @Override
+    public <T> T findAndModify(Query<T> query, UpdateOperations<T> operations) {
+        final DaoProbe.Sample sample = probe.start("findAndModify", query);
+        try {
+            return sample.query(query).stop(delegate.findAndModify(query, operations));
+        } catch (RuntimeException e) {
+            throw sample.error(e);
+        }
+    }
+
+    @Override
+    @Deprecated
+    public <T> T findAndModify(Query<T> query, UpdateOperations<T> operations, boolean oldVersion) {
+        final DaoProbe.Sample sample = probe.start("findAndModify", query);
+        try {
+            return sample.query(query).stop(delegate.findAndModify(query, operations, oldVersion));
+        } catch (RuntimeException e) {
+            throw sample.error(e);
+        }
+    }
+
+    @Override
+    @Deprecated
+    public <T> T findAndModify(Query<T> query, UpdateOperations<T> operations, boolean oldVersion, boolean createIfMissing) {
+        final DaoProbe.Sample sample = probe.start("findAndModify", query);
+        try {
+            return sample.query(query).stop(delegate.findAndModify(query, operations, oldVersion, createIfMissing));
+        } catch (RuntimeException e) {
+            throw sample.error(e);
+        }
+    }
+
+    @Override
+    public <T, V> Query<T> get(Class<T> clazz, Iterable<V> ids) {
+        return delegate.get(clazz, ids);
+    }
+
+    @Override
+    public <T, V> T get(Class<T> clazz, V id) {
+        final DaoProbe.Sample sample = probe.start("get", clazz);
+        try {
+            return sample.stop(delegate.get(clazz, id));
+        } catch (RuntimeException e) {
+            throw sample.error(e);
+        }
+    }
+
+    @Override
+    public <T> T get(T entity) {
+        final DaoProbe.Sample sample = probe.start("get", entity);
+        try {
+            return sample.stop(delegate.get(entity));
+        } catch (RuntimeException e) {
+            throw sample.error(e);
+        }
+    }
+
+    @Override
+    public <T> T getByKey(Class<T> clazz, Key<T> key) {
+        final DaoProbe.Sample sample = probe.start("getByKey", clazz);
+        try {
+            return sample.stop(delegate.getByKey(clazz, key));
+        } catch (RuntimeException e) {
+            throw sample.error(e);
+        }
+    }
+
+    @Override
+    public <T> List<T> getByKeys(Class<T> clazz, Iterable<Key<T>> keys) {
+        final DaoProbe.Sample sample = probe.start("getByKeys", clazz);
+        try {
+            return sample.stop(delegate.getByKeys(clazz, keys));
+        } catch (RuntimeException e) {
+            throw sample.error(e);
+        }
+    }
+
+    @Override
+    public <T> List<T> getByKeys(Iterable<Key<T>> keys) {
+        final DaoProbe.Sample sample = probe.start("getByKeys", keys);
+        try {
+            return sample.stop(delegate.getByKeys(keys));
+        } catch (RuntimeException e) {
+            throw sample.error(e);
+        }
+    }
+
+    @Override
+    public DBCollection getCollection(Class<?> clazz) {
+        return delegate.getCollection(clazz);
+    }
+
+    @Override
+    public <T> long getCount(T entity) {
+        final DaoProbe.Sample sample = probe.start("getCount", entity);
+        try {
+            return sample.stop(delegate.getCount(entity));
+        } catch (RuntimeException e) {
+            throw sample.error(e);
+        }
+    }
+
+    @Override
+    public <T> long getCount(Class<T> clazz) {
+        final DaoProbe.Sample sample = probe.start("getCount", clazz);
+        try {
+            return sample.stop(delegate.getCount(clazz));
+        } catch (RuntimeException e) {
+            throw sample.error(e);
+        }
+    }
+
+    @Override
+    public <T> long getCount(Query<T> query) {
+        final DaoProbe.Sample sample = probe.start("getCount", query);
+        try {
+            return sample.query(query).stop(delegate.getCount(query));
+        } catch (RuntimeException e) {
+            throw sample.error(e);
+        }
+    }
+
+    @Override
+    public <T> long getCount(Query<T> query, CountOptions options) {
+        final DaoProbe.Sample sample = probe.start("getCount", query);
+        try {
+            return sample.query(query).stop(delegate.getCount(query, options));
+        } catch (RuntimeException e) {
+            throw sample.error(e);
+        }
+    }
+
+    @Override
+    public DB getDB() {
+        return delegate.getDB();
+    }
+
+    @Override
+    public WriteConcern getDefaultWriteConcern() {
+        return delegate.getDefaultWriteConcern();
+    }
+
+    @Override
+    public void setDefaultWriteConcern(WriteConcern wc) {
+        delegate.setDefaultWriteConcern(wc);
+    }
+
+    @Override
+    public <T> Key<T> getKey(T entity) {
+        return delegate.getKey(entity);
+    }
+
+    @Override
+    public MongoClient getMongo() {
+        return delegate.getMongo();
+    }
+
+    @Override
+    public QueryFactory getQueryFactory() {
+        return delegate.getQueryFactory();
+    }
+
+    @Override
+    public void setQueryFactory(QueryFactory queryFactory) {
+        delegate.setQueryFactory(queryFactory);
+    }
+
+    @Override
+    public <T> MapreduceResults<T> mapReduce(MapReduceOptions<T> options) {
+        return delegate.mapReduce(options);
+    }
+
+    @Override
+    @Deprecated
+    @SuppressWarnings("rawtypes")
+    public <T> MapreduceResults<T> mapReduce(org.mongodb.morphia.MapreduceType type, Query q, String map, String reduce, String finalize, Map<String, Object> scopeFields, Class<T> outputType) {
+        return delegate.mapReduce(type, q, map, reduce, finalize, scopeFields, outputType);
+    }
+
+    @Override
+    @Deprecated
+    @SuppressWarnings("rawtypes")
+    public <T> MapreduceResults<T> mapReduce(org.mongodb.morphia.MapreduceType type, Query q, Class<T> outputType, MapReduceCommand baseCommand) {
+        return delegate.mapReduce(type, q, outputType, baseCommand);
+    }
+
+    @Override
+    public <T> Key<T> merge(T entity) {
+        final DaoProbe.Sample sample = probe.start("merge", entity);
+        try {
+            return sample.stop(delegate.merge(entity));
+        } catch (RuntimeException e) {
+            throw sample.error(e);
+        }
+    }
+
+    @Override
+    public <T> Key<T> merge(T entity, WriteConcern wc) {
+        final DaoProbe.Sample sample = probe.start("merge", entity);
+        try {
+            return sample.stop(delegate.merge(entity, wc));
+        } catch (RuntimeException e) {
+            throw sample.error(e);
+        }
+    }
+
+    @Override
+    public <T> Query<T> queryByExample(T example) {
+        return delegate.queryByExample(example);
+    }
+
+    @Override
+    public <T> Iterable<Key<T>> save(Iterable<T> entities) {
+        final DaoProbe.Sample sample = probe.start("save", entities);
+        try {
+            return sample.stop(delegate.save(entities));
+        } catch (RuntimeException e) {
+            throw sample.error(e);
+        }
+    }
+
+    @Override
+    @Deprecated
+    public <T> Iterable<Key<T>> save(Iterable<T> entities, WriteConcern wc) {
+        final DaoProbe.Sample sample = probe.start("save", entities);
+        try {
+            return sample.stop(delegate.save(entities, wc));
+        } catch (RuntimeException e) {
+            throw sample.error(e);
+        }
+    }
+
+    @Override
+    public <T> Iterable<Key<T>> save(Iterable<T> entities, InsertOptions options) {
+        final DaoProbe.Sample sample = probe.start("save", entities);
+        try {
+            return sample.stop(delegate.save(entities, options));
+        } catch (RuntimeException e) {
+            throw sample.error(e);
+        }
+    }
+
+    @Override
+    @Deprecated
+    @SuppressWarnings("unchecked")
+    public <T> Iterable<Key<T>> save(T... entities) {
+        final DaoProbe.Sample sample = probe.start("save", entities);
+        try {
+            return sample.stop(delegate.save(entities));
+        } catch (RuntimeException e) {
+            throw sample.error(e);
+        }
+    }
+
+    @Override
+    public <T> Key<T> save(T entity) {
+        final DaoProbe.Sample sample = probe.start("save", entity);
+        try {
+            return sample.stop(delegate.save(entity));
+        } catch (RuntimeException e) {
+            throw sample.error(e);
+        }
+    }
+
+    @Override
+    @Deprecated
+    public <T> Key<T> save(T entity, WriteConcern wc) {
+        final DaoProbe.Sample sample = probe.start("save", entity);
+        try {
+            return sample.stop(delegate.save(entity, wc));
+        } catch (RuntimeException e) {
+            throw sample.error(e);
+        }
+    }
+
+    @Override
+    public <T> Key<T> save(T entity, InsertOptions options) {
+        final DaoProbe.Sample sample = probe.start("save", entity);
+        try {
+            return sample.stop(delegate.save(entity, options));
+        } catch (RuntimeException e) {
+            throw sample.error(e);
+        }
+    }
+
+    @Override
+    public <T> UpdateResults update(T entity, UpdateOperations<T> operations) {
+        final DaoProbe.Sample sample = probe.start("update", entity);
+        try {
+            return sample.stop(delegate.update(entity, operations));
+        } catch (RuntimeException e) {
+            throw sample.error(e);
+        }
+    }
+
+    @Override
+    public <T> UpdateResults update(Key<T> key, UpdateOperations<T> operations) {
+        final DaoProbe.Sample sample = probe.start("update", key);
+        try {
+            return sample.stop(delegate.update(key, operations));
+        } catch (RuntimeException e) {
+            throw sample.error(e);
+        }
+    }
+
+    @Override
+    public <T> UpdateResults update(Query<T> query, UpdateOperations<T> operations) {
+        final DaoProbe.Sample sample = probe.start("update", query);
+        try {
+            return sample.query(query).stop(delegate.update(query, operations));
+        } catch (RuntimeException e) {
+            throw sample.error(e);
+        }
+    }
+
+    @Override
+    public <T> UpdateResults update(Query<T> query, UpdateOperations<T> operations, UpdateOptions options) {
+        final DaoProbe.Sample sample = probe.start("update", query);
+        try {
+            return sample.query(query).stop(delegate.update(query, operations, options));
+        } catch (RuntimeException e) {
+            throw sample.error(e);
+        }
+    }
+
+    @Override
+    public <T> UpdateResults update(Query<T> query, UpdateOperations<T> operations, boolean createIfMissing) {
+        final DaoProbe.Sample sample = probe.start("update", query);
+        try {
+            return sample.query(query).stop(delegate.update(query, operations, createIfMissing));
+        } catch (RuntimeException e) {
+            throw sample.error(e);
+        }
+    }
+
+    @Override
+    public <T> UpdateResults update(Query<T> query, UpdateOperations<T> operations, boolean createIfMissing, WriteConcern wc) {
+        final DaoProbe.Sample sample = probe.start("update", query);
+        try {
+            return sample.query(query).stop(delegate.update(query, operations, createIfMissing, wc));
+        } catch (RuntimeException e) {
+            throw sample.error(e);
+        }
+    }
+
+    @Override
+    public <T> UpdateResults updateFirst(Query<T> query, UpdateOperations<T> operations) {
+        final DaoProbe.Sample sample = probe.start("updateFirst", query);
+        try {
+            return sample.query(query).stop(delegate.updateFirst(query, operations));
+        } catch (RuntimeException e) {
+            throw sample.error(e);
+        }
+    }
+
+    @Override
+    public <T> UpdateResults updateFirst(Query<T> query, UpdateOperations<T> operations, boolean createIfMissing) {
+        final DaoProbe.Sample sample = probe.start("updateFirst", query);
+        try {
+            return sample.query(query).stop(delegate.updateFirst(query, operations, createIfMissing));
+        } catch (RuntimeException e) {
+            throw sample.error(e);
+        }
+    }
+
+    @Override
+    public <T> UpdateResults updateFirst(Query<T> query, UpdateOperations<T> operations, boolean createIfMissing, WriteConcern wc) {
+        final DaoProbe.Sample sample = probe.start("updateFirst", query);
+        try {
+            return sample.query(query).stop(delegate.updateFirst(query, operations, createIfMissing, wc));
+        } catch (RuntimeException e) {
+            throw sample.error(e);
+        }
+    }
+
+    @Override
+    public <T> UpdateResults updateFirst(Query<T> query, T entity, boolean createIfMissing) {
+        final DaoProbe.Sample sample = probe.start("updateFirst", query);
+        try {
+            return sample.query(query).stop(delegate.updateFirst(query, entity, createIfMissing));
+        } catch (RuntimeException e) {
+            throw sample.error(e);
+        }
+    }
+
+    @Override
+    public DBDecoderFactory getDecoderFact() {
+        return delegate.getDecoderFact();
+    }
+
+    @Override
+    public void setDecoderFact(DBDecoderFactory fact) {
+        delegate.setDecoderFact(fact);
+    }
+
+    @Override
+    public AggregationPipeline createAggregation(String collection, Class<?> clazz) {
+        return delegate.createAggregation(collection, clazz);
+    }
+
+    @Override
+    public <T> Query<T> createQuery(String collection, Class<T> clazz) {
+        return delegate.createQuery(collection, clazz);
+    }
+
+    @Override
+    public <T> Query<T> createQuery(Class<T> clazz, DBObject q) {
+        return delegate.createQuery(clazz, q);
+    }
+
+    @Override
+    public <T> Query<T> createQuery(String collection, Class<T> clazz, DBObject q) {
+        return delegate.createQuery(collection, clazz, q);
+    }
+
+    @Override
+    public <T, V> DBRef createRef(Class<T> clazz, V id) {
+        return delegate.createRef(clazz, id);
+    }
+
+    @Override
+    public <T> DBRef createRef(T entity) {
+        return delegate.createRef(entity);
+    }
+
+    @Override
+    public <T> UpdateOperations<T> createUpdateOperations(Class<T> type, DBObject ops) {
+        return delegate.createUpdateOperations(type, ops);
+    }
+
+    @Override
+    public <T, V> WriteResult delete(String kind, Class<T> clazz, V id) {
+        final DaoProbe.Sample sample = probe.start("delete", kind);
+        try {
+            return sample.stop(delegate.delete(kind, clazz, id));
+        } catch (RuntimeException e) {
+            throw sample.error(e);
+        }
+    }
+
+    @Override
+    public <T, V> WriteResult delete(String kind, Class<T> clazz, V id, DeleteOptions options) {
+        final DaoProbe.Sample sample = probe.start("delete", kind);
+        try {
+            return sample.stop(delegate.delete(kind, clazz, id, options));
+        } catch (RuntimeException e) {
+            throw sample.error(e);
+        }
+    }
+
+    @Override
+    @Deprecated
+    public <T, V> WriteResult delete(String kind, Class<T> clazz, V id, WriteConcern wc) {
+        final DaoProbe.Sample sample = probe.start("delete", kind);
+        try {
+            return sample.stop(delegate.delete(kind, clazz, id, wc));
+        } catch (RuntimeException e) {
+            throw sample.error(e);
+        }
+    }
+
+    @Override
+    @Deprecated
+    public <T> void ensureIndex(String collection, Class<T> clazz, String fields) {
+        delegate.ensureIndex(collection, clazz, fields);
+    }
+
+    @Override
+    @Deprecated
+    public <T> void ensureIndex(String collection, Class<T> clazz, String name, String fields, boolean unique, boolean dropDupsOnCreate) {
+        delegate.ensureIndex(collection, clazz, name, fields, unique, dropDupsOnCreate);
+    }
+
+    @Override
+    public <T> void ensureIndexes(String collection, Class<T> clazz) {
+        delegate.ensureIndexes(collection, clazz);
+    }
+
+    @Override
+    public <T> void ensureIndexes(String collection, Class<T> clazz, boolean background) {
+        delegate.ensureIndexes(collection, clazz, background);
+    }
+
+    @Override
+    public Key<?> exists(Object keyOrEntity, ReadPreference readPreference) {
+        final DaoProbe.Sample sample = probe.start("exists", keyOrEntity);
+        try {
+            return sample.stop(delegate.exists(keyOrEntity, readPreference));
+        } catch (RuntimeException e) {
+            throw sample.error(e);
+        }
+    }
+
+    @Override
+    public <T> Query<T> find(String collection, Class<T> clazz) {
+        return delegate.find(collection, clazz);
+    }
+
+    @Override
+    public <T, V> Query<T> find(String collection, Class<T> clazz, String property, V value, int offset, int size) {
+        return delegate.find(collection, clazz, property, value, offset, size);
+    }
+
+    @Override
+    public <T> T get(Class<T> clazz, DBRef ref) {
+        final DaoProbe.Sample sample = probe.start("get", clazz);
+        try {
+            return sample.stop(delegate.get(clazz, ref));
+        } catch (RuntimeException e) {
+            throw sample.error(e);
+        }
+    }
+
+    @Override
+    public <T, V> T get(String kind, Class<T> clazz, V id) {
+        final DaoProbe.Sample sample = probe.start("get", kind);
+        try {
+            return sample.stop(delegate.get(kind, clazz, id));
+        } catch (RuntimeException e) {
+            throw sample.error(e);
+        }
+    }
+
+    @Override
+    public long getCount(String collection) {
+        final DaoProbe.Sample sample = probe.start("getCount", collection);
+        try {
+            return sample.stop(delegate.getCount(collection));
+        } catch (RuntimeException e) {
+            throw sample.error(e);
+        }
+    }
+
+    @Override
+    public <T> Key<T> insert(T entity) {
+        final DaoProbe.Sample sample = probe.start("insert", entity);
+        try {
+            return sample.stop(delegate.insert(entity));
+        } catch (RuntimeException e) {
+            throw sample.error(e);
+        }
+    }
+
+    @Override
+    @Deprecated
+    public <T> Key<T> insert(T entity, WriteConcern wc) {
+        final DaoProbe.Sample sample = probe.start("insert", entity);
+        try {
+            return sample.stop(delegate.insert(entity, wc));
+        } catch (RuntimeException e) {
+            throw sample.error(e);
+        }
+    }
+
+    @Override
+    public <T> Key<T> insert(T entity, InsertOptions options) {
+        final DaoProbe.Sample sample = probe.start("insert", entity);
+        try {
+            return sample.stop(delegate.insert(entity, options));
+        } catch (RuntimeException e) {
+            throw sample.error(e);
+        }
+    }
+
+    @Override
+    public <T> Key<T> insert(String collection, T entity) {
+        final DaoProbe.Sample sample = probe.start("insert", collection);
+        try {
+            return sample.stop(delegate.insert(collection, entity));
+        } catch (RuntimeException e) {
+            throw sample.error(e);
+        }
+    }
+
+    @Override
+    public <T> Key<T> insert(String collection, T entity, InsertOptions options) {
+        final DaoProbe.Sample sample = probe.start("insert", collection);
+        try {
+            return sample.stop(delegate.insert(collection, entity, options));
+        } catch (RuntimeException e) {
+            throw sample.error(e);
+        }
+    }
+
+    @Override
+    @Deprecated
+    @SuppressWarnings("unchecked")
+    public <T> Iterable<Key<T>> insert(T... entities) {
+        final DaoProbe.Sample sample = probe.start("insert", entities);
+        try {
+            return sample.stop(delegate.insert(entities));
+        } catch (RuntimeException e) {
+            throw sample.error(e);
+        }
+    }
+
+    @Override
+    public <T> Iterable<Key<T>> insert(Iterable<T> entities) {
+        final DaoProbe.Sample sample = probe.start("insert", entities);
+        try {
+            return sample.stop(delegate.insert(entities));
+        } catch (RuntimeException e) {
+            throw sample.error(e);
+        }
+    }
+
+    @Override
+    @Deprecated
+    public <T> Iterable<Key<T>> insert(Iterable<T> entities, WriteConcern wc) {
+        final DaoProbe.Sample sample = probe.start("insert", entities);
+        try {
+            return sample.stop(delegate.insert(entities, wc));
+        } catch (RuntimeException e) {
+            throw sample.error(e);
+        }
+    }
+
+    @Override
+    public <T> Iterable<Key<T>> insert(Iterable<T> entities, InsertOptions options) {
+        final DaoProbe.Sample sample = probe.start("insert", entities);
+        try {
+            return sample.stop(delegate.insert(entities, options));
+        } catch (RuntimeException e) {
+            throw sample.error(e);
+        }
+    }
+
+    @Override
+    public <T> Iterable<Key<T>> insert(String collection, Iterable<T> entities) {
+        final DaoProbe.Sample sample = probe.start("insert", collection);
+        try {
+            return sample.stop(delegate.insert(collection, entities));
+        } catch (RuntimeException e) {
+            throw sample.error(e);
+        }
+    }
+
+    @Override
+    @Deprecated
+    public <T> Iterable<Key<T>> insert(String collection, Iterable<T> entities, WriteConcern wc) {
+        final DaoProbe.Sample sample = probe.start("insert", collection);
+        try {
+            return sample.stop(delegate.insert(collection, entities, wc));
+        } catch (RuntimeException e) {
+            throw sample.error(e);
+        }
+    }
+
+    @Override
+    public <T> Iterable<Key<T>> insert(String collection, Iterable<T> entities, InsertOptions options) {
+        final DaoProbe.Sample sample = probe.start("insert", collection);
+        try {
+            return sample.stop(delegate.insert(collection, entities, options));
+        } catch (RuntimeException e) {
+            throw sample.error(e);
+        }
+    }
+
+    @Override
+    public <T> Query<T> queryByExample(String collection, T example) {
+        return delegate.queryByExample(collection, example);
+    }
+
+    @Override
+    public <T> Key<T> save(String collection, T entity) {
+        final DaoProbe.Sample sample = probe.start("save", collection);
+        try {
+            return sample.stop(delegate.save(collection, entity));
+        } catch (RuntimeException e) {
+            throw sample.error(e);
+        }
+    }
+
+    @Override
+    @Deprecated
+    public <T> Key<T> save(String collection, T entity, WriteConcern wc) {
+        final DaoProbe.Sample sample = probe.start("save", collection);
+        try {
+            return sample.stop(delegate.save(collection, entity, wc));
+        } catch (RuntimeException e) {
+            throw sample.error(e);
+        }
+    }
+
+    @Override
+    public <T> Key<T> save(String collection, T entity, InsertOptions options) {
+        final DaoProbe.Sample sample = probe.start("save", collection);
+        try {
+            return sample.stop(delegate.save(collection, entity, options));
+        } catch (RuntimeException e) {
+            throw sample.error(e);
+        }
+    }
+
+    /**
+     * 根据调用的第一个参数解析collection名字，只在开启指标时调用
+     */
+    private String collectionOf(Object target) {
+        if (target instanceof Object[]) {
+            final Object[] array = (Object[]) target;
+            target = array.length == 0 ? null : array[0];
+        } else if (target instanceof Iterable) {
+            final Iterator<?> iterator = ((Iterable<?>) target).iterator();
+            target = iterator.hasNext() ? iterator.next() : null;
+        }
+        if (target == null) {
+            return null;
+        }
+        if (target instanceof String) {
+            // kind参数即collection名字
+            return (String) target;
+        }
+        if (target instanceof Query) {
+            return QueryUtils.collection((Query<?>) target).getName();
+        }
+        if (target instanceof Key) {
+            return ((Key<?>) target).getCollection();
+        }
+        return getMapper().getCollectionName(target);
+    }
+}
@@ -0,0 +1,100 @@
+package com.github.mx.mongo.mongo;
+
+import com.mongodb.connection.ConnectionDescription;
+import com.mongodb.event.CommandFailedEvent;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 统计一个MongoClient上正在执行的命令数及打开的游标数，配置变更后据此判断旧连接是否可以关闭
+ * <p>
+ * 游标在find/aggregate返回非0的cursor id时记为打开，getMore返回0、getMore失败或killCursors时记为关闭；
+ * 调用方没有关闭也没有读完的游标由关闭的最长等待时间兜底
+ * <p>
+ * Create by max on 2020/01/16
+ */
+class InFlightCommands implements CommandListener {
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    /**
+     * 打开的游标，按server地址和cursor id标识
+     */
+    private final Set<String> cursors = ConcurrentHashMap.newKeySet();
+    /**
+     * 执行中的getMore，requestId到游标
+     */
+    private final Map<Integer, String> getMores = new ConcurrentHashMap<>();
+
+    @Override
+    public void commandStarted(CommandStartedEvent event) {
+        inFlight.incrementAndGet();
+        final BsonDocument command = event.getCommand();
+        if ("getMore".equals(event.getCommandName())) {
+            final BsonValue id = command.get("getMore");
+            if (id != null && id.isNumber()) {
+                getMores.put(event.getRequestId(), cursor(event.getConnectionDescription(), id.asNumber().longValue()));
+            }
+        } else if ("killCursors".equals(event.getCommandName())) {
+            final BsonValue ids = command.get("cursors");
+            if (ids != null && ids.isArray()) {
+                for (BsonValue id : ids.asArray()) {
+                    if (id.isNumber()) {
+                        cursors.remove(cursor(event.getConnectionDescription(), id.asNumber().longValue()));
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public void commandSucceeded(CommandSucceededEvent event) {
+        inFlight.decrementAndGet();
+        final String getMore = getMores.remove(event.getRequestId());
+        final long id = cursorId(event.getResponse());
+        if (getMore != null) {
+            if (id == 0) {
+                cursors.remove(getMore);
+            }
+        } else if (id != 0) {
+            cursors.add(cursor(event.getConnectionDescription(), id));
+        }
+    }
+
+    @Override
+    public void commandFailed(CommandFailedEvent event) {
+        inFlight.decrementAndGet();
+        final String getMore = getMores.remove(event.getRequestId());
+        if (getMore != null) {
+            cursors.remove(getMore);
+        }
+    }
+
+    int get() {
+        return inFlight.get();
+    }
+
+    int getOpenCursors() {
+        return cursors.size();
+    }
+
+    private static String cursor(ConnectionDescription description, long id) {
+        return description.getServerAddress() + "/" + id;
+    }
+
+    private static long cursorId(BsonDocument response) {
+        final BsonValue cursor = response == null ? null : response.get("cursor");
+        if (cursor == null || !cursor.isDocument()) {
+            return 0;
+        }
+        final BsonValue id = cursor.asDocument().get("id");
+        return id != null && id.isNumber() ? id.asNumber().longValue() : 0;
+    }
+}
@@ -1,18 +1,26 @@
 package com.github.mx.mongo.mongo;
 
 import com.alibaba.nacos.common.utils.StringUtils;
+import com.github.mx.mongo.cache.DaoCaches;
+import com.github.mx.mongo.dao.AsyncDaoExecutor;
+import com.github.mx.mongo.metrics.MongoMetrics;
+import com.github.mx.mongo.metrics.QueryShapeRecorder;
+import com.github.mx.mongo.route.ReadRoutes;
+import com.github.mx.mongo.mapper.EntityClassIndex;
+import com.github.mx.mongo.mapper.EntityMapperManager;
 import com.github.mx.nacos.config.core.ConfigFactory;
 import com.github.mx.nacos.config.core.RemoteConfig;
 import com.github.mx.nacos.config.core.api.IConfig;
 import com.google.common.base.Splitter;
 import com.google.common.base.Strings;
-import com.google.common.collect.Lists;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Maps;
-import com.google.common.reflect.Reflection;
-import com.google.common.util.concurrent.Uninterruptibles;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.mongodb.*;
-import org.mongodb.morphia.Datastore;
+import org.mongodb.morphia.AdvancedDatastore;
 import org.mongodb.morphia.Morphia;
+import org.mongodb.morphia.mapping.MappedClass;
 import org.mongodb.morphia.mapping.Mapper;
 import org.mongodb.morphia.mapping.MapperOptions;
 import org.slf4j.Logger;
@@ -20,26 +28,57 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.FactoryBean;
 import org.springframework.beans.factory.InitializingBean;
+import org.springframework.context.EnvironmentAware;
+import org.springframework.core.env.Environment;
 
-import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 /**
- * FactoryBean生成代理对象
+ * FactoryBean生成DatastoreExt对象
  * <p>
  * Create by max on 2020/01/16
  */
 @SuppressWarnings("UnstableApiUsage")
-public class MongoDataStoreFactoryBean implements InitializingBean, DisposableBean, FactoryBean<DatastoreExt> {
+public class MongoDataStoreFactoryBean implements InitializingBean, DisposableBean, FactoryBean<DatastoreExt>, EnvironmentAware {
 
     private static final Logger log = LoggerFactory.getLogger(MongoDataStoreFactoryBean.class);
 
     private static final Pattern MONGO_URI = Pattern.compile("mongodb://((.+):(.*)@)");
+    /**
+     * 影响MongoClient的配置，变化时才重建连接
+     */
+    private static final List<String> CLIENT_KEYS = ImmutableList.of("mongo.readPreference", "mongo.serverSelectionTimeout",
+            "mongo.maxWaitTime", "mongo.maxConnectionLifeTime", "mongo.maxConnectionIdleTime", "mongo.maxConnectionsPerHost",
+            "mongo.connectTimeout", "mongo.socketTimeout");
+    /**
+     * 影响实体映射的配置，变化时才重新扫描mapPackage
+     */
+    private static final List<String> MAPPING_KEYS = ImmutableList.of("mongo.mapPackage", "mongo.ignoreInvalidClasses",
+            "mongo.storeEmpties", "mongo.storeNulls", "mongo.preParseEntities", "mongo.entityIndex");
+    /**
+     * 旧连接至少保留这么久，切换前已创建的Query可能还在使用旧连接
+     */
+    private static final long DRAIN_GRACE_MILLIS = 1000;
+    private static final long DRAIN_CHECK_MILLIS = 100;
+    /**
+     * 连接池采样间隔
+     */
+    private static final long POOL_SAMPLE_MILLIS = 1000;
+
     /**
      * nacos中的groupId(不填默认取spring.application.name)
      */
@@ -49,9 +88,47 @@ public class MongoDataStoreFactoryBean implements InitializingBean, DisposableBe
      */
     private String dataId;
 
-    private IConfig config;
-    private Map<String, DatastoreExt> stores = Maps.newConcurrentMap();
+    private volatile IConfig config;
+    private Map<String, DelegatingDatastore> stores = Maps.newConcurrentMap();
+    /**
+     * 各store当前使用的连接与映射，key与stores一致
+     */
+    private final Map<String, Binding> bindings = Maps.newConcurrentMap();
+    /**
+     * 按映射配置共享Mapper，同样的配置只扫描一次mapPackage
+     */
+    private final Map<String, Mapper> mappers = Maps.newConcurrentMap();
+    /**
+     * 按连接标识(hosts、认证信息、连接参数)共享的MongoClient，不同db及collection前后缀只是其上的视图
+     */
+    private final Map<String, SharedClient> clients = Maps.newHashMap();
+    private final Set<Retirement> retirements = Sets.newConcurrentHashSet();
+    private final ScheduledExecutorService reaper = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("mongo-client-reaper-%d").setDaemon(true).build());
     private DatastoreExt first;
+    private final List<AutoCloseable> closeables = new CopyOnWriteArrayList<>();
+    /**
+     * 本工厂的dao缓存，只受本工厂的配置影响
+     */
+    private final DaoCaches daoCaches = new DaoCaches();
+    /**
+     * 本工厂的慢查询配置，指标实现未单独安装时使用MongoMetrics.INSTANCE上的
+     */
+    private final QueryShapeRecorder queryShapeRecorder = new QueryShapeRecorder();
+    private final MongoMetrics mongoMetrics = new MongoMetrics(queryShapeRecorder);
+    private final ReadRoutes readRoutes = new ReadRoutes();
+    private volatile ReloadReport lastReload;
+    /**
+     * mongo.pool.adaptive=apply时自动调整后的每个host最大连接数，为null时使用配置值；
+     * 以下三个字段只在持有this锁时修改，与配置变更和loadConfig串行
+     */
+    private volatile Integer adaptivePoolSize;
+    private String configuredPoolSize;
+    private long adaptiveAppliedAt;
+    /**
+     * 连接池采样任务，只在mongo.pool.telemetry=true时存在，持有this锁时修改
+     */
+    private ScheduledFuture<?> poolSampling;
 
     public MongoDataStoreFactoryBean(String dataId) {
         this.dataId = dataId;
@@ -62,18 +139,49 @@ public class MongoDataStoreFactoryBean implements InitializingBean, DisposableBe
         this.dataId = dataId;
     }
 
+    /**
+     * 没有激活的profile时按Spring的规则使用默认profile
+     */
+    @Override
+    public void setEnvironment(Environment environment) {
+        final String[] profiles = environment.getActiveProfiles();
+        queryShapeRecorder.setActiveProfiles(Arrays.asList(profiles.length > 0 ? profiles : environment.getDefaultProfiles()));
+    }
+
     @Override
     public void afterPropertiesSet() throws Exception {
         groupId = StringUtils.defaultIfEmpty(groupId, ConfigFactory.getApplicationName());
         ConfigFactory.getInstance().registerListener(dataId, groupId, c -> {
-            this.config = RemoteConfig.convert(c);
-            loadConfig(config);
+            IConfig config = RemoteConfig.convert(c);
+            reload(config);
+            daoCaches.reload(config);
+            queryShapeRecorder.reload(config);
+            mongoMetrics.reload(config);
+            readRoutes.reload(config);
         });
     }
 
     @Override
     public void destroy() throws Exception {
-        stores.values().forEach(it -> ((DatastoreHandler) Proxy.getInvocationHandler(it)).getDelegate().getMongo().close());
+        // 后注册的先关闭，且必须在mongoClient关闭之前；close时会调用removeCloseable，遍历快照
+        final List<AutoCloseable> registered = new ArrayList<>(closeables);
+        for (int i = registered.size() - 1; i >= 0; i--) {
+            try {
+                registered.get(i).close();
+            } catch (Exception e) {
+                log.error("cannot close " + registered.get(i), e);
+            }
+        }
+        closeables.clear();
+        reaper.shutdownNow();
+        retirements.forEach(Retirement::close);
+        synchronized (clients) {
+            clients.values().forEach(it -> {
+                AsyncDaoExecutor.closeShared(it.client);
+                it.client.close();
+            });
+            clients.clear();
+        }
     }
 
     @Override
@@ -91,44 +199,269 @@ public class MongoDataStoreFactoryBean implements InitializingBean, DisposableBe
         return first;
     }
 
+    /**
+     * 不经过配置中心，直接把自行创建的Datastore包装成DatastoreExt，用于单元测试、基准测试等自己管理连接的场景.
+     * 缓存、指标与读路由使用全局的INSTANCE，不支持use、getDatastoreByPrefix、getDatastoreBySuffix切换db
+     *
+     * @param datastore Morphia创建的Datastore
+     * @return 与getObject()行为一致的DatastoreExt
+     */
+    public static DatastoreExt wrap(AdvancedDatastore datastore) {
+        return new DelegatingDatastore(null, datastore.getDB().getName(), datastore);
+    }
+
+    /**
+     * 最近一次配置变更的处理结果，还没有变更过时为null
+     */
+    public ReloadReport getLastReloadReport() {
+        return lastReload;
+    }
+
+    /**
+     * 各MongoClient最近一个统计窗口的连接池与命令耗时，需要配置mongo.pool.telemetry=true
+     */
+    public List<PoolStats> getPoolStats() {
+        List<PoolStats> stats = new ArrayList<>();
+        synchronized (clients) {
+            clients.values().forEach(it -> {
+                if (it.telemetry.getLast() != null) {
+                    stats.add(it.telemetry.getLast());
+                }
+            });
+        }
+        return stats;
+    }
+
+    void addCloseable(AutoCloseable closeable) {
+        closeables.add(closeable);
+    }
+
+    void removeCloseable(AutoCloseable closeable) {
+        closeables.remove(closeable);
+    }
+
+    DaoCaches getDaoCaches() {
+        return daoCaches;
+    }
+
+    MongoMetrics getMongoMetrics() {
+        return mongoMetrics;
+    }
+
+    ReadRoutes getReadRoutes() {
+        return readRoutes;
+    }
+
+    /**
+     * 已存在时不加锁；创建时持有与loadConfig相同的锁，保证新store按当前配置绑定且不会被进行中的配置变更漏掉
+     */
     DatastoreExt getOrCreate(String dbName, String format) {
         String key = Strings.isNullOrEmpty(format) ? dbName : (dbName + ':' + format);
+        DelegatingDatastore existing = stores.get(key);
+        if (existing != null) {
+            return existing;
+        }
+        synchronized (this) {
+            return create(key);
+        }
+    }
+
+    private DelegatingDatastore create(String key) {
         return stores.computeIfAbsent(key, it -> {
             List<String> values = Splitter.on(':').limit(2).splitToList(it);
             String db = values.get(0);
             String fmt = values.size() > 1 ? values.get(1) : null;
-            ConnectionString connection = new ConnectionString(decodePassword(getUri(db)));
-            Datastore datastore = doCreate(connection, fmt);
-            DatastoreHandler handler = new DatastoreHandler(this, connection.getDatabase(), datastore);
-            return Reflection.newProxy(DatastoreExt.class, handler);
+            Binding binding = bind(new Spec(db, fmt), null);
+            bindings.put(it, binding);
+            return new DelegatingDatastore(this, binding.database, binding.datastore);
         });
     }
 
-    private void loadConfig(IConfig config) {
+    private synchronized void loadConfig(IConfig config) {
         if (stores.isEmpty()) {
             initFirst(config);
-        } else {
-            List<Mongo> oldClients = Lists.newArrayList();
-            for (Iterator<String> it = stores.keySet().iterator(); it.hasNext(); ) {
-                String key = it.next();
-                DatastoreHandler handler = (DatastoreHandler) Proxy.getInvocationHandler(stores.get(key));
-                oldClients.add(handler.getDelegate().getMongo());
-                if (key.startsWith("mongodb://")) {
-                    it.remove();
-                } else {
-                    List<String> values = Splitter.on(':').limit(2).splitToList(key);
-                    String db = values.get(0);
-                    String fmt = values.size() > 1 ? values.get(1) : null;
-                    handler.setDelegate(doCreate(new ConnectionString(decodePassword(getUri(db))), fmt));
+            return;
+        }
+        long start = System.nanoTime();
+        int rebound = 0;
+        Set<Mapper> rebuiltMappers = Sets.newIdentityHashSet();
+        Set<Mapper> oldMappers = Sets.newIdentityHashSet();
+        oldMappers.addAll(mappers.values());
+        Set<SharedClient> newClients = Sets.newIdentityHashSet();
+        Set<SharedClient> oldClients = Sets.newIdentityHashSet();
+        synchronized (clients) {
+            oldClients.addAll(clients.values());
+        }
+        for (Iterator<Map.Entry<String, DelegatingDatastore>> it = stores.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<String, DelegatingDatastore> entry = it.next();
+            String key = entry.getKey();
+            Binding old = bindings.get(key);
+            if (key.startsWith("mongodb://")) {
+                it.remove();
+                bindings.remove(key);
+                release(old.shared);
+                continue;
+            }
+            List<String> values = Splitter.on(':').limit(2).splitToList(key);
+            Spec spec = new Spec(values.get(0), values.size() > 1 ? values.get(1) : null);
+            if (spec.clientKey.equals(old.shared.key) && spec.mappingKey.equals(old.mappingKey)) {
+                continue;
+            }
+            Binding binding = bind(spec, old);
+            bindings.put(key, binding);
+            entry.getValue().setDelegate(binding.datastore);
+            rebound++;
+            if (binding.shared != old.shared) {
+                release(old.shared);
+                if (!oldClients.contains(binding.shared)) {
+                    newClients.add(binding.shared);
                 }
             }
-            // 延迟关闭正在使用的mongoClient
-            new Thread(() -> {
-                Uninterruptibles.sleepUninterruptibly(30, TimeUnit.SECONDS);
-                log.warn("close {} old clients", oldClients.size());
-                oldClients.forEach(Mongo::close);
-            }).start();
+            if (!oldMappers.contains(binding.mapper)) {
+                rebuiltMappers.add(binding.mapper);
+            }
+        }
+        // 不再被引用的映射配置
+        Set<String> used = bindings.values().stream().map(it -> it.mappingKey).collect(Collectors.toSet());
+        mappers.keySet().retainAll(used);
+
+        lastReload = new ReloadReport(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), stores.size(),
+                newClients.size(), rebuiltMappers.size(), rebound);
+        log.info("mongo config reloaded: {}", lastReload);
+    }
+
+    /**
+     * 获取(不存在时创建)连接标识对应的MongoClient，引用数加一
+     */
+    private SharedClient acquire(Spec spec) {
+        synchronized (clients) {
+            SharedClient shared = clients.computeIfAbsent(spec.clientKey, it -> {
+                InFlightCommands inFlight = new InFlightCommands();
+                PoolTelemetry telemetry = new PoolTelemetry(spec.hosts, connectionsPerHost());
+                MongoClient client = new MongoClient(new MongoClientURI(spec.uri, clientOptions()
+                        .addCommandListener(inFlight).addCommandListener(telemetry).addClusterListener(telemetry)));
+                return new SharedClient(it, spec.hosts, client, inFlight, telemetry);
+            });
+            shared.refs++;
+            return shared;
+        }
+    }
+
+    /**
+     * 引用数减一，没有store再使用时等旧连接上的命令执行完、游标关闭后再关闭，最多等待mongo.reload.drainTimeoutSeconds
+     */
+    private void release(SharedClient shared) {
+        synchronized (clients) {
+            if (--shared.refs > 0) {
+                return;
+            }
+            clients.remove(shared.key, shared);
         }
+        long timeout = TimeUnit.SECONDS.toNanos(config.getInt("mongo.reload.drainTimeoutSeconds", 30));
+        Retirement retirement = new Retirement(shared, System.nanoTime() + timeout);
+        retirements.add(retirement);
+        reaper.schedule(retirement, DRAIN_GRACE_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 配置变更：替换配置、重置自动调整的连接数并重建连接，与采样线程的applyPoolSize持有同一把锁
+     */
+    private synchronized void reload(IConfig config) {
+        this.config = config;
+        reloadPoolSize(config);
+        loadConfig(config);
+        reloadPoolSampling(config);
+    }
+
+    /**
+     * 开启遥测时才定时采样连接池，关闭时停止采样并停止统计命令
+     */
+    private void reloadPoolSampling(IConfig config) {
+        boolean enabled = config.getBool("mongo.pool.telemetry");
+        if (enabled && poolSampling == null) {
+            poolSampling = reaper.scheduleWithFixedDelay(this::samplePools, POOL_SAMPLE_MILLIS, POOL_SAMPLE_MILLIS, TimeUnit.MILLISECONDS);
+        } else if (!enabled && poolSampling != null) {
+            poolSampling.cancel(false);
+            poolSampling = null;
+            synchronized (clients) {
+                clients.values().forEach(it -> it.telemetry.setEnabled(false));
+            }
+        }
+    }
+
+    /**
+     * 配置的连接数变化或关闭自动调整时，放弃自动调整的结果
+     */
+    private void reloadPoolSize(IConfig config) {
+        String configured = config.get("mongo.maxConnectionsPerHost");
+        if (!"apply".equals(config.get("mongo.pool.adaptive", "off")) || !Objects.equals(configured, configuredPoolSize)) {
+            adaptivePoolSize = null;
+        }
+        configuredPoolSize = configured;
+    }
+
+    private int connectionsPerHost() {
+        Integer adaptive = adaptivePoolSize;
+        return adaptive != null ? adaptive : config.getInt("mongo.maxConnectionsPerHost", 100);
+    }
+
+    /**
+     * 采样各连接池，窗口结束时汇总；等待时间超过阈值时按mongo.pool.adaptive给出建议或扩容
+     */
+    private void samplePools() {
+        IConfig config = this.config;
+        if (config == null) {
+            return;
+        }
+        try {
+            boolean enabled = config.getBool("mongo.pool.telemetry");
+            String adaptive = config.get("mongo.pool.adaptive", "off");
+            long windowMillis = TimeUnit.SECONDS.toMillis(config.getInt("mongo.pool.windowSeconds", 60));
+            long threshold = "off".equals(adaptive) ? 0 : config.getInt("mongo.pool.waitThresholdMillis", 50);
+            int limit = config.getInt("mongo.pool.maxConnectionsPerHost", 500);
+            List<SharedClient> shared;
+            synchronized (clients) {
+                shared = new ArrayList<>(clients.values());
+            }
+            int recommended = 0;
+            for (SharedClient it : shared) {
+                it.telemetry.setEnabled(enabled);
+                if (!enabled) {
+                    continue;
+                }
+                it.telemetry.sample();
+                if (it.telemetry.isWindowDue(windowMillis)) {
+                    PoolStats stats = it.telemetry.roll(threshold, limit);
+                    if (stats.getRecommendedConnectionsPerHost() > 0) {
+                        log.warn("mongo pool of {} waits {} ms on average for a connection, recommend mongo.maxConnectionsPerHost={}: {}",
+                                it.hosts, String.format("%.1f", stats.getEstimatedWaitMillis()), stats.getRecommendedConnectionsPerHost(), stats);
+                        recommended = Math.max(recommended, stats.getRecommendedConnectionsPerHost());
+                    }
+                }
+            }
+            if (recommended > 0 && "apply".equals(adaptive)) {
+                applyPoolSize(config, recommended, TimeUnit.SECONDS.toMillis(config.getInt("mongo.pool.adaptiveCooldownSeconds", 300)));
+            }
+        } catch (RuntimeException e) {
+            log.error("cannot sample mongo connection pools", e);
+        }
+    }
+
+    /**
+     * 通过配置变更的同一路径用新的连接数重建MongoClient，旧连接等命令执行完后关闭；
+     * 在采样线程上执行，与reload持有同一把锁，采样期间配置已变更时放弃本次调整
+     *
+     * @param sampled 采样时使用的配置
+     */
+    private synchronized void applyPoolSize(IConfig sampled, int size, long cooldownMillis) {
+        long now = System.currentTimeMillis();
+        if (sampled != config || now - adaptiveAppliedAt < cooldownMillis || size <= connectionsPerHost()) {
+            return;
+        }
+        adaptiveAppliedAt = now;
+        log.info("mongo.maxConnectionsPerHost adjusted from {} to {}", connectionsPerHost(), size);
+        adaptivePoolSize = size;
+        loadConfig(config);
     }
 
     private void initFirst(IConfig config) {
@@ -192,14 +525,24 @@ public class MongoDataStoreFactoryBean implements InitializingBean, DisposableBe
         return uri;
     }
 
-    private Datastore doCreate(ConnectionString connection, String format) {
+    /**
+     * 绑定连接与映射，连接标识未变化时沿用old的引用，映射配置相同的store共享Mapper
+     */
+    private Binding bind(Spec spec, Binding old) {
+        SharedClient shared = old != null && old.shared.key.equals(spec.clientKey) ? old.shared : acquire(spec);
+        Mapper mapper = mappers.computeIfAbsent(spec.mappingKey, it -> createMapper(spec.format));
+        AdvancedDatastore datastore = (AdvancedDatastore) new Morphia(mapper).createDatastore(shared.client, spec.database);
+        return new Binding(spec, shared, mapper, datastore);
+    }
+
+    private MongoClientOptions.Builder clientOptions() {
         MongoClientOptions.Builder builder = new MongoClientOptions.Builder();
         builder.readPreference(ReadPreference.valueOf(config.get("mongo.readPreference", "primary")))
                 .serverSelectionTimeout(config.getInt("mongo.serverSelectionTimeout", 10000))
                 .maxWaitTime(config.getInt("mongo.maxWaitTime", 120000))
                 .maxConnectionLifeTime(config.getInt("mongo.maxConnectionLifeTime", 86400000))
                 .maxConnectionIdleTime(config.getInt("mongo.maxConnectionIdleTime", 30000))
-                .connectionsPerHost(config.getInt("mongo.maxConnectionsPerHost", 100))
+                .connectionsPerHost(connectionsPerHost())
                 .connectTimeout(config.getInt("mongo.connectTimeout", 5000))
                 .socketTimeout(config.getInt("mongo.socketTimeout", 60000));
         try {
@@ -207,7 +550,10 @@ public class MongoDataStoreFactoryBean implements InitializingBean, DisposableBe
             builder.applicationName(ConfigFactory.getApplicationName());
         } catch (NoSuchMethodError ignore) {
         }
+        return builder;
+    }
 
+    private Mapper createMapper(String format) {
         Mapper mapper = new Mapper();
         if (!Strings.isNullOrEmpty(format)) {
             mapper = new MapperExt(format);
@@ -217,9 +563,24 @@ public class MongoDataStoreFactoryBean implements InitializingBean, DisposableBe
         options.setStoreNulls(config.getBool("mongo.storeNulls"));
         mapper.setOptions(options);
         Morphia morphia = new Morphia(mapper);
-        morphia.mapPackage(config.get("mongo.mapPackage"), config.getBool("mongo.ignoreInvalidClasses"));
-        MongoClient mongo = new MongoClient(new MongoClientURI(getAuthorizedURI(connection), builder));
-        return morphia.createDatastore(mongo, connection.getDatabase());
+        // 扫描结果按包缓存，有编译期索引时不扫描classpath
+        EntityClassIndex.INSTANCE.mapPackage(morphia, config.get("mongo.mapPackage"), config.getBool("mongo.ignoreInvalidClasses"),
+                Boolean.parseBoolean(config.get("mongo.entityIndex", "true")));
+        if (config.getBool("mongo.preParseEntities")) {
+            // 提前解析@Entity类，避免发布后的首批请求承担反射解析开销
+            EntityMapperManager.INSTANCE.preParse(mapper.getMappedClasses().stream()
+                    .map(MappedClass::getClazz)
+                    .collect(Collectors.toList()));
+        }
+        return mapper;
+    }
+
+    private String fingerprint(String prefix, List<String> keys) {
+        StringBuilder builder = new StringBuilder(Strings.nullToEmpty(prefix));
+        for (String key : keys) {
+            builder.append('|').append(config.get(key));
+        }
+        return builder.toString();
     }
 
     private String getAuthorizedURI(ConnectionString connection) {
@@ -239,4 +600,110 @@ public class MongoDataStoreFactoryBean implements InitializingBean, DisposableBe
         }
         return uri;
     }
+
+    /**
+     * 一个store按当前配置应使用的连接串及配置指纹
+     */
+    private final class Spec {
+        private final String format;
+        private final String database;
+        private final String hosts;
+        private final String uri;
+        private final String clientKey;
+        private final String mappingKey;
+
+        private Spec(String dbName, String format) {
+            ConnectionString connection = new ConnectionString(decodePassword(getUri(dbName)));
+            this.format = format;
+            this.database = connection.getDatabase();
+            this.hosts = String.valueOf(connection.getHosts());
+            this.uri = getAuthorizedURI(connection);
+            this.clientKey = fingerprint(clientIdentity(uri), CLIENT_KEYS) + '|' + connectionsPerHost();
+            this.mappingKey = fingerprint(format, MAPPING_KEYS);
+        }
+    }
+
+    /**
+     * 连接标识，不含db：没有指定authSource时认证库随db变化，已包含在credential中
+     */
+    private static String clientIdentity(String uri) {
+        ConnectionString connection = new ConnectionString(uri);
+        int pos = uri.indexOf('?');
+        return connection.getHosts() + "|" + connection.getCredentialList()
+                + "|" + (connection.getPassword() == null ? "" : new String(connection.getPassword()))
+                + "|" + (pos < 0 ? "" : uri.substring(pos + 1));
+    }
+
+    private static final class Binding {
+        private final String database;
+        private final String mappingKey;
+        private final SharedClient shared;
+        private final Mapper mapper;
+        private final AdvancedDatastore datastore;
+
+        private Binding(Spec spec, SharedClient shared, Mapper mapper, AdvancedDatastore datastore) {
+            this.database = spec.database;
+            this.mappingKey = spec.mappingKey;
+            this.shared = shared;
+            this.mapper = mapper;
+            this.datastore = datastore;
+        }
+    }
+
+    /**
+     * 被多个store共享的MongoClient，refs由clients加锁维护
+     */
+    private static final class SharedClient {
+        private final String key;
+        private final String hosts;
+        private final MongoClient client;
+        private final InFlightCommands inFlight;
+        private final PoolTelemetry telemetry;
+        private int refs;
+
+        private SharedClient(String key, String hosts, MongoClient client, InFlightCommands inFlight, PoolTelemetry telemetry) {
+            this.key = key;
+            this.hosts = hosts;
+            this.client = client;
+            this.inFlight = inFlight;
+            this.telemetry = telemetry;
+        }
+    }
+
+    /**
+     * 等待旧连接上的命令执行完、游标关闭或读完后关闭
+     */
+    private final class Retirement implements Runnable {
+        private final SharedClient shared;
+        private final long deadline;
+
+        private Retirement(SharedClient shared, long deadline) {
+            this.shared = shared;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public void run() {
+            long now = System.nanoTime();
+            int inFlight = shared.inFlight.get();
+            int cursors = shared.inFlight.getOpenCursors();
+            if ((inFlight > 0 || cursors > 0) && now < deadline) {
+                reaper.schedule(this, DRAIN_CHECK_MILLIS, TimeUnit.MILLISECONDS);
+                return;
+            }
+            if (inFlight > 0 || cursors > 0) {
+                log.warn("close old mongo client of {} with {} commands in flight and {} cursors open", shared.hosts, inFlight, cursors);
+            } else {
+                log.info("close old mongo client of {}", shared.hosts);
+            }
+            close();
+        }
+
+        private void close() {
+            if (retirements.remove(this)) {
+                AsyncDaoExecutor.closeShared(shared.client);
+                shared.client.close();
+            }
+        }
+    }
 }
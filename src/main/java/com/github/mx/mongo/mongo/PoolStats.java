@@ -0,0 +1,215 @@
+package com.github.mx.mongo.mongo;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 一个MongoClient在一个统计窗口内的连接池及命令耗时
+ * <p>
+ * Create by max on 2020/01/16
+ */
+public class PoolStats {
+
+    private final String hosts;
+    private final long windowMillis;
+    private final int connectionsPerHost;
+    private final List<ServerPool> servers;
+    private final int connectionsOpened;
+    private final int connectionsClosed;
+    private final double estimatedWaitMillis;
+    private final Map<String, CommandLatency> commands;
+    private final int recommendedConnectionsPerHost;
+
+    PoolStats(String hosts, long windowMillis, int connectionsPerHost, List<ServerPool> servers, int connectionsOpened,
+              int connectionsClosed, double estimatedWaitMillis, Map<String, CommandLatency> commands,
+              int recommendedConnectionsPerHost) {
+        this.hosts = hosts;
+        this.windowMillis = windowMillis;
+        this.connectionsPerHost = connectionsPerHost;
+        this.servers = Collections.unmodifiableList(servers);
+        this.connectionsOpened = connectionsOpened;
+        this.connectionsClosed = connectionsClosed;
+        this.estimatedWaitMillis = estimatedWaitMillis;
+        this.commands = Collections.unmodifiableMap(commands);
+        this.recommendedConnectionsPerHost = recommendedConnectionsPerHost;
+    }
+
+    public String getHosts() {
+        return hosts;
+    }
+
+    /**
+     * 统计窗口长度
+     */
+    public long getWindowMillis() {
+        return windowMillis;
+    }
+
+    /**
+     * 创建连接时使用的每个host最大连接数
+     */
+    public int getConnectionsPerHost() {
+        return connectionsPerHost;
+    }
+
+    /**
+     * 按server采样的连接池状态，driver未注册JMX时为空
+     */
+    public List<ServerPool> getServers() {
+        return servers;
+    }
+
+    /**
+     * 窗口内新建的连接数
+     */
+    public int getConnectionsOpened() {
+        return connectionsOpened;
+    }
+
+    /**
+     * 窗口内关闭的连接数，由新建数与连接数的变化推算
+     */
+    public int getConnectionsClosed() {
+        return connectionsClosed;
+    }
+
+    /**
+     * 获取连接的平均等待时间，按等待队列平均长度除以命令速率估算
+     */
+    public double getEstimatedWaitMillis() {
+        return estimatedWaitMillis;
+    }
+
+    /**
+     * 按命令名统计的服务端耗时(发出请求到收到响应)
+     */
+    public Map<String, CommandLatency> getCommands() {
+        return commands;
+    }
+
+    /**
+     * 等待时间超过阈值时建议的每个host最大连接数，没有建议时为0
+     */
+    public int getRecommendedConnectionsPerHost() {
+        return recommendedConnectionsPerHost;
+    }
+
+    @Override
+    public String toString() {
+        return "PoolStats{hosts=" + hosts + ", windowMillis=" + windowMillis + ", connectionsPerHost=" + connectionsPerHost
+                + ", servers=" + servers + ", connectionsOpened=" + connectionsOpened + ", connectionsClosed=" + connectionsClosed
+                + ", estimatedWaitMillis=" + String.format("%.2f", estimatedWaitMillis) + ", commands=" + commands
+                + ", recommendedConnectionsPerHost=" + recommendedConnectionsPerHost + '}';
+    }
+
+    /**
+     * 单个server的连接池采样结果
+     */
+    public static class ServerPool {
+
+        private final String address;
+        private final int maxSize;
+        private final int size;
+        private final int checkedOut;
+        private final double meanUtilization;
+        private final double meanWaitQueueSize;
+        private final int maxWaitQueueSize;
+
+        ServerPool(String address, int maxSize, int size, int checkedOut, double meanUtilization,
+                   double meanWaitQueueSize, int maxWaitQueueSize) {
+            this.address = address;
+            this.maxSize = maxSize;
+            this.size = size;
+            this.checkedOut = checkedOut;
+            this.meanUtilization = meanUtilization;
+            this.meanWaitQueueSize = meanWaitQueueSize;
+            this.maxWaitQueueSize = maxWaitQueueSize;
+        }
+
+        public String getAddress() {
+            return address;
+        }
+
+        public int getMaxSize() {
+            return maxSize;
+        }
+
+        /**
+         * 最后一次采样时的连接数
+         */
+        public int getSize() {
+            return size;
+        }
+
+        /**
+         * 最后一次采样时借出的连接数
+         */
+        public int getCheckedOut() {
+            return checkedOut;
+        }
+
+        /**
+         * 借出连接数占maxSize比例的平均值
+         */
+        public double getMeanUtilization() {
+            return meanUtilization;
+        }
+
+        public double getMeanWaitQueueSize() {
+            return meanWaitQueueSize;
+        }
+
+        public int getMaxWaitQueueSize() {
+            return maxWaitQueueSize;
+        }
+
+        @Override
+        public String toString() {
+            return "ServerPool{address=" + address + ", size=" + size + "/" + maxSize + ", checkedOut=" + checkedOut
+                    + ", meanUtilization=" + String.format("%.2f", meanUtilization)
+                    + ", meanWaitQueueSize=" + String.format("%.2f", meanWaitQueueSize)
+                    + ", maxWaitQueueSize=" + maxWaitQueueSize + '}';
+        }
+    }
+
+    /**
+     * 单个命令的耗时统计
+     */
+    public static class CommandLatency {
+
+        private final long count;
+        private final long failures;
+        private final double meanMillis;
+        private final double maxMillis;
+
+        CommandLatency(long count, long failures, double meanMillis, double maxMillis) {
+            this.count = count;
+            this.failures = failures;
+            this.meanMillis = meanMillis;
+            this.maxMillis = maxMillis;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getFailures() {
+            return failures;
+        }
+
+        public double getMeanMillis() {
+            return meanMillis;
+        }
+
+        public double getMaxMillis() {
+            return maxMillis;
+        }
+
+        @Override
+        public String toString() {
+            return "{count=" + count + ", failures=" + failures + ", meanMillis=" + String.format("%.2f", meanMillis)
+                    + ", maxMillis=" + String.format("%.2f", maxMillis) + '}';
+        }
+    }
+}
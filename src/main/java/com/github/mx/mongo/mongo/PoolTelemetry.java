@@ -0,0 +1,300 @@
+package com.github.mx.mongo.mongo;
+
+import com.mongodb.connection.ConnectionDescription;
+import com.mongodb.event.ClusterClosedEvent;
+import com.mongodb.event.ClusterDescriptionChangedEvent;
+import com.mongodb.event.ClusterListener;
+import com.mongodb.event.ClusterOpeningEvent;
+import com.mongodb.event.CommandFailedEvent;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 一个MongoClient的连接池与命令遥测
+ * <p>
+ * 3.x的driver不能通过MongoClientOptions注册连接池监听器，连接池状态从driver自带的JMX MBean
+ * (org.mongodb.driver:type=ConnectionPool)定时采样，按ClusterListener拿到的clusterId对应到本client；
+ * 命令耗时由CommandListener统计；3.x的连接池MBean没有累计新建连接数，新建连接按本client的命令第一次出现的连接识别，
+ * 每个server记住的连接数不超过采样到的连接池大小，最久未用的先忘记
+ * <p>
+ * Create by max on 2020/01/16
+ */
+class PoolTelemetry implements CommandListener, ClusterListener {
+
+    private static final Logger log = LoggerFactory.getLogger(PoolTelemetry.class);
+
+    private final String hosts;
+    private final int connectionsPerHost;
+    private volatile boolean enabled;
+    private volatile String clusterId;
+    private volatile PoolStats last;
+
+    private final ConcurrentMap<String, Latency> commands = new ConcurrentHashMap<>();
+    /**
+     * 各server上见过的连接，按使用顺序排列的本地id
+     */
+    private final ConcurrentMap<String, LinkedHashMap<Integer, Boolean>> connections = new ConcurrentHashMap<>();
+    private final AtomicInteger connectionsOpened = new AtomicInteger();
+    /**
+     * 以下只在采样线程中访问
+     */
+    private final Map<String, ServerWindow> servers = new TreeMap<>();
+    private long windowStart = System.nanoTime();
+
+    PoolTelemetry(String hosts, int connectionsPerHost) {
+        this.hosts = hosts;
+        this.connectionsPerHost = connectionsPerHost;
+    }
+
+    void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        if (!enabled) {
+            connections.clear();
+        }
+    }
+
+    int getConnectionsPerHost() {
+        return connectionsPerHost;
+    }
+
+    /**
+     * 最近一个完整窗口的统计，还没有完整窗口时为null
+     */
+    PoolStats getLast() {
+        return last;
+    }
+
+    @Override
+    public void clusterOpening(ClusterOpeningEvent event) {
+        clusterId = event.getClusterId().getValue();
+    }
+
+    @Override
+    public void clusterClosed(ClusterClosedEvent event) {
+    }
+
+    @Override
+    public void clusterDescriptionChanged(ClusterDescriptionChangedEvent event) {
+    }
+
+    @Override
+    public void commandStarted(CommandStartedEvent event) {
+        if (enabled) {
+            opened(event.getConnectionDescription());
+        }
+    }
+
+    @Override
+    public void commandSucceeded(CommandSucceededEvent event) {
+        if (enabled) {
+            latency(event.getCommandName()).record(event.getElapsedTime(TimeUnit.NANOSECONDS), false);
+        }
+    }
+
+    @Override
+    public void commandFailed(CommandFailedEvent event) {
+        if (enabled) {
+            latency(event.getCommandName()).record(event.getElapsedTime(TimeUnit.NANOSECONDS), true);
+        }
+    }
+
+    private Latency latency(String command) {
+        final Latency latency = commands.get(command);
+        return latency != null ? latency : commands.computeIfAbsent(command, it -> new Latency());
+    }
+
+    /**
+     * 本client的命令第一次用到的连接记为新建
+     */
+    private void opened(ConnectionDescription description) {
+        final LinkedHashMap<Integer, Boolean> seen = seen(description.getServerAddress().toString());
+        synchronized (seen) {
+            if (seen.put(description.getConnectionId().getLocalValue(), Boolean.TRUE) == null) {
+                connectionsOpened.incrementAndGet();
+            }
+        }
+    }
+
+    private LinkedHashMap<Integer, Boolean> seen(String address) {
+        final LinkedHashMap<Integer, Boolean> seen = connections.get(address);
+        return seen != null ? seen : connections.computeIfAbsent(address, it -> new LinkedHashMap<>(16, 0.75f, true));
+    }
+
+    /**
+     * 连接池中最多有size个连接，多出来的是已经关闭的连接；池里空闲最久的连接最先被回收，按最久未用的先忘记
+     */
+    private void forget(String address, int size) {
+        final LinkedHashMap<Integer, Boolean> seen = connections.get(address);
+        if (seen == null) {
+            return;
+        }
+        synchronized (seen) {
+            for (Iterator<Integer> it = seen.keySet().iterator(); seen.size() > size && it.hasNext(); ) {
+                it.next();
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * 采样一次连接池状态
+     */
+    void sample() {
+        final String id = clusterId;
+        if (!enabled || id == null) {
+            return;
+        }
+        try {
+            final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            for (ObjectName name : server.queryNames(new ObjectName("org.mongodb.driver:type=ConnectionPool,clusterId=" + id + ",*"), null)) {
+                final String address = server.getAttribute(name, "Host") + ":" + server.getAttribute(name, "Port");
+                final int size = (Integer) server.getAttribute(name, "Size");
+                servers.computeIfAbsent(address, it -> new ServerWindow()).sample(
+                        (Integer) server.getAttribute(name, "MaxSize"),
+                        size,
+                        (Integer) server.getAttribute(name, "CheckedOutCount"),
+                        (Integer) server.getAttribute(name, "WaitQueueSize"));
+                forget(address, size);
+            }
+        } catch (Exception e) {
+            log.debug("cannot sample connection pool of {}", hosts, e);
+        }
+    }
+
+    boolean isWindowDue(long windowMillis) {
+        return System.nanoTime() - windowStart >= TimeUnit.MILLISECONDS.toNanos(windowMillis);
+    }
+
+    /**
+     * 结束当前窗口，生成统计并开始新窗口
+     *
+     * @param waitThresholdMillis 估算的等待时间超过该值时给出扩容建议
+     * @param maxConnectionsPerHost 建议值的上限
+     */
+    PoolStats roll(long waitThresholdMillis, int maxConnectionsPerHost) {
+        final long now = System.nanoTime();
+        final long windowMillis = Math.max(TimeUnit.NANOSECONDS.toMillis(now - windowStart), 1);
+        windowStart = now;
+
+        final Map<String, PoolStats.CommandLatency> latencies = new TreeMap<>();
+        long count = 0;
+        for (Map.Entry<String, Latency> entry : commands.entrySet()) {
+            final PoolStats.CommandLatency latency = entry.getValue().reset();
+            if (latency.getCount() > 0) {
+                latencies.put(entry.getKey(), latency);
+                count += latency.getCount();
+            }
+        }
+        final List<PoolStats.ServerPool> pools = new ArrayList<>(servers.size());
+        double waitQueue = 0;
+        int sizeDelta = 0;
+        for (Map.Entry<String, ServerWindow> entry : servers.entrySet()) {
+            final ServerWindow window = entry.getValue();
+            if (window.samples == 0) {
+                continue;
+            }
+            pools.add(window.toServerPool(entry.getKey()));
+            waitQueue += (double) window.waitQueueSum / window.samples;
+            sizeDelta += window.size - window.startSize;
+            window.reset();
+        }
+        final int opened = connectionsOpened.getAndSet(0);
+        // 利特尔法则：平均等待时间 = 平均排队数 / 到达速率
+        final double perMilli = (double) count / windowMillis;
+        final double waitMillis = perMilli > 0 ? waitQueue / perMilli : 0;
+        int recommended = 0;
+        if (waitThresholdMillis > 0 && waitMillis > waitThresholdMillis && connectionsPerHost < maxConnectionsPerHost) {
+            recommended = Math.min(maxConnectionsPerHost, Math.max(connectionsPerHost + 1, (int) Math.ceil(connectionsPerHost * 1.5)));
+        }
+        final PoolStats stats = new PoolStats(hosts, windowMillis, connectionsPerHost, pools, opened,
+                Math.max(opened - sizeDelta, 0), waitMillis, new LinkedHashMap<>(latencies), recommended);
+        last = stats;
+        return stats;
+    }
+
+    private static final class Latency {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        private void record(long nanos, boolean failed) {
+            count.increment();
+            if (failed) {
+                failures.increment();
+            }
+            totalNanos.add(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        /**
+         * 窗口切换时与record并发，个别样本可能计入下一个窗口
+         */
+        private PoolStats.CommandLatency reset() {
+            final long n = count.sumThenReset();
+            final long total = totalNanos.sumThenReset();
+            final double nanosPerMilli = TimeUnit.MILLISECONDS.toNanos(1);
+            return new PoolStats.CommandLatency(n, failures.sumThenReset(),
+                    n == 0 ? 0 : total / nanosPerMilli / n, maxNanos.getAndSet(0) / nanosPerMilli);
+        }
+    }
+
+    private static final class ServerWindow {
+        private int samples;
+        private int maxSize;
+        private int startSize = -1;
+        private int size;
+        private int checkedOut;
+        private double utilizationSum;
+        private long waitQueueSum;
+        private int maxWaitQueue;
+
+        private void sample(int maxSize, int size, int checkedOut, int waitQueue) {
+            if (startSize < 0) {
+                startSize = size;
+            }
+            samples++;
+            this.maxSize = maxSize;
+            this.size = size;
+            this.checkedOut = checkedOut;
+            utilizationSum += maxSize > 0 ? (double) checkedOut / maxSize : 0;
+            waitQueueSum += waitQueue;
+            maxWaitQueue = Math.max(maxWaitQueue, waitQueue);
+        }
+
+        private PoolStats.ServerPool toServerPool(String address) {
+            return new PoolStats.ServerPool(address, maxSize, size, checkedOut, utilizationSum / samples,
+                    (double) waitQueueSum / samples, maxWaitQueue);
+        }
+
+        /**
+         * 新窗口从上一窗口最后的连接数开始
+         */
+        private void reset() {
+            samples = 0;
+            startSize = size;
+            utilizationSum = 0;
+            waitQueueSum = 0;
+            maxWaitQueue = 0;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.github.mx.mongo.mongo;
+
+/**
+ * 一次配置变更的处理结果
+ * <p>
+ * Create by max on 2020/01/16
+ */
+public class ReloadReport {
+
+    private final long durationMillis;
+    private final int datastores;
+    private final int rebuiltClients;
+    private final int rebuiltMappers;
+    private final int reboundDatastores;
+
+    ReloadReport(long durationMillis, int datastores, int rebuiltClients, int rebuiltMappers, int reboundDatastores) {
+        this.durationMillis = durationMillis;
+        this.datastores = datastores;
+        this.rebuiltClients = rebuiltClients;
+        this.rebuiltMappers = rebuiltMappers;
+        this.reboundDatastores = reboundDatastores;
+    }
+
+    /**
+     * 处理耗时，不含旧连接的关闭
+     */
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    /**
+     * 参与比较的datastore数
+     */
+    public int getDatastores() {
+        return datastores;
+    }
+
+    /**
+     * 因连接配置变化而重建的MongoClient数
+     */
+    public int getRebuiltClients() {
+        return rebuiltClients;
+    }
+
+    /**
+     * 因映射配置变化而重新扫描的Mapper数
+     */
+    public int getRebuiltMappers() {
+        return rebuiltMappers;
+    }
+
+    /**
+     * 切换了底层Datastore的数量，其余保持不变
+     */
+    public int getReboundDatastores() {
+        return reboundDatastores;
+    }
+
+    @Override
+    public String toString() {
+        return "ReloadReport{durationMillis=" + durationMillis + ", datastores=" + datastores
+                + ", rebuiltClients=" + rebuiltClients + ", rebuiltMappers=" + rebuiltMappers
+                + ", reboundDatastores=" + reboundDatastores + '}';
+    }
+}
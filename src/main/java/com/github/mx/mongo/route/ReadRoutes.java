@@ -0,0 +1,122 @@
+package com.github.mx.mongo.route;
+
+import com.github.mx.nacos.config.core.api.IConfig;
+import com.google.common.base.Splitter;
+import com.google.common.base.Strings;
+import com.mongodb.ReadPreference;
+import com.mongodb.Tag;
+import com.mongodb.TagSet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按collection配置的读路由，配置中心变更后立即生效，只影响每次读操作的ReadPreference，不会新建连接:
+ * <pre>
+ * mongo.read.{collection}.preference=secondaryPreferred
+ * mongo.read.{collection}.tags=dc:east,usage:reporting;dc:west
+ * mongo.read.{collection}.maxStalenessSeconds=120
+ * </pre>
+ * tags中不同的tag set用;分隔，按顺序匹配；配置有误时打印日志并忽略。
+ * 不同db下的同名collection可以用mongo.read.{db}.{collection}.*分别配置，配置了preference时整组优先于按collection名的配置
+ * <p>
+ * 每个MongoDataStoreFactoryBean持有自己的实例，由其配置驱动，通过{@code DatastoreExt.getReadRoutes()}获取；
+ * INSTANCE只供不经过工厂创建的DatastoreExt使用
+ * <p>
+ * Create by max on 2020/01/16
+ */
+public class ReadRoutes {
+
+    public static final ReadRoutes INSTANCE = new ReadRoutes();
+
+    private static final Logger log = LoggerFactory.getLogger(ReadRoutes.class);
+
+    private volatile State state = new State(null);
+
+    public ReadRoutes() {
+    }
+
+    /**
+     * collection配置的ReadPreference
+     *
+     * @param dbName     db名字
+     * @param collection collection名字
+     * @return 没有配置时返回null
+     */
+    public ReadPreference get(String dbName, String collection) {
+        final State current = state;
+        if (current.config == null) {
+            return null;
+        }
+        return current.routes.computeIfAbsent(dbName + '.' + collection,
+                it -> Optional.ofNullable(parse(current.config, dbName, collection))).orElse(null);
+    }
+
+    /**
+     * 配置中心变更时调用
+     */
+    public void reload(IConfig config) {
+        this.state = new State(config);
+    }
+
+    private static ReadPreference parse(IConfig config, String dbName, String collection) {
+        String prefix = "mongo.read." + dbName + '.' + collection + '.';
+        String name = config.get(prefix + "preference");
+        if (Strings.isNullOrEmpty(name)) {
+            prefix = "mongo.read." + collection + '.';
+            name = config.get(prefix + "preference");
+        }
+        if (Strings.isNullOrEmpty(name)) {
+            return null;
+        }
+        try {
+            final List<TagSet> tagSets = tagSets(config.get(prefix + "tags"));
+            final int maxStaleness = config.getInt(prefix + "maxStalenessSeconds", -1);
+            if (maxStaleness > 0) {
+                return ReadPreference.valueOf(name, tagSets, maxStaleness, TimeUnit.SECONDS);
+            }
+            return tagSets.isEmpty() ? ReadPreference.valueOf(name) : ReadPreference.valueOf(name, tagSets);
+        } catch (RuntimeException e) {
+            log.warn("invalid read route of collection {}.{}, using default read preference: {}", dbName, collection, e.getMessage());
+            return null;
+        }
+    }
+
+    private static List<TagSet> tagSets(String value) {
+        if (Strings.isNullOrEmpty(value)) {
+            return Collections.emptyList();
+        }
+        final List<TagSet> tagSets = new ArrayList<>();
+        for (String set : Splitter.on(';').trimResults().omitEmptyStrings().split(value)) {
+            final List<Tag> tags = new ArrayList<>();
+            for (String tag : Splitter.on(',').trimResults().omitEmptyStrings().split(set)) {
+                final List<String> pair = Splitter.on(':').limit(2).trimResults().splitToList(tag);
+                if (pair.size() != 2) {
+                    throw new IllegalArgumentException("tag must be name:value, got " + tag);
+                }
+                tags.add(new Tag(pair.get(0), pair.get(1)));
+            }
+            tagSets.add(new TagSet(tags));
+        }
+        return tagSets;
+    }
+
+    /**
+     * 配置与据此解析的路由一起替换，避免重新加载时读到旧配置解析的结果
+     */
+    private static final class State {
+        private final IConfig config;
+        private final Map<String, Optional<ReadPreference>> routes = new ConcurrentHashMap<>();
+
+        private State(IConfig config) {
+            this.config = config;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.github.mx.mongo.util;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
+import org.mongodb.morphia.query.Query;
+
+/**
+ * 读取Morphia查询生成的文档。Morphia 1.3将这些访问方法标记为过时但没有替代，统一在这里调用
+ * <p>
+ * Create by max on 2020/01/16
+ */
+public final class QueryUtils {
+
+    private QueryUtils() {
+    }
+
+    /**
+     * 查询条件，可以直接作为driver的Bson使用
+     */
+    @SuppressWarnings("deprecation")
+    public static BasicDBObject filter(Query<?> query) {
+        return toBasic(query.getQueryObject());
+    }
+
+    /**
+     * 排序，没有排序时为null
+     */
+    @SuppressWarnings("deprecation")
+    public static DBObject sort(Query<?> query) {
+        return query.getSortObject();
+    }
+
+    /**
+     * 投影，没有投影时为null
+     */
+    @SuppressWarnings("deprecation")
+    public static DBObject fields(Query<?> query) {
+        return query.getFieldsObject();
+    }
+
+    /**
+     * 查询所在的collection
+     */
+    @SuppressWarnings("deprecation")
+    public static DBCollection collection(Query<?> query) {
+        return query.getCollection();
+    }
+
+    private static BasicDBObject toBasic(DBObject object) {
+        if (object == null) {
+            return new BasicDBObject();
+        }
+        return object instanceof BasicDBObject ? (BasicDBObject) object : new BasicDBObject(object.toMap());
+    }
+}